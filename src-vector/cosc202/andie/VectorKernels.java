@@ -0,0 +1,253 @@
+package cosc202.andie;
+
+import jdk.incubator.vector.*;
+
+/**
+ * <p>
+ * Pixel loops that process a whole vector of ARGB pixels at once, using the Java Vector API.
+ * </p>
+ *
+ * <p>
+ * Each loop works on as many whole vectors as fit in the run it is given and returns how many
+ * pixels it did, leaving the rest to the matching scalar loop. They give exactly the same pixels
+ * as the scalar loops, which {@link VectorSupport.Mode#CHECK} mode checks.
+ * </p>
+ *
+ * <p>
+ * This class needs the <code>jdk.incubator.vector</code> module, so it lives in its own source
+ * folder and is only compiled and run with <code>--add-modules jdk.incubator.vector</code>.
+ * Nothing refers to it directly: {@link VectorSupport#kernel} looks its loops up by name, and
+ * finds none when the class or the module is missing.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see VectorSupport
+ * @version 1.0
+ */
+public class VectorKernels {
+
+    /** The widest vector of ints this machine does well. */
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    /** Adding this to a float between 0 and 2<sup>22</sup> leaves the nearest whole number in its low bits. */
+    private static final float FLOAT_MAGIC = 8388608f;
+    /** Adding this to a double between 0 and 2<sup>51</sup> leaves the nearest whole number in its low bits. */
+    private static final double DOUBLE_MAGIC = 4503599627370496.0;
+    /** Doubles the same size as {@link INTS}, so with half as many lanes. */
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * <p>
+     * Convert pixels to greyscale, as {@link ConvertToGrey} does.
+     * </p>
+     *
+     * @param src The array to read pixels from.
+     * @param srcFrom The index of the first pixel to read.
+     * @param srcStride Not used.
+     * @param dst The array to write pixels to.
+     * @param dstFrom The index of the first pixel to write.
+     * @param length The number of pixels in the run.
+     * @return The number of pixels done.
+     */
+    public static int grey(int[] src, int srcFrom, int srcStride, int[] dst, int dstFrom, int length) {
+        int lanes = INTS.length();
+        int done = length - length % lanes;
+        for (int i = 0; i < done; i += lanes) {
+            IntVector argb = IntVector.fromArray(INTS, src, srcFrom + i);
+            // There are only half as many doubles to a vector, so do each half separately.
+            IntVector grey = grey(argb, 0).or(grey(argb, 1));
+            argb.and(0xff000000)
+                    .or(grey.lanewise(VectorOperators.LSHL, 16))
+                    .or(grey.lanewise(VectorOperators.LSHL, 8))
+                    .or(grey)
+                    .intoArray(dst, dstFrom + i);
+        }
+        return done;
+    }
+
+    /**
+     * <p>
+     * Work out the grey values of half of a vector of pixels.
+     * </p>
+     *
+     * @param argb The pixels.
+     * @param part 0 for the first half, 1 for the second.
+     * @return The grey values of that half, in the same lanes as their pixels, with zeros in the other half.
+     */
+    private static IntVector grey(IntVector argb, int part) {
+        DoubleVector r = (DoubleVector) channel(argb, 16).convertShape(VectorOperators.I2D, DOUBLES, part);
+        DoubleVector g = (DoubleVector) channel(argb, 8).convertShape(VectorOperators.I2D, DOUBLES, part);
+        DoubleVector b = (DoubleVector) channel(argb, 0).convertShape(VectorOperators.I2D, DOUBLES, part);
+        // Math.round is the same as adding a half and rounding down for these values.
+        DoubleVector sum = r.mul(0.3).add(g.mul(0.6)).add(b.mul(0.1)).add(0.5);
+        return floor(sum, -part);
+    }
+
+    /**
+     * <p>
+     * Scale and offset the red, green and blue values of pixels, leaving alpha as it is,
+     * as {@link PixelBuffer#rescale(float, float)} does.
+     * </p>
+     *
+     * @param src The array to read pixels from.
+     * @param srcFrom The index of the first pixel to read.
+     * @param srcStride Not used.
+     * @param dst The array to write pixels to.
+     * @param dstFrom The index of the first pixel to write.
+     * @param length The number of pixels in the run.
+     * @param scale The factor to multiply each value by.
+     * @param offset The amount to add to each value after scaling.
+     * @return The number of pixels done.
+     */
+    public static int rescale(int[] src, int srcFrom, int srcStride, int[] dst, int dstFrom, int length,
+            float scale, float offset) {
+        int lanes = INTS.length();
+        int done = length - length % lanes;
+        for (int i = 0; i < done; i += lanes) {
+            IntVector argb = IntVector.fromArray(INTS, src, srcFrom + i);
+            IntVector result = argb.and(0xff000000);
+            for (int shift = 0; shift < 24; shift += 8) {
+                FloatVector value = (FloatVector) argb.lanewise(VectorOperators.LSHR, shift).and(0xff)
+                        .convert(VectorOperators.I2F, 0);
+                // Clamping first means truncating is the same as rounding down.
+                IntVector scaled = floor(value.mul(scale).add(offset).max(0).min(255));
+                result = result.or(scaled.lanewise(VectorOperators.LSHL, shift));
+            }
+            result.intoArray(dst, dstFrom + i);
+        }
+        return done;
+    }
+
+    /**
+     * <p>
+     * Sharpen pixels, as {@link SharpenFilter} does.
+     * </p>
+     *
+     * @param src The array to read pixels from.
+     * @param srcFrom The index of the top left of the neighbourhood of the first pixel.
+     * @param srcStride The distance in <code>src</code> from one row to the next.
+     * @param dst The array to write pixels to.
+     * @param dstFrom The index of the first pixel to write.
+     * @param length The number of pixels in the run.
+     * @param amount The amount to sharpen by.
+     * @return The number of pixels done.
+     */
+    public static int sharpen(int[] src, int srcFrom, int srcStride, int[] dst, int dstFrom, int length, int amount) {
+        int lanes = INTS.length();
+        int done = length - length % lanes;
+        int centreWeight = 2 + 4 * amount;
+        for (int i = 0; i < done; i += lanes) {
+            int centre = srcFrom + srcStride + 1 + i;
+            IntVector c = IntVector.fromArray(INTS, src, centre);
+            IntVector up = IntVector.fromArray(INTS, src, centre - srcStride);
+            IntVector down = IntVector.fromArray(INTS, src, centre + srcStride);
+            IntVector left = IntVector.fromArray(INTS, src, centre - 1);
+            IntVector right = IntVector.fromArray(INTS, src, centre + 1);
+            IntVector result = IntVector.zero(INTS);
+            for (int shift = 0; shift < 32; shift += 8) {
+                IntVector neighbours = channel(up, shift).add(channel(down, shift))
+                        .add(channel(left, shift)).add(channel(right, shift));
+                IntVector twice = channel(c, shift).mul(centreWeight).sub(neighbours.mul(amount));
+                IntVector value = twice.lanewise(VectorOperators.ASHR, 1).max(0).min(255);
+                result = result.or(value.lanewise(VectorOperators.LSHL, shift));
+            }
+            result.intoArray(dst, dstFrom + i);
+        }
+        return done;
+    }
+
+    /**
+     * <p>
+     * Emboss pixels, as {@link EmbossFilter} does.
+     * </p>
+     *
+     * @param src The array to read pixels from.
+     * @param srcFrom The index of the top left of the neighbourhood of the first pixel.
+     * @param srcStride The distance in <code>src</code> from one row to the next.
+     * @param dst The array to write pixels to.
+     * @param dstFrom The index of the first pixel to write.
+     * @param length The number of pixels in the run.
+     * @param kernel The 3x3 kernel, column by column.
+     * @return The number of pixels done.
+     */
+    public static int emboss(int[] src, int srcFrom, int srcStride, int[] dst, int dstFrom, int length, int[] kernel) {
+        int lanes = INTS.length();
+        int done = length - length % lanes;
+        for (int i = 0; i < done; i += lanes) {
+            IntVector r = IntVector.broadcast(INTS, 127);
+            IntVector g = r;
+            IntVector b = r;
+            for (int k = 0; k < 9; k++) {
+                if (kernel[k] == 0) {
+                    continue;
+                }
+                IntVector argb = IntVector.fromArray(INTS, src, srcFrom + (k % 3) * srcStride + k / 3 + i);
+                r = r.add(channel(argb, 16).mul(kernel[k]));
+                g = g.add(channel(argb, 8).mul(kernel[k]));
+                b = b.add(channel(argb, 0).mul(kernel[k]));
+            }
+            IntVector.broadcast(INTS, 0xff000000)
+                    .or(r.max(0).min(255).lanewise(VectorOperators.LSHL, 16))
+                    .or(g.max(0).min(255).lanewise(VectorOperators.LSHL, 8))
+                    .or(b.max(0).min(255))
+                    .intoArray(dst, dstFrom + i);
+        }
+        return done;
+    }
+
+    /**
+     * <p>
+     * Round values between 0 and 255 down to whole numbers.
+     * </p>
+     *
+     * <p>
+     * Converting floats to ints lane by lane is slow, so instead this adds 2<sup>23</sup>, which
+     * leaves the nearest whole number in the low bits of each float, and then takes one off
+     * wherever that rounded up.
+     * </p>
+     *
+     * @param values The values to round down.
+     * @return The values rounded down, as ints.
+     */
+    private static IntVector floor(FloatVector values) {
+        FloatVector shifted = values.add(FLOAT_MAGIC);
+        FloatVector nearest = shifted.sub(FLOAT_MAGIC);
+        VectorMask<Float> roundedUp = nearest.compare(VectorOperators.GT, values);
+        return shifted.reinterpretAsInts().sub(Float.floatToIntBits(FLOAT_MAGIC)).sub(1, roundedUp.cast(INTS));
+    }
+
+    /**
+     * <p>
+     * Round values between 0 and 256 down to whole numbers.
+     * </p>
+     *
+     * <p>
+     * This is the same as {@link floor(FloatVector)}, but adds 2<sup>52</sup> to doubles.
+     * </p>
+     *
+     * @param values The values to round down.
+     * @param part 0 to put the results in the first half of the ints, -1 for the second half.
+     * @return The values rounded down, as ints, with zeros in the other half.
+     */
+    private static IntVector floor(DoubleVector values, int part) {
+        DoubleVector nearest = values.add(DOUBLE_MAGIC).sub(DOUBLE_MAGIC);
+        VectorMask<Double> roundedUp = nearest.compare(VectorOperators.GT, values);
+        DoubleVector whole = nearest.lanewise(VectorOperators.SUB, 1.0, roundedUp).add(DOUBLE_MAGIC);
+        return (IntVector) whole.reinterpretAsLongs().convertShape(VectorOperators.L2I, INTS, part);
+    }
+
+    /**
+     * <p>
+     * Get one 8-bit channel of a vector of ARGB pixels.
+     * </p>
+     *
+     * @param argb The pixels.
+     * @param shift How far the channel is from the bottom of each pixel.
+     * @return The values of the channel.
+     */
+    private static IntVector channel(IntVector argb, int shift) {
+        return argb.lanewise(VectorOperators.LSHR, shift).and(0xff);
+    }
+}
@@ -0,0 +1,62 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * Ways of making up the pixels beyond the edges of an image.
+ * </p>
+ *
+ * <p>
+ * Neighbourhood filters read pixels around each output pixel, which near the edges of the image
+ * are outside it. Rather than copying the image into a bigger, padded, image, a BorderMode works
+ * out which pixel of the image (if any) stands in for an outside coordinate as it is read.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see PixelBuffer#readRegion(int, int, int, int, int[], BorderMode, int)
+ * @version 1.0
+ */
+public enum BorderMode {
+
+    /** Outside pixels take the value of the nearest edge pixel, so <code>aaa|abcd|ddd</code>. */
+    CLAMP,
+    /** Outside pixels are reflected back into the image, without repeating the edge pixel, so <code>dcb|abcd|cba</code>. */
+    MIRROR,
+    /** Outside pixels come from the opposite side of the image, as if it were tiled, so <code>bcd|abcd|abc</code>. */
+    WRAP,
+    /** Outside pixels all take the one constant value. */
+    CONSTANT;
+
+    /**
+     * <p>
+     * Work out which coordinate of the image stands in for a coordinate that may be outside it.
+     * </p>
+     *
+     * @param i The coordinate, which may be negative or past the end.
+     * @param size The width or height of the image, which must be at least 1.
+     * @return The coordinate to read from, between 0 and <code>size - 1</code>, or -1 if
+     *         the constant value should be used instead.
+     */
+    public int resolve(int i, int size) {
+        if (i >= 0 && i < size) {
+            return i;
+        }
+        switch (this) {
+            case MIRROR:
+                if (size == 1) {
+                    return 0;
+                }
+                int period = 2 * (size - 1);
+                int m = Math.floorMod(i, period);
+                return m < size ? m : period - m;
+            case WRAP:
+                return Math.floorMod(i, size);
+            case CONSTANT:
+                return -1;
+            default:
+                return Math.min(Math.max(i, 0), size - 1);
+        }
+    }
+}
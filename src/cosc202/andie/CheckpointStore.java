@@ -0,0 +1,389 @@
+package cosc202.andie;
+
+import java.awt.image.*;
+import java.util.*;
+import java.util.prefs.Preferences;
+
+/**
+ * <p>
+ * A store of materialised intermediate images for an {@link EditableImage}.
+ * </p>
+ *
+ * <p>
+ * An {@link EditableImage} only keeps its original image and a stack of {@link ImageOperation}s,
+ * so going back in history means replaying operations from the original. The CheckpointStore
+ * keeps copies of the image as it was after a chosen number of operations (its depth), so a
+ * replay can start from the nearest checkpoint at or below the target depth instead.
+ * </p>
+ *
+ * <p>
+ * Checkpoints are placed by weighing the measured cost of the operations they would save
+ * against the memory they take. A checkpoint is only worth keeping if replaying the operations
+ * since the previous checkpoint takes noticeably longer than copying the checkpoint back out.
+ * When the total size would exceed the byte budget, the checkpoints that save the least replay
+ * time per byte are evicted first. The budget is read from the preferences under
+ * {@link #BUDGET_KEY} (in megabytes), and defaults to {@link #DEFAULT_BUDGET_MB}.
+ * </p>
+ *
+ * <p>
+ * Since many {@link ImageOperation}s change their input image in place, the store copies any
+ * image offered to it (unless ownership is handed over with {@link #keep}), and hands out copies
+ * when restoring.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @version 1.0
+ */
+public class CheckpointStore {
+
+    /** The preferences key holding the checkpoint budget in megabytes. */
+    public static final String BUDGET_KEY = "checkpointBudgetMB";
+    /** The checkpoint budget in megabytes used if none is set in the preferences. */
+    public static final long DEFAULT_BUDGET_MB = 256;
+    /** How many times longer a replay must take than a restore for a checkpoint to be worth placing. */
+    private static final double MIN_GAIN = 4.0;
+
+    /** The checkpoints, keyed by the number of operations applied to get them. */
+    private TreeMap<Integer, BufferedImage> checkpoints;
+    /** The measured time in nanoseconds of the operation at each depth (index 0 holds depth 1). */
+    private ArrayList<Long> opNanos;
+    /** The maximum number of bytes the checkpoints may take up. */
+    private long budgetBytes;
+    /** The number of bytes the checkpoints currently take up. */
+    private long usedBytes;
+    /** The measured time in nanoseconds it takes to copy one byte of image data. */
+    private double copyNanosPerByte;
+
+    /**
+     * <p>
+     * Create a new CheckpointStore with the budget set in the preferences.
+     * </p>
+     */
+    public CheckpointStore() {
+        this(budgetFromPreferences());
+    }
+
+    /**
+     * <p>
+     * Create a new CheckpointStore with the given budget.
+     * </p>
+     *
+     * @param budgetBytes The maximum number of bytes the checkpoints may take up.
+     */
+    public CheckpointStore(long budgetBytes) {
+        this.budgetBytes = Math.max(0, budgetBytes);
+        checkpoints = new TreeMap<Integer, BufferedImage>();
+        opNanos = new ArrayList<Long>();
+        usedBytes = 0;
+        // A rough starting guess, which is replaced as soon as a copy has been timed.
+        copyNanosPerByte = 1.0;
+    }
+
+    /**
+     * <p>
+     * Read the checkpoint budget from the preferences.
+     * </p>
+     *
+     * @return The checkpoint budget in bytes.
+     */
+    public static long budgetFromPreferences() {
+        Preferences prefs = Preferences.userNodeForPackage(Andie.class);
+        return prefs.getLong(BUDGET_KEY, DEFAULT_BUDGET_MB) * 1024 * 1024;
+    }
+
+    /**
+     * <p>
+     * Record how long the operation at the given depth took to apply.
+     * </p>
+     *
+     * @param depth The depth of the operation, where the first operation applied has depth 1.
+     * @param nanos The time the operation took in nanoseconds.
+     */
+    public void recordCost(int depth, long nanos) {
+        while (opNanos.size() < depth) {
+            opNanos.add(0L);
+        }
+        opNanos.set(depth - 1, nanos);
+    }
+
+    /**
+     * <p>
+     * Offer the image after the given number of operations as a checkpoint.
+     * </p>
+     *
+     * <p>
+     * The image is only copied into the store if the replay time it saves is worth the memory
+     * it takes, as described in {@link CheckpointStore}. Otherwise this does nothing.
+     * </p>
+     *
+     * @param depth The number of operations applied to get the image.
+     * @param image The image after those operations.
+     */
+    public void offer(int depth, BufferedImage image) {
+        if (depth <= 0 || checkpoints.containsKey(depth)) {
+            return;
+        }
+        long bytes = sizeOf(image);
+        if (bytes > budgetBytes) {
+            return;
+        }
+        long gain = replayNanos(checkpoints.floorKey(depth), depth);
+        if (gain < MIN_GAIN * copyNanosPerByte * bytes) {
+            return;
+        }
+        if (makeRoom(bytes, gain)) {
+            checkpoints.put(depth, copy(image));
+            usedBytes += bytes;
+        }
+    }
+
+    /**
+     * <p>
+     * Keep an image that has already been computed, such as the result of an undone step.
+     * </p>
+     *
+     * <p>
+     * Unlike {@link offer}, the image is kept whenever it fits in the budget (possibly by
+     * evicting checkpoints worth less per byte), however cheap it was to compute. The store
+     * takes ownership of the image rather than copying it, so the caller must not change it
+     * afterwards.
+     * </p>
+     *
+     * @param depth The number of operations applied to get the image.
+     * @param image The image after those operations.
+     */
+    public void keep(int depth, BufferedImage image) {
+        if (depth <= 0 || checkpoints.containsKey(depth)) {
+            return;
+        }
+        long bytes = sizeOf(image);
+        if (bytes <= budgetBytes && makeRoom(bytes, replayNanos(checkpoints.floorKey(depth), depth))) {
+            checkpoints.put(depth, image);
+            usedBytes += bytes;
+        }
+    }
+
+    /**
+     * <p>
+     * Check whether the store has a checkpoint at exactly the given depth.
+     * </p>
+     *
+     * @param depth The depth to check.
+     * @return True if there is a checkpoint at that depth, false otherwise.
+     */
+    public boolean contains(int depth) {
+        return checkpoints.containsKey(depth);
+    }
+
+    /**
+     * <p>
+     * Find the deepest checkpoint at or below the given depth.
+     * </p>
+     *
+     * @param depth The depth to look at or below.
+     * @return The depth of the nearest checkpoint, or 0 if there is none (i.e. start from the original).
+     */
+    public int nearest(int depth) {
+        Integer key = checkpoints.floorKey(depth);
+        return key == null ? 0 : key;
+    }
+
+    /**
+     * <p>
+     * Get a copy of the checkpoint at the given depth.
+     * </p>
+     *
+     * @param depth The depth of the checkpoint, which must be in the store.
+     * @return A copy of the checkpoint image, which the caller is free to change.
+     */
+    public BufferedImage restore(int depth) {
+        return copy(checkpoints.get(depth));
+    }
+
+    /**
+     * <p>
+     * Forget all checkpoints and measured costs at or beyond the given depth.
+     * </p>
+     *
+     * <p>
+     * This should be called whenever the operation at that depth changes, since every
+     * image from that depth on no longer matches the operations.
+     * </p>
+     *
+     * @param depth The first depth which is no longer valid.
+     */
+    public void invalidateFrom(int depth) {
+        while (!checkpoints.isEmpty() && checkpoints.lastKey() >= depth) {
+            remove(checkpoints.lastKey());
+        }
+        while (opNanos.size() >= depth && !opNanos.isEmpty()) {
+            opNanos.remove(opNanos.size() - 1);
+        }
+    }
+
+    /**
+     * <p>
+     * Forget all checkpoints and measured costs.
+     * </p>
+     */
+    public void clear() {
+        checkpoints.clear();
+        opNanos.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * <p>
+     * Get the number of checkpoints currently stored.
+     * </p>
+     *
+     * @return The number of checkpoints.
+     */
+    public int size() {
+        return checkpoints.size();
+    }
+
+    /**
+     * <p>
+     * Get the number of bytes the checkpoints currently take up.
+     * </p>
+     *
+     * @return The number of bytes used.
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * <p>
+     * Get the maximum number of bytes the checkpoints may take up.
+     * </p>
+     *
+     * @return The budget in bytes.
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * <p>
+     * Estimate the number of bytes an image takes up in memory.
+     * </p>
+     *
+     * @param image The image to measure.
+     * @return The size of the image data in bytes.
+     */
+    public static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * <p>
+     * Sum the measured cost of the operations after one depth up to and including another.
+     * </p>
+     *
+     * @param from The depth to replay from, or null to replay from the original.
+     * @param to The depth to replay to.
+     * @return The time the replay would take in nanoseconds.
+     */
+    private long replayNanos(Integer from, int to) {
+        long total = 0;
+        for (int d = (from == null ? 0 : from) + 1; d <= to && d <= opNanos.size(); d++) {
+            total += opNanos.get(d - 1);
+        }
+        return total;
+    }
+
+    /**
+     * <p>
+     * The replay time a checkpoint saves per byte it takes up.
+     * </p>
+     *
+     * @param depth The depth of the checkpoint.
+     * @return The nanoseconds of replay saved per byte.
+     */
+    private double value(int depth) {
+        return (double) replayNanos(checkpoints.lowerKey(depth), depth) / sizeOf(checkpoints.get(depth));
+    }
+
+    /**
+     * <p>
+     * Evict checkpoints until a new one of the given size fits in the budget.
+     * </p>
+     *
+     * <p>
+     * Only checkpoints that save less replay time per byte than the new one are evicted.
+     * </p>
+     *
+     * @param bytes The size of the new checkpoint.
+     * @param gain The replay time in nanoseconds the new checkpoint saves.
+     * @return True if there is now room for the new checkpoint, false otherwise.
+     */
+    private boolean makeRoom(long bytes, long gain) {
+        while (usedBytes + bytes > budgetBytes) {
+            Integer worst = leastValuable();
+            if (worst == null || value(worst) >= (double) gain / bytes) {
+                return false;
+            }
+            remove(worst);
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Find the checkpoint which saves the least replay time per byte.
+     * </p>
+     *
+     * @return The depth of that checkpoint, or null if there are none.
+     */
+    private Integer leastValuable() {
+        Integer worst = null;
+        double worstValue = Double.MAX_VALUE;
+        for (int depth : checkpoints.keySet()) {
+            double v = value(depth);
+            if (v < worstValue) {
+                worst = depth;
+                worstValue = v;
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * <p>
+     * Remove a checkpoint from the store.
+     * </p>
+     *
+     * @param depth The depth of the checkpoint to remove.
+     */
+    private void remove(int depth) {
+        BufferedImage image = checkpoints.remove(depth);
+        if (image != null) {
+            usedBytes -= sizeOf(image);
+        }
+    }
+
+    /**
+     * <p>
+     * Copy an image, timing the copy to keep {@link copyNanosPerByte} up to date.
+     * </p>
+     *
+     * @param image The image to copy.
+     * @return An independent copy of the image.
+     */
+    private BufferedImage copy(BufferedImage image) {
+        long start = System.nanoTime();
+        ColorModel cm = image.getColorModel();
+        BufferedImage result = new BufferedImage(cm, image.copyData(null), cm.isAlphaPremultiplied(), null);
+        long bytes = sizeOf(image);
+        if (bytes > 0) {
+            copyNanosPerByte = (double) (System.nanoTime() - start) / bytes;
+        }
+        return result;
+    }
+}
@@ -185,28 +185,21 @@ public class ColourActions {
 
                     // Copy this here so that we still have reference to the actual EditableImage.
                     EditableImage actualImage = target.getImage();
+                    // Previews are worked out in the background on a proxy the size of the panel, and kept for each value.
+                    PreviewController preview = new PreviewController(target);
 
                     // This part updates how the image looks when the slider is moved.
                     jslider.addChangeListener(new ChangeListener() {
                         public void stateChanged(ChangeEvent ce) {
-                            // Create a deep copy of the editable image (so that we don't change the actual
-                            // editable image)
-                            EditableImage copyImage = actualImage.deepCopyEditableImage();
-                            // Set the target to have this new copy of the actual image.
-                            target.setImage(copyImage);
-                            // Apply the brightness change to the new copy of the actual image.
-                            if (jslider.getValue() == 0) { // No change in brightness to apply.
-                                return;
-                            }
-                            target.getImage().apply(new BrightnessFilter(jslider.getValue()));
-                            target.repaint();
-                            target.getParent().revalidate();
+                            preview.update(jslider.getValue() == 0 ? null : new BrightnessFilter(jslider.getValue()));
                         }
                     });
 
                     int select = JOptionPane.showOptionDialog(Andie.frame, jslider,
                             LanguageActions.getLocaleString("brightnessSlid"),
                             JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
+                    // Hand over the preview of the chosen value so applying it does not work it out again.
+                    preview.close(select == JOptionPane.OK_OPTION ? new BrightnessFilter(jslider.getValue()) : null);
                     if (select == JOptionPane.CANCEL_OPTION || select == JOptionPane.CLOSED_OPTION) {
                         // Set the image in target back to the actual image and repaint.
                         target.setImage(actualImage);
@@ -291,28 +284,21 @@ public class ColourActions {
 
                     // Copy this here so that we still have reference to the actual EditableImage.
                     EditableImage actualImage = target.getImage();
+                    // Previews are worked out in the background on a proxy the size of the panel, and kept for each value.
+                    PreviewController preview = new PreviewController(target);
 
                     // This part updates how the image looks when the slider is moved.
                     jslider.addChangeListener(new ChangeListener() {
                         public void stateChanged(ChangeEvent ce) {
-                            // Create a deep copy of the editable image (so that we don't change the actual
-                            // editable image)
-                            EditableImage copyImage = actualImage.deepCopyEditableImage();
-                            // Set the target to have this new copy of the actual image.
-                            target.setImage(copyImage);
-                            // Apply the brightness change to the new copy of the actual image.
-                            if (jslider.getValue() == 0) { // No change in contrast to apply.
-                                return;
-                            }
-                            target.getImage().apply(new ContrastFilter(jslider.getValue()));
-                            target.repaint();
-                            target.getParent().revalidate();
+                            preview.update(jslider.getValue() == 0 ? null : new ContrastFilter(jslider.getValue()));
                         }
                     });
 
                     int select = JOptionPane.showOptionDialog(Andie.frame, jslider,
                             LanguageActions.getLocaleString("contrastSlid"),
                             JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
+                    // Hand over the preview of the chosen value so applying it does not work it out again.
+                    preview.close(select == JOptionPane.OK_OPTION ? new ContrastFilter(jslider.getValue()) : null);
                     if (select == JOptionPane.CANCEL_OPTION || select == JOptionPane.CLOSED_OPTION) {
                         // Set the image in target back to the actual image and repaint.
                         target.setImage(actualImage);
@@ -1,8 +1,7 @@
 package cosc202.andie;
 
 import java.awt.image.*;
-import javax.swing.*;
-import java.awt.HeadlessException;
+import java.util.Objects;
 
 /**
  * <p>
@@ -21,7 +20,7 @@ import java.awt.HeadlessException;
  * </p>
  *
  */
-public class ContrastFilter implements ImageOperation, java.io.Serializable {
+public class ContrastFilter implements PointOperation, java.io.Serializable {
 
     /** The size of the scale which is what is used to determine the contrast. */
     int value;
@@ -47,7 +46,8 @@ public class ContrastFilter implements ImageOperation, java.io.Serializable {
      * The ContrastFilter class is used to apply a contrast filter to a
      * BufferedImage. The amount of contrast applied is determined by the 
      * value field, which is set by the constructor. The apply method applies the contrast 
-     * filter to the input image and returns the filtered image.
+     * filter to the input image and returns the filtered image. The input image is
+     * modified directly if it is a TYPE_INT_ARGB image.
      * </p>
      * 
      * @param previousImage the input image to filter
@@ -56,25 +56,65 @@ public class ContrastFilter implements ImageOperation, java.io.Serializable {
      */
     @Override
     public BufferedImage apply(BufferedImage previousImage) {
-        try {
-            float contrast = 1.0f + ((float) value) / 100.0f;
-            RescaleOp rescale = new RescaleOp(contrast, (-12.75f * contrast), null);
-            rescale.filter(previousImage, previousImage);
-        } catch (IllegalArgumentException e) {
-            // This will not happen by the way we have set it up.
-            // But, occurs if there is an issue with the scaling factors or colour model.
-            // Tell the user and do nothing.
-            try {
-                JOptionPane.showMessageDialog(null, "Sorry, there has been an error in changing the contrast.", "Error",
-                        JOptionPane.ERROR_MESSAGE);
-            } catch (HeadlessException eh) {
-                // Headless exception, thrown when the code is dependent on a keyboard or mouse.
+        float contrast = 1.0f + ((float) value) / 100.0f;
+        PixelBuffer pixels = PixelBuffer.of(previousImage);
+        pixels.rescale(contrast, (-12.75f * contrast));
+        return pixels.getImage();
+    }
+
+    /**
+     * <p>
+     * Get the change this contrast filter makes to each pixel, for combining with other
+     * {@link PointOperation}s.
+     * </p>
+     * 
+     * @return A transform scaling and offsetting the red, green and blue values by the contrast.
+     */
+    @Override
+    public PointTransform getTransform() {
+        float contrast = 1.0f + ((float) value) / 100.0f;
+        return PointTransform.of(PixelBuffer.rescaleTable(contrast, (-12.75f * contrast)));
+    }
 
-                // Won't happen for our users, so just exit.
-                System.exit(1);
-            }
+    /**
+     * <p>
+     * Check whether another object is a ContrastFilter with the same contrast change.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a ContrastFilter with the same contrast change, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
         }
-        return previousImage;
+        ContrastFilter other = (ContrastFilter) obj;
+        return value == other.value;
+    }
+
+    /**
+     * <p>
+     * Get a hash code for this ContrastFilter, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), value);
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this ContrastFilter made up of its contrast change.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "ContrastFilter(value=" + value + ")";
     }
 
 }
@@ -20,7 +20,7 @@ import java.awt.image.*;
  * @author Steven Mills
  * @version 1.0
  */
-public class ConvertToGrey implements ImageOperation, java.io.Serializable {
+public class ConvertToGrey implements PointOperation, java.io.Serializable {
 
     /**
      * <p>
@@ -48,21 +48,94 @@ public class ConvertToGrey implements ImageOperation, java.io.Serializable {
      */
     public BufferedImage apply(BufferedImage input) {
   
-        for (int y = 0; y < input.getHeight(); ++y) {
-            for (int x = 0; x < input.getWidth(); ++x) {
-                int argb = input.getRGB(x, y);
-                int a = (argb & 0xFF000000) >> 24;
-                int r = (argb & 0x00FF0000) >> 16;
-                int g = (argb & 0x0000FF00) >> 8;
-                int b = (argb & 0x000000FF);
+        PixelBuffer pixels = PixelBuffer.of(input);
+        int[] data = pixels.getData();
+        VectorSupport.RowKernel vector = VectorSupport.kernel("grey");
+        for (int y = 0; y < pixels.getHeight(); ++y) {
+            int row = pixels.index(0, y);
+            VectorSupport.applyRow(ConvertToGrey::greyRow, vector,
+                    data, row, pixels.getStride(), data, row, pixels.getWidth());
+        }
+        
+        return pixels.getImage();
+    }
 
-                int grey = (int) Math.round(0.3*r + 0.6*g + 0.1*b);
+    /**
+     * <p>
+     * Get the change greyscale conversion makes to each pixel, for combining with other
+     * {@link PointOperation}s.
+     * </p>
+     * 
+     * @return A transform converting each pixel to grey.
+     */
+    @Override
+    public PointTransform getTransform() {
+        return PointTransform.grey();
+    }
 
-                argb = (a << 24) | (grey << 16) | (grey << 8) | grey;
-                input.setRGB(x, y, argb);
-            }
+    /**
+     * <p>
+     * Convert a run of pixels to greyscale, one pixel at a time.
+     * </p>
+     * 
+     * @param src The array to read pixels from.
+     * @param srcFrom The index of the first pixel to read.
+     * @param srcStride Not used.
+     * @param dst The array to write pixels to, which may be <code>src</code>.
+     * @param dstFrom The index of the first pixel to write.
+     * @param length The number of pixels in the run.
+     * @return The number of pixels done, which is all of them.
+     */
+    private static int greyRow(int[] src, int srcFrom, int srcStride, int[] dst, int dstFrom, int length) {
+        for (int x = 0; x < length; ++x) {
+            int argb = src[srcFrom + x];
+            int a = (argb & 0xFF000000) >> 24;
+            int r = (argb & 0x00FF0000) >> 16;
+            int g = (argb & 0x0000FF00) >> 8;
+            int b = (argb & 0x000000FF);
+
+            int grey = (int) Math.round(0.3*r + 0.6*g + 0.1*b);
+
+            argb = (a << 24) | (grey << 16) | (grey << 8) | grey;
+            dst[dstFrom + x] = argb;
         }
-        
-        return input;
+        return length;
+    }
+
+    /**
+     * <p>
+     * Check whether another object is also a ConvertToGrey. All ConvertToGreys are the same operation.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a ConvertToGrey, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null && obj.getClass() == getClass();
+    }
+
+    /**
+     * <p>
+     * Get a hash code for this ConvertToGrey, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return getClass().getName().hashCode();
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this ConvertToGrey, which has no parameters.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "ConvertToGrey()";
     }
 }
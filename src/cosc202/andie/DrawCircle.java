@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.awt.Graphics2D;
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.util.Objects;
 
 /**
  * <p>
@@ -123,4 +124,45 @@ public class DrawCircle implements ImageOperation, Serializable {
         return input;
     }
 
+    /**
+     * <p>
+     * Check whether another object is a DrawCircle with the same colour, position, size, fill and stroke width.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a DrawCircle with the same colour, position, size, fill and stroke width, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        DrawCircle other = (DrawCircle) obj;
+        return Objects.equals(col, other.col) && x == other.x && y == other.y && width == other.width && height == other.height && fill == other.fill && strokeWidth == other.strokeWidth;
+    }
+
+    /**
+     * <p>
+     * Get a hash code for this DrawCircle, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), col, x, y, width, height, fill, strokeWidth);
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this DrawCircle made up of its colour, position, size, fill and stroke width.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "DrawCircle(col=" + (col == null ? "none" : Integer.toHexString(col.getRGB())) + ",x=" + x + ",y=" + y + ",width=" + width + ",height=" + height + ",fill=" + fill + ",strokeWidth=" + strokeWidth + ")";
+    }
+
 }
@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.awt.Graphics2D;
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.util.Objects;
 
 /**
  * <p>
@@ -104,5 +105,45 @@ public class DrawLine implements ImageOperation, Serializable {
         // Returning the modified BufferedImage.
         return input;
     }
-    
+
+    /**
+     * <p>
+     * Check whether another object is a DrawLine with the same colour, end points and stroke width.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a DrawLine with the same colour, end points and stroke width, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        DrawLine other = (DrawLine) obj;
+        return Objects.equals(col, other.col) && enterX == other.enterX && enterY == other.enterY && exitX == other.exitX && exitY == other.exitY && strokeWidth == other.strokeWidth;
+    }
+
+    /**
+     * <p>
+     * Get a hash code for this DrawLine, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), col, enterX, enterY, exitX, exitY, strokeWidth);
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this DrawLine made up of its colour, end points and stroke width.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "DrawLine(col=" + (col == null ? "none" : Integer.toHexString(col.getRGB())) + ",enterX=" + enterX + ",enterY=" + enterY + ",exitX=" + exitX + ",exitY=" + exitY + ",strokeWidth=" + strokeWidth + ")";
+    }
 }
@@ -6,6 +6,7 @@ import java.awt.Graphics2D;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Rectangle;
+import java.util.Objects;
 
 /**
  * <p>
@@ -112,4 +113,45 @@ public class DrawRec implements ImageOperation, Serializable {
         return input;
     }
 
+    /**
+     * <p>
+     * Check whether another object is a DrawRec with the same rectangle, colour, fill and stroke width.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a DrawRec with the same rectangle, colour, fill and stroke width, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        DrawRec other = (DrawRec) obj;
+        return Objects.equals(r, other.r) && Objects.equals(col, other.col) && fill == other.fill && strokeWidth == other.strokeWidth;
+    }
+
+    /**
+     * <p>
+     * Get a hash code for this DrawRec, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), r, col, fill, strokeWidth);
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this DrawRec made up of its rectangle, colour, fill and stroke width.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "DrawRec(r=" + (r == null ? "none" : r.x + "," + r.y + "," + r.width + "," + r.height) + ",col=" + (col == null ? "none" : Integer.toHexString(col.getRGB())) + ",fill=" + fill + ",strokeWidth=" + strokeWidth + ")";
+    }
+
 }
@@ -5,10 +5,12 @@ import java.io.*;
 import java.awt.image.*;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.awt.GraphicsEnvironment;
 import java.awt.HeadlessException;
 import javax.imageio.*;
 import javax.swing.*;
 import java.nio.file.*;
+import java.util.concurrent.*;
 
 /**
  * <p>
@@ -29,6 +31,16 @@ import java.nio.file.*;
  * being used to allow undone operations to be redone.
  * </p>
  * 
+ * <p>
+ * The image shown in an {@link ImagePanel} is rendered in the background, so that the GUI
+ * stays responsive while a slow operation is applied. Changing the operations records the
+ * change straight away and starts a render to bring the current image up to date, replacing
+ * any render still going for an earlier change. When a render finishes, the new image is
+ * published with an <code>"image"</code> property change on the event dispatch thread.
+ * Copies made by {@link deepCopyEditableImage}, which are only used for previews, are
+ * rendered straight away instead.
+ * </p>
+ * 
  * <p> 
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
  * </p>
@@ -40,8 +52,8 @@ public class EditableImage {
 
     /** The original image. This should never be altered by ANDIE. */
     private BufferedImage original;
-    /** The current image, the result of applying {@link ops} to {@link original}. */
-    private BufferedImage current;
+    /** The current image, the result of applying {@link ops} to {@link original} once rendered. */
+    private volatile BufferedImage current;
     /** The sequence of operations currently applied to the image. */
     private Stack<ImageOperation> ops;
     /** A memory of 'undone' operations to support 'redo'. */
@@ -59,6 +71,22 @@ public class EditableImage {
     private JFrame frame;
     /** Keeps track of if this is just a dummy image used to preview actions */
     private boolean dummy;
+    /** Intermediate images kept so that {@link refresh} does not have to start from {@link original}. */
+    private CheckpointStore checkpoints;
+    /** The {@link RenderCache} key of {@link original}, worked out when first needed. */
+    private volatile String originalKey;
+    /** The number of operations {@link current} is the result of, or -1 if it is not the result of a prefix of {@link ops}. */
+    private int currentDepth;
+    /** Counts changes to {@link ops}, so that a render can tell when it has been replaced by a newer one. */
+    private volatile int generation;
+    /** Whether renders are done on the {@link JobScheduler} rather than straight away. */
+    private boolean background;
+    /** The latest render submitted to the {@link JobScheduler}, or null if there has not been one. */
+    private CompletableFuture<Void> pending;
+    /** The scale {@link current} was worked out at, less than 1 for previews worked out on a proxy. */
+    private double previewScale = 1;
+    /** Why the latest background render failed, or null if it did not. */
+    private volatile Throwable renderError;
 
     /**
      * <p>
@@ -80,6 +108,9 @@ public class EditableImage {
         opsFilename = null;
         this.frame = frame;
         dummy = false;
+        background = true;
+        currentDepth = -1;
+        checkpoints = new CheckpointStore();
     }
 
     /**
@@ -112,6 +143,9 @@ public class EditableImage {
         this.opsFilename = opsFilename;
         this.frame = frame;
         dummy = true;
+        background = false;
+        currentDepth = ops.size();
+        checkpoints = new CheckpointStore();
     }
 
     /**
@@ -209,12 +243,19 @@ public class EditableImage {
             this.imageFilename = filePath;
             this.opsFilename = this.imageFilename + ".ops";
             File imageFile = new File(imageFilename);
-            original = ImageIO.read(imageFile);
-            current = deepCopy(original);
-            // This clears the image operations, possibly from the prior open image.
-            ops.clear();
-            redoOps.clear();
-            savedOps.clear();
+            BufferedImage opened = ImageIO.read(imageFile);
+            synchronized (this) {
+                original = opened;
+                current = deepCopy(original);
+                currentDepth = 0;
+                generation++;
+                // This clears the image operations, possibly from the prior open image.
+                ops.clear();
+                redoOps.clear();
+                savedOps.clear();
+                checkpoints.clear();
+                originalKey = null;
+            }
         }
         catch (Exception e){
             // This will happen for various reasons. But, will not happen by the way it is set up.
@@ -236,7 +277,10 @@ public class EditableImage {
             // which there is actually a type mismatch for one of the
             // elements within the Stack, i.e., a non-ImageOperation.
             Stack<ImageOperation> opsFromFile = (Stack<ImageOperation>) objIn.readObject();
-            ops = opsFromFile;
+            synchronized (this) {
+                ops = opsFromFile;
+                generation++;
+            }
             // Note, I have added this here so we can tell if the current edited image is saved.
             // i.e. if the currentOps matches the savedOps.
             savedOps = (Stack<ImageOperation>)ops.clone();
@@ -319,32 +363,73 @@ public class EditableImage {
      * Allows user to enter new name for the file and sets type as .png for default
      * </p>
      * 
+     * <p>
+     * If this image renders in the background, the export waits for any render still going
+     * with {@link whenRendered} rather than blocking the user interface, and the file is then
+     * written by a {@link JobScheduler.Priority#RENDER} job on the shared {@link JobScheduler}.
+     * So the file may not have been written yet when this method returns.
+     * </p>
+     * 
      * @param imageFilename the new file name that image will get exported to.
      */
     public void export(String imageFilename) {
         // Deleted the code line below so that once you export an image, you are still working with the original image
         // with the original image opertaions file. This felt more natural.
         // this.imageFilename = imageFilename; //sets file name based on export method in FileActions
+        if (!background) {
+            writeExport(current, imageFilename);
+            return;
+        }
+        whenRendered(() -> {
+            BufferedImage image = current;
+            // Each export is its own owner, so that one export never supersedes another.
+            JobScheduler.getShared().submit(new Object(), JobScheduler.Priority.RENDER,
+                    context -> writeExport(image, imageFilename));
+        });
+    }
+
+    /**
+     * <p>
+     * Write an exported image to a file, letting the user know if it could not be written.
+     * </p>
+     * 
+     * @param image The image to write.
+     * @param imageFilename The file name to write it to, whose extension gives the format.
+     */
+    private static void writeExport(BufferedImage image, String imageFilename) {
         try {
             // Find extension of the file. In all cases this will be png.
             String extension = imageFilename.substring(1+imageFilename.lastIndexOf(".")).toLowerCase();
             // Writes image to file using ImageIO.
-            ImageIO.write(current, extension, new File(imageFilename));  
+            ImageIO.write(image, extension, new File(imageFilename));  
         } catch (Exception e) {
             // This will not happen by the way we have set it up.
             // But, occurs if the file name is null, or if there is an error in writting to the file.
             // So, just in case, let the user know there was an issue and do nothing.
-            try {
-                JOptionPane.showMessageDialog(null,   LanguageActions.getLocaleString("errorExport"), LanguageActions.getLocaleString("error"), JOptionPane.ERROR_MESSAGE);
-            }   
-            catch (HeadlessException eh) {
-                // Headless exception, thrown when the code is dependent on a keyboard or mouse. 
-                // Won't happen for our users, so just exit.
-                System.exit(1);
+            if (!SwingUtilities.isEventDispatchThread()) {
+                SwingUtilities.invokeLater(EditableImage::exportFailed);
+            } else {
+                exportFailed();
             }
         }
     }
 
+    /**
+     * <p>
+     * Let the user know an export could not be written.
+     * </p>
+     */
+    private static void exportFailed() {
+        try {
+            JOptionPane.showMessageDialog(null,   LanguageActions.getLocaleString("errorExport"), LanguageActions.getLocaleString("error"), JOptionPane.ERROR_MESSAGE);
+        }   
+        catch (HeadlessException eh) {
+            // Headless exception, thrown when the code is dependent on a keyboard or mouse. 
+            // Won't happen for our users, so just exit.
+            System.exit(1);
+        }
+    }
+
     /**
      * <p>
      * Apply an {@link ImageOperation} to this image. This also updates the header of the main
@@ -352,13 +437,28 @@ public class EditableImage {
      * associated .ops file.
      * </p>
      * 
+     * <p>
+     * The operation is added to {@link ops} straight away, but the image is only brought up
+     * to date by {@link render}, which may still be going when this returns.
+     * </p>
+     * 
      * @param op The operation to apply.
      */
     public void apply(ImageOperation op) {
-        current = op.apply(current);
-        @SuppressWarnings("unchecked")
-        Stack<ImageOperation> oldOps = (Stack<ImageOperation>) ops.clone();
-        ops.add(op);
+        Stack<ImageOperation> oldOps;
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            Stack<ImageOperation> copy = (Stack<ImageOperation>) ops.clone();
+            oldOps = copy;
+            ops.add(op);
+            // Anything remembered from this depth on belonged to a different operation.
+            checkpoints.invalidateFrom(ops.size());
+            if (currentDepth >= ops.size()) {
+                currentDepth = -1;
+            }
+            generation++;
+        }
+        render();
         // For PropertyChangeListeners:
         propertyChangeSupport.firePropertyChange("ops", oldOps, ops);
         // Make the image file name appear in the header of the main GUI (particularily, if it is saved).
@@ -438,15 +538,7 @@ public class EditableImage {
      * @return 1 if the undone operation was a resize or rotation, 0 otherwise.
      */
     public int undo() {
-        // int to tell us if the redone operation was a resize.
-        int resizeOrRotate = 0;
-        ImageOperation un = ops.pop();
-        if (un instanceof ImageResize50 || un instanceof ImageResize150 || un instanceof ImageResizeN || un instanceof RotateRight || un instanceof RotateLeft || un instanceof IMacro || un instanceof RegionCrop) {
-            resizeOrRotate = 1;
-        }
-        redoOps.push(un); 
-        refresh();
-        return resizeOrRotate;
+        return goTo(ops.size() - 1);
     }
 
     /**
@@ -466,16 +558,7 @@ public class EditableImage {
      * @return 1 if any of the undone operations was a resize or rotation, 0 otherwise.
      */
     public int undoAll() {
-        // int to tell us if the redone operation was a resize.
-        int resizeOrRotate = 0;
-        while(this.hasOps()) { // Keep undoing until all operations are gone
-            int r = this.undo(); // Undoes the operation
-            if (r == 1) { // If there is a single resize or rotation that was undone, we keep track of it
-                resizeOrRotate = 1;
-            }
-        }
-        refresh(); 
-        return resizeOrRotate;
+        return goTo(0);
     }
 
     /**
@@ -495,18 +578,114 @@ public class EditableImage {
      * @return 1 if the redone operation was a resize or rotation, 0 otherwise.
      */
     public int redo()  {
-        // int to tell us if the redone operation was a resize.
+        return goTo(ops.size() + 1);
+    }
+
+    /**
+     * <p>
+     * Move to any step in the history of the image, undoing or redoing operations as needed.
+     * Also tells you if any of the undone or redone image operations was a resize or rotation 
+     * by returing 1, or that none were by returning 0.
+     * </p>
+     * 
+     * <p>
+     * Step 0 is the original image, step {@link getStep} is the current image, and step
+     * {@link getHistorySize} is the image with every undone operation redone.
+     * The step is changed straight away, and the image is brought up to date by {@link render}.
+     * The image being moved away from is kept in {@link checkpoints} (budget permitting), so 
+     * moving back to it is just a restore. Otherwise, the image is restored from the nearest
+     * checkpoint or {@link RenderCache} entry, and only the operations after it are replayed.
+     * Redoing a single operation that has no checkpoint only applies that operation to the
+     * current image.
+     * </p>
+     * 
+     * @param step The number of operations that should be applied to the image.
+     * @return 1 if any of the undone or redone operations was a resize or rotation, 0 otherwise.
+     * @throws IllegalArgumentException If the step is not between 0 and {@link getHistorySize}.
+     */
+    public int goTo(int step) {
+        if (step < 0 || step > getHistorySize()) {
+            throw new IllegalArgumentException("No step " + step + " in the image history.");
+        }
+        int from = ops.size();
+        // int to tell us if any of the undone or redone operations was a resize.
         int resizeOrRotate = 0;
-        ImageOperation re = redoOps.pop();
-        // If the image operation was a resize operation, return 1.
-        if (re instanceof ImageResize50 || re instanceof ImageResize150 || re instanceof ImageResizeN || re instanceof RotateRight || re instanceof RotateLeft || re instanceof IMacro || re instanceof RegionCrop) {
-            resizeOrRotate = 1;
+        // The operations before the first redo and after each one, to tell the PropertyChangeListeners once the lock is released.
+        List<Stack<ImageOperation>> redone = new ArrayList<Stack<ImageOperation>>();
+        synchronized (this) {
+            while (ops.size() > step) {
+                ImageOperation un = ops.pop();
+                if (isResizeOrRotate(un)) {
+                    resizeOrRotate = 1;
+                }
+                redoOps.push(un);
+            }
+            while (ops.size() < step) {
+                ImageOperation re = redoOps.pop();
+                if (isResizeOrRotate(re)) {
+                    resizeOrRotate = 1;
+                }
+                if (redone.isEmpty()) {
+                    @SuppressWarnings("unchecked")
+                    Stack<ImageOperation> oldOps = (Stack<ImageOperation>) ops.clone();
+                    redone.add(oldOps);
+                }
+                ops.push(re);
+                @SuppressWarnings("unchecked")
+                Stack<ImageOperation> newOps = (Stack<ImageOperation>) ops.clone();
+                redone.add(newOps);
+            }
+            if (step != from) {
+                generation++;
+            }
+        }
+        if (step == from) {
+            return resizeOrRotate;
+        }
+        render();
+        // For PropertyChangeListeners, in the same way as apply does.
+        for (int i = 1; i < redone.size(); i++) {
+            propertyChangeSupport.firePropertyChange("ops", redone.get(i - 1), redone.get(i));
         }
-        apply(re);
-        refresh();
+        // Update the title of the main frame of the GUI.
+        updateFrameTitle();
         return resizeOrRotate;
     }
 
+    /**
+     * <p>
+     * Get the current step in the history of the image, i.e. the number of operations applied.
+     * </p>
+     * 
+     * @return The current step.
+     */
+    public int getStep() {
+        return ops.size();
+    }
+
+    /**
+     * <p>
+     * Get the number of steps in the history of the image, including any undone operations.
+     * </p>
+     * 
+     * @return The number of operations applied plus the number that can be redone.
+     */
+    public int getHistorySize() {
+        return ops.size() + redoOps.size();
+    }
+
+    /**
+     * <p>
+     * Check whether an operation may change the dimensions of the image.
+     * </p>
+     * 
+     * @param op The operation to check.
+     * @return True if the operation is a resize, rotation, macro or crop, false otherwise.
+     */
+    private static boolean isResizeOrRotate(ImageOperation op) {
+        return op instanceof ImageResize50 || op instanceof ImageResize150 || op instanceof ImageResizeN || op instanceof RotateRight || op instanceof RotateLeft || op instanceof IMacro || op instanceof RegionCrop;
+    }
+
     /**
      * <p>
      * Method to help an {@code IOperationRecorder} to see the last 
@@ -554,16 +733,436 @@ public class EditableImage {
      * cannot be easily incrementally updated. 
      * </p>
      * 
+     * <p>
+     * Rather than always starting from the original, the replay starts from the nearest
+     * checkpoint in {@link checkpoints} or {@link RenderCache} entry, and the operations 
+     * replayed are timed and offered as new checkpoints along the way.
+     * </p>
+     * 
      */
     private void refresh()  {
-        current = deepCopy(original);
-        for (ImageOperation op: ops) {
-            current = op.apply(current);
+        synchronized (this) {
+            currentDepth = -1;
+            generation++;
         }
+        render();
         // Update the title of the main frame of the GUI.
         updateFrameTitle();
     }
 
+    /**
+     * <p>
+     * Start bringing {@link current} up to date with {@link ops}, replacing any render still
+     * going for an earlier change.
+     * </p>
+     * 
+     * <p>
+     * The render is submitted to the shared {@link JobScheduler} as a
+     * {@link JobScheduler.Priority#RENDER} job if this image renders in the background, or done
+     * straight away otherwise. The scheduler supersedes the render for the earlier change: one
+     * that has not started yet is dropped, and one that has started has its
+     * {@link OperationContext} cancelled, so it gives up at the next tile or band of the
+     * operation it is applying.
+     * </p>
+     */
+    private void render() {
+        int gen = generation;
+        if (!background) {
+            renderNow(gen, new OperationContext());
+            return;
+        }
+        synchronized (this) {
+            pending = JobScheduler.getShared().submit(this, JobScheduler.Priority.RENDER, context -> {
+                try {
+                    renderNow(gen, context);
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (RuntimeException | Error e) {
+                    SwingUtilities.invokeLater(() -> renderFailed(gen, e));
+                    // The scheduler completes the render's future with it too.
+                    throw e;
+                }
+            });
+        }
+    }
+
+    /**
+     * <p>
+     * Bring {@link current} up to date with {@link ops} by the cheapest route available,
+     * unless they have changed since the render was started.
+     * </p>
+     * 
+     * <p>
+     * The result is taken straight from the {@link RenderCache} if it is there. Otherwise the
+     * deepest image available at or below the current step is found, whether a checkpoint,
+     * a render cache entry, or {@link current} itself if that is still the image after
+     * {@link currentDepth} operations, and the remaining operations are replayed from it.
+     * Replaying happens without holding the lock on this image, and only touches a copy of
+     * {@link current}, so that it can still be shown while the render goes on.
+     * </p>
+     * 
+     * @param gen The {@link generation} the render was started for.
+     * @param context The context to apply the operations in.
+     */
+    private void renderNow(int gen, OperationContext context) {
+        List<ImageOperation> snapshot;
+        synchronized (this) {
+            if (gen != generation) {
+                return;
+            }
+            snapshot = new ArrayList<ImageOperation>(ops);
+        }
+        int step = snapshot.size();
+        String[] keys = keysTo(snapshot, step);
+        RenderCache renderCache = RenderCache.getShared();
+        BufferedImage cached = renderCache.get(keys[step]);
+        if (cached != null) {
+            publish(cached, step, gen, true);
+            return;
+        }
+        BufferedImage image;
+        int depth;
+        boolean handOver = true;
+        boolean copyCurrent = false;
+        synchronized (this) {
+            if (gen != generation) {
+                return;
+            }
+            depth = checkpoints.nearest(step);
+            int hit = step - 1;
+            while (hit > depth && !renderCache.contains(keys[hit])) {
+                hit--;
+            }
+            if (currentDepth >= Math.max(depth, hit) && currentDepth < step) {
+                // Nothing better than the current image to start from, so carry on from it.
+                // Operations may change the image they are given, so in the background it is
+                // copied first, as it may still be painted.
+                depth = currentDepth;
+                image = current;
+                handOver = background;
+                copyCurrent = background;
+            } else {
+                BufferedImage partial = hit > depth ? renderCache.get(keys[hit]) : null;
+                if (partial != null) {
+                    depth = hit;
+                    image = partial;
+                } else {
+                    image = depth == 0 ? null : checkpoints.restore(depth);
+                }
+            }
+        }
+        if (image == null) {
+            image = deepCopy(original);
+        } else if (copyCurrent) {
+            image = deepCopy(image);
+        }
+        image = replay(snapshot, depth, image, gen, context);
+        if (image == null) {
+            return;
+        }
+        renderCache.put(keys[step], image);
+        publish(image, step, gen, handOver);
+    }
+
+    /**
+     * <p>
+     * Make a finished render the current image, unless the operations have changed since it
+     * was started, and let any <code>"image"</code> listeners know.
+     * </p>
+     * 
+     * <p>
+     * The image being replaced is handed over to the {@link checkpoints}, so that moving
+     * back to it is just a restore.
+     * </p>
+     * 
+     * @param image The rendered image.
+     * @param step The number of operations applied to get it.
+     * @param gen The {@link generation} the render was started for.
+     * @param handOver True if the image being replaced is no longer needed, false if it was
+     * changed by the render.
+     */
+    private void publish(BufferedImage image, int step, int gen, boolean handOver) {
+        synchronized (this) {
+            if (gen != generation) {
+                return;
+            }
+            if (handOver && current != null) {
+                checkpoints.keep(currentDepth, current);
+            }
+            current = image;
+            currentDepth = step;
+            renderError = null;
+        }
+        if (background) {
+            SwingUtilities.invokeLater(() -> propertyChangeSupport.firePropertyChange("image", null, image));
+        } else {
+            propertyChangeSupport.firePropertyChange("image", null, image);
+        }
+    }
+
+    /**
+     * <p>
+     * Wait for any render still going to finish, so that {@link getCurrentImage} is the result
+     * of all of the current operations.
+     * </p>
+     */
+    public void finishRendering() {
+        Future<?> job;
+        synchronized (this) {
+            job = pending;
+        }
+        if (job == null) {
+            return;
+        }
+        try {
+            job.get();
+        } catch (CancellationException e) {
+            // Replaced by a newer render, which is now the pending one.
+            synchronized (this) {
+                if (pending == job) {
+                    return;
+                }
+            }
+            finishRendering();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // The render failed, which has already been reported, and the image shown is left as it was.
+        }
+    }
+
+    /**
+     * <p>
+     * Do something on the event dispatch thread once any render still going has finished,
+     * without waiting for it.
+     * </p>
+     *
+     * <p>
+     * This is for work on the event dispatch thread that needs {@link getCurrentImage} to be
+     * the result of all of the current operations, which {@link finishRendering} would block
+     * the user interface for. If there is no render going, the action is done straight away.
+     * If the render fails, the action is still done, with the image as it was before the render.
+     * </p>
+     *
+     * @param action The thing to do.
+     */
+    public void whenRendered(Runnable action) {
+        CompletableFuture<Void> job;
+        synchronized (this) {
+            job = pending;
+        }
+        if (job == null || job.isDone() && !job.isCancelled()) {
+            action.run();
+            return;
+        }
+        job.whenComplete((result, e) -> SwingUtilities.invokeLater(() -> {
+            boolean replaced;
+            synchronized (this) {
+                replaced = pending != job;
+            }
+            if (job.isCancelled() && replaced) {
+                // Replaced by a newer render, which is now the pending one.
+                whenRendered(action);
+            } else {
+                action.run();
+            }
+        }));
+    }
+
+    /**
+     * <p>
+     * Report that a background render failed, on the event dispatch thread.
+     * </p>
+     *
+     * <p>
+     * The image shown is left as it was before the render. Listeners are told with a
+     * <code>"renderError"</code> property change, and the user with an error message, unless the
+     * render has since been replaced by a newer one or this is a dummy image used for previews.
+     * </p>
+     *
+     * @param gen The {@link generation} the render was started for.
+     * @param e The exception or error, such as running out of memory, the render failed with.
+     */
+    private void renderFailed(int gen, Throwable e) {
+        if (gen != generation) {
+            return;
+        }
+        renderError = e;
+        propertyChangeSupport.firePropertyChange("renderError", null, e);
+        if (dummy || GraphicsEnvironment.isHeadless()) {
+            return;
+        }
+        try {
+            JOptionPane.showMessageDialog(null, LanguageActions.getLocaleString("errorRender"), LanguageActions.getLocaleString("error"), JOptionPane.ERROR_MESSAGE);
+        } catch (HeadlessException eh) {
+            // Won't happen, as headless environments were checked for above.
+        }
+    }
+
+    /**
+     * <p>
+     * Get why the latest background render failed.
+     * </p>
+     *
+     * @return The exception or error the render failed with, or null if the latest render has not failed.
+     */
+    public Throwable getRenderError() {
+        return renderError;
+    }
+
+    /**
+     * <p>
+     * Choose whether this image is rendered in the background or straight away.
+     * </p>
+     * 
+     * <p>
+     * Images for {@link ImagePanel}s render in the background, and copies made for previews
+     * render straight away.
+     * </p>
+     * 
+     * @param background True to render in the background, false to render straight away.
+     */
+    public void setBackgroundRendering(boolean background) {
+        finishRendering();
+        this.background = background;
+    }
+
+    /**
+     * <p>
+     * Check whether this image is rendered in the background or straight away.
+     * </p>
+     *
+     * <p>
+     * Renders in the background never change the current image in place, but replace it with
+     * a new one, whereas renders straight away may build on the current image itself.
+     * </p>
+     *
+     * @return True if this image is rendered in the background, false otherwise.
+     */
+    public boolean isBackgroundRendering() {
+        return background;
+    }
+
+    /**
+     * <p>
+     * Work out the {@link RenderCache} keys of the image after each number of operations.
+     * </p>
+     * 
+     * @param list The operations, which are {@link ops} or a copy of them.
+     * @param depth The number of operations to work out keys up to.
+     * @return The keys, where index <code>i</code> holds the key after <code>i</code> operations.
+     * An entry is null if the operations up to it cannot all be fingerprinted.
+     */
+    private String[] keysTo(List<ImageOperation> list, int depth) {
+        String[] keys = new String[depth + 1];
+        keys[0] = getOriginalKey();
+        for (int i = 0; i < depth; i++) {
+            keys[i + 1] = RenderCache.keyOf(keys[i], list.get(i));
+        }
+        return keys;
+    }
+
+    /**
+     * <p>
+     * Work out the {@link RenderCache} key of the image after the given number of operations.
+     * </p>
+     * 
+     * @param depth The number of operations.
+     * @return The key, or null if the operations up to it cannot all be fingerprinted.
+     */
+    private String keyAt(int depth) {
+        return keysTo(ops, depth)[depth];
+    }
+
+    /**
+     * <p>
+     * Get the {@link RenderCache} key of the original image.
+     * </p>
+     * 
+     * @return The key of {@link original}, or null if there is no image.
+     */
+    public String getOriginalKey() {
+        BufferedImage image = original;
+        if (originalKey == null && image != null) {
+            // Hashing is slow, so it is done without the lock, and only kept if the original is unchanged.
+            String key = RenderCache.keyOf(image);
+            synchronized (this) {
+                if (original == image) {
+                    originalKey = key;
+                }
+            }
+            return key;
+        }
+        return originalKey;
+    }
+
+    /**
+     * <p>
+     * Get the {@link RenderCache} key of the current image, after all of its operations.
+     * </p>
+     * 
+     * @return The key of {@link current}, or null if the operations cannot all be fingerprinted.
+     */
+    public String getCurrentKey() {
+        return keyAt(ops.size());
+    }
+
+    /**
+     * <p>
+     * Apply the operations after the given depth to an image, which must be the image after
+     * that many operations.
+     * </p>
+     * 
+     * <p>
+     * The operations are applied by an {@link OperationPlan}, which does each run of rotations,
+     * flips and crops, and each run of {@link PointOperation}s, in one pass.
+     * They are timed and offered as new checkpoints along the way, wherever the plan reaches
+     * the image after some number of them. The replay gives up if {@link ops} are changed
+     * between steps of the plan, or if the context is cancelled part way through a step.
+     * </p>
+     * 
+     * @param list The operations, copied from {@link ops} when the render started.
+     * @param depth The number of operations already applied to the image.
+     * @param image The image to apply the rest of the operations to, which may be changed.
+     * @param gen The {@link generation} the render was started for.
+     * @param context The context to apply the operations in, with each step given an equal slice.
+     * @return The image after all of the operations, or null if the replay gave up.
+     */
+    private BufferedImage replay(List<ImageOperation> list, int depth, BufferedImage image, int gen, OperationContext context) {
+        OperationPlan plan = new OperationPlan(list, depth);
+        long start = System.nanoTime();
+        for (int i = 0; i < plan.size(); i++) {
+            if (gen != generation) {
+                return null;
+            }
+            ImageOperation op = plan.getOperation(i);
+            if (op != null) {
+                try {
+                    image = op.apply(image, context.slice((double) i / plan.size(), (double) (i + 1) / plan.size()));
+                } catch (CancellationException e) {
+                    return null;
+                }
+            }
+            int reached = plan.getDepth(i);
+            if (reached > depth) {
+                // The time since the last depth reached is shared between the operations done.
+                long nanos = (System.nanoTime() - start) / (reached - depth);
+                synchronized (this) {
+                    if (gen != generation) {
+                        return null;
+                    }
+                    while (depth < reached) {
+                        depth++;
+                        checkpoints.recordCost(depth, nanos);
+                    }
+                    checkpoints.offer(depth, image);
+                }
+                start = System.nanoTime();
+            }
+        }
+        return image;
+    }
+
     /**
      * <p>
      * Method to create and return a reference to a deep copy of this {@link EditableImage}.
@@ -585,6 +1184,8 @@ public class EditableImage {
      */
     @SuppressWarnings("unchecked")
     public EditableImage deepCopyEditableImage()  {
+        // The copy starts from the image after all of the current operations.
+        finishRendering();
         // Create deep copies of all data feilds.
         BufferedImage origin = deepCopy(original);
         BufferedImage curr = deepCopy(current);
@@ -595,10 +1196,66 @@ public class EditableImage {
         String ofn = opsFilename;
         // Construct a new editable image.
         EditableImage copy = new EditableImage(origin, curr, o, r, s, ifn, ofn, frame);
+        // The original is the same, so there is no need to hash it again.
+        copy.originalKey = getOriginalKey();
+        copy.currentDepth = currentDepth;
         // Return new editable image.
         return copy;
     }
 
+    /**
+     * <p>
+     * Make an EditableImage showing the result of one more operation applied to this one,
+     * without applying it.
+     * </p>
+     *
+     * <p>
+     * This is a lightweight version of {@link deepCopyEditableImage} for showing previews
+     * worked out elsewhere, such as by a {@link PreviewController}. The original image and the
+     * result are shared rather than copied, so neither should be changed while it is shown.
+     * </p>
+     *
+     * <p>
+     * Previews may be worked out on a downscaled proxy of this image. The scale of the proxy is
+     * kept as the {@link getPreviewScale}, so that the preview is shown at the size the result
+     * of applying the operation would be.
+     * </p>
+     *
+     * @param op The operation the preview is of.
+     * @param result The result of applying the operation to this image, or to a proxy of it.
+     * @param scale The scale of the proxy the result was worked out on, or 1 if there was none.
+     * @return The EditableImage showing the preview.
+     */
+    @SuppressWarnings("unchecked")
+    public EditableImage previewOf(ImageOperation op, BufferedImage result, double scale) {
+        Stack<ImageOperation> o;
+        synchronized (this) {
+            o = (Stack<ImageOperation>)ops.clone();
+        }
+        o.push(op);
+        EditableImage preview = new EditableImage(original, result, o, new Stack<ImageOperation>(),
+                (Stack<ImageOperation>)savedOps.clone(), imageFilename, opsFilename, frame);
+        preview.originalKey = originalKey;
+        preview.previewScale = scale;
+        return preview;
+    }
+
+    /**
+     * <p>
+     * Get the scale the current image was worked out at.
+     * </p>
+     *
+     * <p>
+     * This is 1, except for previews made by {@link previewOf} that were worked out on a
+     * downscaled proxy, whose current image is smaller than the result it stands in for.
+     * </p>
+     *
+     * @return The scale of the current image.
+     */
+    public double getPreviewScale() {
+        return previewScale;
+    }
+
     /**
      * <p>
      * Method to determine if the operations currently applied to this EditableImage
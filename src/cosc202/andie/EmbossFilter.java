@@ -1,7 +1,8 @@
 package cosc202.andie;
 
 import java.awt.image.*;
-import java.awt.*;
+import java.util.Objects;
+import java.util.Arrays;
 
 /**
  * <p>
@@ -22,7 +23,7 @@ import java.awt.*;
  * 
  * @author Stella Srzich (Modified from Steven Mills)
  */
-public class EmbossFilter implements ImageOperation, java.io.Serializable {
+public class EmbossFilter implements TileOperation, java.io.Serializable {
 
     /**
      * This boolean gives us the option to apply the emboss filter after a gaussian blur
@@ -157,7 +158,19 @@ public class EmbossFilter implements ImageOperation, java.io.Serializable {
 
     /**
      * <p>
-     * Apply an emboss filter to an image.
+     * Get how far from an output pixel the emboss filter reads. This is 1 for
+     * the 3x3 kernel, plus 1 for the Gaussian blur if removeNoise is true.
+     * </p>
+     * 
+     * @return The halo needed around each tile.
+     */
+    public int getHalo() {
+        return removeNoise ? 2 : 1;
+    }
+
+    /**
+     * <p>
+     * Apply an emboss filter to one tile of an image.
      * </p>
      * 
      * <p>
@@ -171,181 +184,130 @@ public class EmbossFilter implements ImageOperation, java.io.Serializable {
      * This class also provides option to apply the emboss filter after a gaussian blur
      * filter with radius 1 is applied. This works better for natural images where there is a lot of
      * noise potentially obstructing the actual edges. If it is true, the gaussian blur filter with radius 1 is applied
-     * before we apply the emboss filter.
+     * before we apply the emboss filter. Pixels beyond the edge of the image take the value of the nearest edge pixel.
      * </p>
      * 
-     * @param input The image to apply the emboss filter to.
-     * @return The resulting (embossed) image.
+     * @param src The ARGB pixels of the tile and its halo.
+     * @param dst The array to write the ARGB pixels of the resulting (embossed) tile into.
+     * @param width The width of the tile, not including the halo.
+     * @param height The height of the tile, not including the halo.
      */
-    public BufferedImage apply(BufferedImage input) {
-        // Create a new image with the same values as in the original image, but with 
-        // the edge pixel values copied to new edge pixel values (the image is bigger by the radius of the kernel)
-        // on each side and the top and bottom.
-        int radius = 1;
-        BufferedImage edgesPlusInput = new BufferedImage(input.getWidth() + 2*radius, input.getHeight() + 2*radius, BufferedImage.TYPE_INT_ARGB);
-        // Fill the pixel values of this new buffered image.
-        for (int y = 0; y < input.getHeight(); ++y) {
-            for (int x = 0; x < input.getWidth(); ++x) {
-                // Copy over pixel values from the original image to pixels to the right and lower by 'radius' amount.
-                edgesPlusInput.setRGB(x + radius, y + radius, input.getRGB(x, y));
-                // If we are at an edge, then we copy that value to the values above/below/right/left.
-                if (y == 0) { // We are at the top of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i, input.getRGB(x, y));
-                    }
-                }
-                else if (y == input.getHeight() - 1) { // We are at the bottom of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i + input.getHeight() + radius, input.getRGB(x, y));
-                    }
-                }
-                if (x == 0) { // We are at the left of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i, y + radius, input.getRGB(x, y));
-                    }
-                }
-                else if (x == input.getWidth() - 1) { // We are at the right of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i + input.getWidth() + radius, y + radius, input.getRGB(x, y));
-                    }
-                }
-                // Dealing with corners.
-                if (x == 0 && y == 0) { // Top left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b, input.getRGB(x, y));
-                        }
-                    }
-                }
-                else if (x == 0 && y == input.getHeight() - 1) { // Bottom left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b + input.getHeight() + radius, input.getRGB(x, y));
-                        }
-                    }
-                }
-                else if (x == input.getWidth() - 1 && y == 0) { // Top right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b, input.getRGB(x, y));
-                        }
-                    }
-                }
-                else if (x == input.getWidth() - 1 && y == input.getHeight() - 1) { // Bottom right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b + input.getHeight() + radius, input.getRGB(x, y));
-                        }
-                    }
-                }
-            }
-        }
-
+    public void applyTile(int[] src, int[] dst, int width, int height) {
+        // The tile with a one pixel border around it, which is all the kernel needs.
+        int[] pixels = src;
+        int srcWidth = width + 2;
         // If we want to remove the noise, apply a gaussian blur filter of radius 1.
+        // This reads the outer pixel of the halo to blur the tile and its border.
         if (removeNoise) {
-            GaussianBlurFilter blur =  new GaussianBlurFilter();
-            edgesPlusInput = blur.apply(edgesPlusInput);
+            pixels = new int[srcWidth * (height + 2)];
+            new GaussianBlurFilter().applyTile(src, pixels, srcWidth, height + 2);
         }
 
-        // Apply the emboss filter to the new buffered image that has extended edges.
+        // Apply the emboss filter to the tile, a row at a time.
+        VectorSupport.RowKernel vector = VectorSupport.kernel("emboss", (Object) kernel);
+        for (int y = 0; y < height; y++) {
+            VectorSupport.applyRow(this::embossRow, vector, pixels, y * srcWidth, srcWidth, dst, y * width, width);
+        }
+    }
+
+    /**
+     * <p>
+     * Emboss a run of pixels, one pixel at a time.
+     * </p>
+     * 
+     * <p>
+     * Every emboss kernel is a 1 and a -1 on opposite sides of the centre, so each channel of a
+     * pixel is just the difference between two of its neighbours. These are read straight out of
+     * <code>pixels</code>, without allocating anything.
+     * </p>
+     * 
+     * @param pixels The array to read pixels from.
+     * @param srcFrom The index of the top left of the neighbourhood of the first pixel.
+     * @param srcWidth The distance in <code>pixels</code> from one row to the next.
+     * @param dst The array to write pixels to.
+     * @param dstFrom The index of the first pixel to write.
+     * @param length The number of pixels in the run.
+     * @return The number of pixels done, which is all of them.
+     */
+    private int embossRow(int[] pixels, int srcFrom, int srcWidth, int[] dst, int dstFrom, int length) {
         // Note, I am not using ConvolveOp as it makes the negative values get lost.
-        int width = edgesPlusInput.getWidth();
-        int height = edgesPlusInput.getHeight();
-        // Create a new buffered image to store the outputted values, but still not cropped.
-        BufferedImage uncroppedOutput = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         // We apply the kernel manually. This part also deals with negative values.
-        for (int x = 1; x < width - 1; x++) {
-            for (int y = 1; y < height - 1; y++) {
-                // Get the pixel int RGB values.
-                int val00 = edgesPlusInput.getRGB(x - 1, y - 1);
-                int val01 = edgesPlusInput.getRGB(x - 1, y);
-                int val02 = edgesPlusInput.getRGB(x - 1, y + 1);
-
-                int val10 = edgesPlusInput.getRGB(x, y - 1);
-                int val11 = edgesPlusInput.getRGB(x, y);
-                int val12 = edgesPlusInput.getRGB(x, y + 1);
-
-                int val20 = edgesPlusInput.getRGB(x + 1, y - 1);
-                int val21 = edgesPlusInput.getRGB(x + 1, y);
-                int val22 = edgesPlusInput.getRGB(x + 1, y + 1);
-                // Get the values for each colour channel for each pixel.
-                int r00 = (val00 >> 16) & 0xff;
-                int g00 = (val00 >> 8) & 0xff;
-                int b00 = val00 & 0xff;
-                int r01 = (val01 >> 16) & 0xff;
-                int g01 = (val01 >> 8) & 0xff;
-                int b01 = val01 & 0xff;
-                int r02 = (val02 >> 16) & 0xff;
-                int g02 = (val02 >> 8) & 0xff;
-                int b02 = val02 & 0xff;
-
-                int r10 = (val10 >> 16) & 0xff;
-                int g10 = (val10 >> 8) & 0xff;
-                int b10 = val10 & 0xff;
-                int r11 = (val11 >> 16) & 0xff;
-                int g11 = (val11 >> 8) & 0xff;
-                int b11 = val11 & 0xff;
-                int r12 = (val12 >> 16) & 0xff;
-                int g12 = (val12 >> 8) & 0xff;
-                int b12 = val12 & 0xff;
-
-                int r20 = (val20 >> 16) & 0xff;
-                int g20 = (val20 >> 8) & 0xff;
-                int b20 = val20 & 0xff;
-                int r21 = (val21 >> 16) & 0xff;
-                int g21 = (val21 >> 8) & 0xff;
-                int b21 = val21 & 0xff;
-                int r22 = (val22 >> 16) & 0xff;
-                int g22 = (val22 >> 8) & 0xff;
-                int b22 = val22 & 0xff;
-                // Make arrays holding the channel values.
-                int[] arrR = {r00, r01, r02, r10, r11, r12, r20, r21, r22};
-                int[] arrG = {g00, g01, g02, g10, g11, g12, g20, g21, g22};
-                int[] arrB = {b00, b01, b02, b10, b11, b12, b20, b21, b22};
-
-                // Manually do the kernel convolution for each channel.
-                int valR = this.dotProduct(arrR);
-                int valG = this.dotProduct(arrG);
-                int valB = this.dotProduct(arrB);
+        int plus = srcFrom + offsetOf(1, srcWidth);
+        int minus = srcFrom + offsetOf(-1, srcWidth);
+        for (int x = 0; x < length; x++) {
+            int a = pixels[plus + x];
+            int b = pixels[minus + x];
+            // Deal with negative results, shifting them to 127.
+            int newR = Math.min(Math.max(((a >> 16) & 0xff) - ((b >> 16) & 0xff) + 127, 0), 255);
+            int newG = Math.min(Math.max(((a >> 8) & 0xff) - ((b >> 8) & 0xff) + 127, 0), 255);
+            int newB = Math.min(Math.max((a & 0xff) - (b & 0xff) + 127, 0), 255);
+            // Set the new pixel color values in the output tile. Note, we keep fully opacity.
+            dst[dstFrom + x] = 0xff000000 | (newR << 16) | (newG << 8) | newB;
+        }
+        return length;
+    }
 
-                // Deal with negative results, shifting them to 127.
-                int newR = Math.min(Math.max(valR + 127, 0), 255);
-                int newG = Math.min(Math.max(valG + 127, 0), 255);
-                int newB = Math.min(Math.max(valB + 127, 0), 255);
-    
-                // Set the new pixel color values.
-                Color newColor = new Color(newR, newG, newB);
-                uncroppedOutput.setRGB(x, y, newColor.getRGB());
-            }
+    /**
+     * <p>
+     * Find how far the neighbour with the given weight in the kernel is from the top left of the neighbourhood.
+     * </p>
+     * 
+     * <p>
+     * The kernel is held column by column, so entry <code>i</code> is in column <code>i / 3</code>
+     * and row <code>i % 3</code> of the neighbourhood.
+     * </p>
+     * 
+     * @param weight The weight to look for, which is 1 or -1.
+     * @param srcWidth The distance from one row to the next.
+     * @return The offset of that neighbour.
+     */
+    private int offsetOf(int weight, int srcWidth) {
+        int i = 0;
+        while (kernel[i] != weight) {
+            i++;
         }
+        return (i % 3) * srcWidth + i / 3;
+    }
 
-        // Crop the uncropped output.
-        BufferedImage output = new BufferedImage(input.getWidth(), input.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        for (int x = 0; x < input.getWidth(); x++) {
-            for (int y = 0; y < input.getHeight(); y++) {
-                output.setRGB(x, y, uncroppedOutput.getRGB(x + radius, y + radius));
-            }
+    /**
+     * <p>
+     * Check whether another object is an EmbossFilter with the same kernel and noise removal setting.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is an EmbossFilter with the same kernel and noise removal setting, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
         }
+        EmbossFilter other = (EmbossFilter) obj;
+        return removeNoise == other.removeNoise && Arrays.equals(kernel, other.kernel);
+    }
 
-        // Return the output.
-        return output;
+    /**
+     * <p>
+     * Get a hash code for this EmbossFilter, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), removeNoise, Arrays.hashCode(kernel));
     }
 
     /**
-     * This support method calculates the euclidean dot product of two vectors. In particular, 
-     * this is between a set of values for a given 3x3 grid of the images in a given channel
-     * (i.e. R, G or B) and the kernel for this EmbossFilter. This is used to apply the kernel
-     * to each channel for a given pixel in the image. Note, we are expecting a int[] channelValues
-     * of length 9.
-     * @param channelValues The int values for a RGB channel of a 3x3 grid in an image.
-     * @return The result of applying a dot product of channelValues with this EditableImage's kernel.
+     * <p>
+     * Get a fingerprint of this EmbossFilter made up of its kernel and noise removal setting.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
      */
-    private int dotProduct(int[] channelValues) {
-        int dot = 0;
-        for (int i = 0; i < channelValues.length; i++) {
-            dot += channelValues[i]*kernel[i];
-        }
-        return dot;
+    @Override
+    public String fingerprint() {
+        return "EmbossFilter(removeNoise=" + removeNoise + ",kernel=" + Arrays.toString(kernel) + ")";
     }
 
 }
@@ -1,12 +1,14 @@
 package cosc202.andie;
 
 import java.util.*;
+import java.util.concurrent.Future;
 import java.awt.event.*;
 import javax.swing.*;
 import javax.swing.event.*;
 import java.awt.HeadlessException;
 import java.awt.Toolkit;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 
 /**
  * <p>
@@ -131,21 +133,15 @@ public class FilterActions {
 
                 // Copy this here so that we still have reference to the actual EditableImage.
                 EditableImage actualImage = target.getImage();
+                // Previews are worked out in the background on a proxy the size of the panel, and kept for each value.
+                PreviewController preview = new PreviewController(target);
 
                 // This part updates how the image looks when the slider is moved.
                 jslider.addChangeListener(new ChangeListener() {
                     public void stateChanged(ChangeEvent ce) {
-                        // Create a deep copy of the editable image (so that we don't change the actual editable image)
-                        EditableImage copyImage = actualImage.deepCopyEditableImage();
-                        // Set the target to have this new copy of the actual image.
-                        target.setImage(copyImage);
-                        // Apply the brightness change to the new copy of the actual image.
-                        if (jslider.getValue() == 0) { // No change to apply.
-                            return;
-                        }
-                        target.getImage().apply(new MeanFilter(jslider.getValue()));
-                        target.repaint();
-                        target.getParent().revalidate();
+                        int value = jslider.getValue();
+                        // The radius is scaled down along with the proxy the preview is worked out on.
+                        preview.update(value == 0 ? null : new MeanFilter(value), new MeanFilter(preview.scaleRadius(value)));
                     }
                 });
 
@@ -153,6 +149,8 @@ public class FilterActions {
                 try {
                     int option = JOptionPane.showOptionDialog(Andie.frame, jslider, LanguageActions.getLocaleString("meanSlid"),
                             JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
+                    // Hand over the preview of the chosen value so applying it does not work it out again.
+                    preview.close(option == JOptionPane.OK_OPTION ? new MeanFilter(jslider.getValue()) : null);
                     if (option == JOptionPane.CANCEL_OPTION) {
                         // Set the image in target back to the actual image and repaint.
                         target.setImage(actualImage);
@@ -253,21 +251,13 @@ public class FilterActions {
 
                 // Copy this here so that we still have reference to the actual EditableImage.
                 EditableImage actualImage = target.getImage();
+                // Previews are worked out in the background on a proxy the size of the panel, and kept for each value.
+                PreviewController preview = new PreviewController(target);
 
                 // This part updates how the image looks when the slider is moved.
                 jslider.addChangeListener(new ChangeListener() {
                     public void stateChanged(ChangeEvent ce) {
-                        // Create a deep copy of the editable image (so that we don't change the actual editable image)
-                        EditableImage copyImage = actualImage.deepCopyEditableImage();
-                        // Set the target to have this new copy of the actual image.
-                        target.setImage(copyImage);
-                        // Apply the brightness change to the new copy of the actual image.
-                        if (jslider.getValue() == 0) { // No change to apply.
-                            return;
-                        }
-                        target.getImage().apply(new SharpenFilter(jslider.getValue()));
-                        target.repaint();
-                        target.getParent().revalidate();
+                        preview.update(jslider.getValue() == 0 ? null : new SharpenFilter(jslider.getValue()));
                     }
                 });
 
@@ -275,6 +265,8 @@ public class FilterActions {
                 try {
                     int option = JOptionPane.showOptionDialog(Andie.frame, jslider, LanguageActions.getLocaleString("sharpenSlid"),
                             JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
+                    // Hand over the preview of the chosen value so applying it does not work it out again.
+                    preview.close(option == JOptionPane.OK_OPTION ? new SharpenFilter(jslider.getValue()) : null);
                     if (option == JOptionPane.CANCEL_OPTION) {
                         // Set the image in target back to the actual image and repaint.
                         target.setImage(actualImage);
@@ -374,21 +366,15 @@ public class FilterActions {
 
                 // Copy this here so that we still have reference to the actual EditableImage.
                 EditableImage actualImage = target.getImage();
+                // Previews are worked out in the background on a proxy the size of the panel, and kept for each value.
+                PreviewController preview = new PreviewController(target);
 
                 // This part updates how the image looks when the slider is moved.
                 jslider.addChangeListener(new ChangeListener() {
                     public void stateChanged(ChangeEvent ce) {
-                        // Create a deep copy of the editable image (so that we don't change the actual editable image)
-                        EditableImage copyImage = actualImage.deepCopyEditableImage();
-                        // Set the target to have this new copy of the actual image.
-                        target.setImage(copyImage);
-                        // Apply the brightness change to the new copy of the actual image.
-                        if (jslider.getValue() == 0) { // No change to apply.
-                            return;
-                        }
-                        target.getImage().apply(new GaussianBlurFilter(jslider.getValue()));
-                        target.repaint();
-                        target.getParent().revalidate();
+                        int value = jslider.getValue();
+                        // The radius is scaled down along with the proxy the preview is worked out on.
+                        preview.update(value == 0 ? null : new GaussianBlurFilter(value), new GaussianBlurFilter(preview.scaleRadius(value)));
                     }
                 });
 
@@ -396,6 +382,8 @@ public class FilterActions {
                 try {
                     int option = JOptionPane.showOptionDialog(Andie.frame, jslider, LanguageActions.getLocaleString("gaussianSlid"),
                             JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
+                    // Hand over the preview of the chosen value so applying it does not work it out again.
+                    preview.close(option == JOptionPane.OK_OPTION ? new GaussianBlurFilter(jslider.getValue()) : null);
                     if (option == JOptionPane.CANCEL_OPTION) {
                         // Set the image in target back to the actual image and repaint.
                         target.setImage(actualImage);
@@ -495,29 +483,15 @@ public class FilterActions {
 
                 // Copy this here so that we still have reference to the actual EditableImage.
                 EditableImage actualImage = target.getImage();
+                // Previews are worked out in the background on a proxy the size of the panel, and kept for each value.
+                PreviewController preview = new PreviewController(target);
 
                 // This part updates how the image looks when the slider is moved.
                 jslider.addChangeListener(new ChangeListener() {
-                    // Used to keep track of the last value of the slider
-                    private int lastValue = 0;
                     public void stateChanged(ChangeEvent ce) {
-                        // Create a deep copy of the editable image (so that we don't change the actual editable image)
-                        EditableImage copyImage = actualImage.deepCopyEditableImage();
-                        // Set the target to have this new copy of the actual image.
-                        target.setImage(copyImage);
-                        // Apply the median filter to the new copy of the actual image.
-                        if (jslider.getValue() == 0) { // No change to apply.
-                            return;
-                        }
-                        // We only update the image if the difference between the last slider value and
-                        // new slider value is greater than or equal to 1. Otherwise it is too laggy.
-                        if (Math.abs(lastValue - jslider.getValue()) >= 1) {
-                            target.getImage().apply(new MedianFilter(jslider.getValue()));
-                            target.repaint();
-                            target.getParent().revalidate();
-                            // Update the last value.
-                            lastValue = jslider.getValue();
-                        }
+                        int value = jslider.getValue();
+                        // The radius is scaled down along with the proxy the preview is worked out on.
+                        preview.update(value == 0 ? null : new MedianFilter(value), new MedianFilter(preview.scaleRadius(value)));
                     }
                 });
 
@@ -525,6 +499,8 @@ public class FilterActions {
                 try {
                     int option = JOptionPane.showOptionDialog(Andie.frame, jslider, LanguageActions.getLocaleString("medianRad"),
                             JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
+                    // Hand over the preview of the chosen value so applying it does not work it out again.
+                    preview.close(option == JOptionPane.OK_OPTION ? new MedianFilter(jslider.getValue()) : null);
                     if (option == JOptionPane.CANCEL_OPTION) {
                         // Set the image in target back to the actual image and repaint.
                         target.setImage(actualImage);
@@ -835,6 +811,25 @@ public class FilterActions {
          */
         private int sobelType;
 
+        /**
+         * The gradients of the actual image while the option dialogue is open, without and then
+         * with noise removed. An entry is null until a button needs it. The array is null
+         * while the dialogue is closed.
+         */
+        private SobelGradients[] gradients;
+
+        /** Whether noise is removed in the last preview asked for. */
+        private boolean previewNoise;
+
+        /** The preview being worked out, or null if there is none. */
+        private Future<Void> pending;
+
+        /** The filter of the preview shown, or null if the actual image is shown. */
+        private ImageOperation shownFilter;
+
+        /** The preview shown, or null if the actual image is shown. */
+        private BufferedImage shownView;
+
         /**
          * <p>
          * Create a new sobel general filter action.
@@ -905,61 +900,29 @@ public class FilterActions {
                 // Copy this here so that we still have reference to the actual EditableImage.
                 EditableImage actualImage = target.getImage();
 
+                // The gradients are only worked out once for each noise setting, however many
+                // buttons are pressed, as every sobel filter is a view of the same gradients.
+                gradients = new SobelGradients[2];
+
                 // This part updates how the image looks when each of the buttons are pressed.
                 horButton.addActionListener(new ActionListener() {
                     public void actionPerformed(ActionEvent ce) {
-                        // Create a deep copy of the editable image (so that we don't change the actual editable image)
-                        EditableImage copyImage = actualImage.deepCopyEditableImage();
-                        // Set the target to have this new copy of the actual image.
-                        target.setImage(copyImage);
-                        // Apply the sobel to the image.
-                        target.getImage().apply(new SobelHorizontalFilter(noiseBox.isSelected()));
-                        target.repaint();
-                        target.getParent().revalidate();
-                        // Update what our sobel type is.
-                        sobelType = 1;
+                        preview(actualImage, 1, noiseBox.isSelected());
                     }
                 });
                 verButton.addActionListener(new ActionListener() {
                     public void actionPerformed(ActionEvent ce) {
-                        // Create a deep copy of the editable image (so that we don't change the actual editable image)
-                        EditableImage copyImage = actualImage.deepCopyEditableImage();
-                        // Set the target to have this new copy of the actual image.
-                        target.setImage(copyImage);
-                        // Apply the sobel to the image.
-                        target.getImage().apply(new SobelVerticalFilter(noiseBox.isSelected()));
-                        target.repaint();
-                        target.getParent().revalidate();
-                        // Update what our sobel type is.
-                        sobelType = 2;
+                        preview(actualImage, 2, noiseBox.isSelected());
                     }
                 });
                 fullButton.addActionListener(new ActionListener() {
                     public void actionPerformed(ActionEvent ce) {
-                        // Create a deep copy of the editable image (so that we don't change the actual editable image)
-                        EditableImage copyImage = actualImage.deepCopyEditableImage();
-                        // Set the target to have this new copy of the actual image.
-                        target.setImage(copyImage);
-                        // Apply the sobel to the image.
-                        target.getImage().apply(new SobelOrientationFilter(noiseBox.isSelected(), false));
-                        target.repaint();
-                        target.getParent().revalidate();
-                        // Update what our sobel type is.
-                        sobelType = 3;
+                        preview(actualImage, 3, noiseBox.isSelected());
                     }
                 });
                 orienButton.addActionListener(new ActionListener() {
                     public void actionPerformed(ActionEvent ce) {
-                        // Create a deep copy of the editable image (so that we don't change the actual editable image)
-                        EditableImage copyImage = actualImage.deepCopyEditableImage();
-                        // Set the target to have this new copy of the actual image.
-                        target.setImage(copyImage);
-                        // Apply the sobel to the image.
-                        target.getImage().apply(new SobelOrientationFilter(noiseBox.isSelected(), true));
-                        target.repaint();
-                        target.getParent().revalidate();
-                        // Update what our sobel type is.
-                        sobelType = 4;
+                        preview(actualImage, 4, noiseBox.isSelected());
                     }
                 });
 
@@ -969,6 +932,7 @@ public class FilterActions {
                             JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
                     if (option == JOptionPane.CANCEL_OPTION || option == JOptionPane.CLOSED_OPTION) {
                         // Set the image in target back to the actual image and repaint.
+                        closePreview();
                         target.setImage(actualImage);
                         target.repaint();
                         target.getParent().revalidate();
@@ -984,23 +948,144 @@ public class FilterActions {
                     // Won't happen for our users, so just exit.
                     System.exit(1);
                 }
+                ImageOperation previewed = shownFilter;
+                BufferedImage view = shownView;
+                closePreview();
                 // Create and apply the filter. This depends on the last button pressed.
-                if (sobelType == 1) {
-                    target.getImage().apply(new SobelHorizontalFilter(removeNoise));
-                }
-                else if (sobelType == 2) {
-                    target.getImage().apply(new SobelVerticalFilter(removeNoise));
-                }
-                else if (sobelType == 3) {
-                    target.getImage().apply(new SobelOrientationFilter(removeNoise, false));
+                if (sobelType != 0) {
+                    ImageOperation op = filter(sobelType, removeNoise);
+                    if (view != null && op.fingerprint().equals(previewed.fingerprint())) {
+                        // The filter applied is the one previewed, so it is taken from the cache.
+                        RenderCache.getShared().put(RenderCache.keyOf(actualImage.getCurrentKey(), op), view);
+                    }
+                    target.getImage().apply(op);
                 }
-                else if (sobelType == 4) {
-                    target.getImage().apply(new SobelOrientationFilter(removeNoise, true));
-                }  
                 target.repaint();
                 target.getParent().revalidate();
             }
         }
+
+        /**
+         * <p>
+         * Stop previewing once the option dialogue has closed, cancelling any preview still
+         * being worked out.
+         * </p>
+         */
+        private void closePreview() {
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            pending = null;
+            gradients = null;
+            shownFilter = null;
+            shownView = null;
+        }
+
+        /**
+         * <p>
+         * Show a preview of a sobel filter on the actual image, without changing it.
+         * </p>
+         * 
+         * <p>
+         * The previewed image is a view of the {@link SobelGradients} for the noise setting,
+         * which are worked out the first time they are needed, once any render of the actual image
+         * still going has finished. If the filter previewed is the one applied, the preview is
+         * put in the {@link RenderCache} first, so applying it just takes it from the cache.
+         * </p>
+         * 
+         * @param actualImage The actual editable image, which is not changed.
+         * @param type The type of sobel filter, as in {@link sobelType}.
+         * @param removeNoise True to apply a light Gaussian blur filter before finding the edges.
+         */
+        private void preview(EditableImage actualImage, int type, boolean removeNoise) {
+            // Update what our sobel type is.
+            sobelType = type;
+            previewNoise = removeNoise;
+            actualImage.whenRendered(() -> show(actualImage, type, removeNoise));
+        }
+
+        /**
+         * <p>
+         * Start working out a preview of a sobel filter as a
+         * {@link JobScheduler.Priority#PREVIEW} job, once the actual image has finished rendering.
+         * </p>
+         * 
+         * <p>
+         * The job supersedes any preview still being worked out for an earlier button press.
+         * </p>
+         * 
+         * @param actualImage The actual editable image, which is not changed.
+         * @param type The type of sobel filter, as in {@link sobelType}.
+         * @param removeNoise True to apply a light Gaussian blur filter before finding the edges.
+         */
+        private void show(EditableImage actualImage, int type, boolean removeNoise) {
+            if (gradients == null || type != sobelType || removeNoise != previewNoise) {
+                // The dialogue has closed, or another button has been pressed since.
+                return;
+            }
+            int index = removeNoise ? 1 : 0;
+            SobelGradients known = gradients[index];
+            BufferedImage input = actualImage.getCurrentImage();
+            pending = JobScheduler.getShared().submit(this, JobScheduler.Priority.PREVIEW, context -> {
+                SobelGradients edges = known != null ? known : new SobelGradients(input, removeNoise, true, context);
+                BufferedImage view;
+                if (type == 1) {
+                    view = edges.horizontalImage();
+                } else if (type == 2) {
+                    view = edges.verticalImage();
+                } else {
+                    view = edges.orientationImage(type == 4);
+                }
+                SwingUtilities.invokeLater(() -> finished(actualImage, type, removeNoise, edges, view));
+            });
+        }
+
+        /**
+         * <p>
+         * Keep the gradients a preview was worked out from, and show the preview if no other
+         * button has been pressed since it was started.
+         * </p>
+         * 
+         * @param actualImage The actual editable image, which is not changed.
+         * @param type The type of sobel filter, as in {@link sobelType}.
+         * @param removeNoise True if noise was removed before finding the edges.
+         * @param edges The gradients of the actual image.
+         * @param view The preview.
+         */
+        private void finished(EditableImage actualImage, int type, boolean removeNoise, SobelGradients edges, BufferedImage view) {
+            if (gradients == null) {
+                // The dialogue has closed.
+                return;
+            }
+            gradients[removeNoise ? 1 : 0] = edges;
+            if (type != sobelType || removeNoise != previewNoise) {
+                return;
+            }
+            shownFilter = filter(type, removeNoise);
+            shownView = view;
+            // Show the view as the actual image with the sobel applied, without applying it.
+            target.setImage(actualImage.previewOf(shownFilter, view, 1));
+            target.repaint();
+            target.getParent().revalidate();
+        }
+
+        /**
+         * <p>
+         * Create a sobel filter of the given type.
+         * </p>
+         * 
+         * @param type The type of sobel filter, as in {@link sobelType}.
+         * @param removeNoise True to apply a light Gaussian blur filter before finding the edges.
+         * @return The sobel filter.
+         */
+        private ImageOperation filter(int type, boolean removeNoise) {
+            if (type == 1) {
+                return new SobelHorizontalFilter(removeNoise);
+            } else if (type == 2) {
+                return new SobelVerticalFilter(removeNoise);
+            }
+            return new SobelOrientationFilter(removeNoise, type == 4);
+        }
               
     }
 
@@ -1078,27 +1163,23 @@ public class FilterActions {
 
                 // Copy this here so that we still have reference to the actual EditableImage.
                 EditableImage actualImage = target.getImage();
+                // Previews are worked out in the background on a proxy the size of the panel, and kept for each value.
+                PreviewController preview = new PreviewController(target);
 
                 // This part updates how the image looks when the slider is moved.
                 jslider.addChangeListener(new ChangeListener() {
                     public void stateChanged(ChangeEvent ce) {
-                        // Create a deep copy of the editable image (so that we don't change the actual editable image)
-                        EditableImage copyImage = actualImage.deepCopyEditableImage();
-                        // Set the target to have this new copy of the actual image.
-                        target.setImage(copyImage);
-                        // Apply the emboss to the new copy of the actual image.
-                        if (jslider.getValue() == 0) { // No change to apply.
-                            return;
-                        }
-                        target.getImage().apply(new EmbossFilter(noiseBox.isSelected(), (int)jslider.getValue()));
-                        target.repaint();
-                        target.getParent().revalidate();
+                        preview.update(new EmbossFilter(noiseBox.isSelected(), (int)jslider.getValue()));
                     }
                 });
+                // Removing noise changes the preview too.
+                noiseBox.addItemListener(ie -> preview.update(new EmbossFilter(noiseBox.isSelected(), (int)jslider.getValue())));
                 // Ask user for emboss type with a slider.
                 try {
                     int option = JOptionPane.showOptionDialog(Andie.frame, choosePanel, LanguageActions.getLocaleString("embossSlid"),
                             JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
+                    // Hand over the preview of the chosen value so applying it does not work it out again.
+                    preview.close(option == JOptionPane.OK_OPTION ? new EmbossFilter(noiseBox.isSelected(), (int)jslider.getValue()) : null);
                     if (option == JOptionPane.CANCEL_OPTION) {
                         // Set the image in target back to the actual image and repaint.
                         target.setImage(actualImage);
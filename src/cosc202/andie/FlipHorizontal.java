@@ -1,7 +1,5 @@
 package cosc202.andie;
 
-import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
 
@@ -22,7 +20,7 @@ import java.io.Serializable;
  * 
  * @author Mathias Øgaard
  */
-public class FlipHorizontal implements ImageOperation, Serializable {
+public class FlipHorizontal implements GeometricOperation, Serializable {
 
     /**
      * <p>
@@ -35,30 +33,77 @@ public class FlipHorizontal implements ImageOperation, Serializable {
      * The resulting image will have the same dimensions as the original image.
      * </p>
      * 
+     * <p>
+     * The pixels are moved around within the image itself, so the image is flipped in place.
+     * </p>
+     * 
      * @param input The image to be flipped.
      * @return The resulting flipped image.
      */
     @Override
     public BufferedImage apply(BufferedImage input) {
-        int width = input.getWidth();
-        int height = input.getHeight();
-
-        BufferedImage flipped = new BufferedImage(width, height, input.getType());
+        return PixelRemap.flipHorizontal(input);
+    }
 
-        Graphics2D g = flipped.createGraphics(); // The "canvas" the new image is drawn on
-        AffineTransform at = g.getTransform();
+    /**
+     * <p>
+     * Add a horizontal flip to the end of a {@link GeometricTransform}.
+     * </p>
+     * 
+     * @param transform The transform to add to.
+     */
+    @Override
+    public void foldInto(GeometricTransform transform) {
+        transform.flipHorizontal();
+    }
 
-        // Flipping canvas around x-axis:
-        at.scale(-1, 1);
+    /**
+     * <p>
+     * Check whether this operation only rearranges the pixels, which it does.
+     * </p>
+     * 
+     * @return True.
+     */
+    @Override
+    public boolean isRigid() {
+        return true;
+    }
 
-        // Moving the canvas back to it's original coordinates:
-        at.translate(-width, 0);
+    /**
+     * <p>
+     * Check whether another object is also a FlipHorizontal. All FlipHorizontals are the same operation.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a FlipHorizontal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null && obj.getClass() == getClass();
+    }
 
-        g.setTransform(at); // Executes the transformation
-        g.drawImage(input, 0, 0, null); // Draws the image on the transformed canvas.
-        g.dispose();
+    /**
+     * <p>
+     * Get a hash code for this FlipHorizontal, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return getClass().getName().hashCode();
+    }
 
-        return flipped;
+    /**
+     * <p>
+     * Get a fingerprint of this FlipHorizontal, which has no parameters.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "FlipHorizontal()";
     }
 
 }
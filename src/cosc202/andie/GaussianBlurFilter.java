@@ -1,6 +1,10 @@
 package cosc202.andie;
 
 import java.awt.image.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
@@ -23,7 +27,7 @@ import java.awt.image.*;
  * @author Stella Srzich (Modified from Steven Mills)
  * @version 1.0
  */
-public class GaussianBlurFilter implements ImageOperation, java.io.Serializable {
+public class GaussianBlurFilter implements TileOperation, java.io.Serializable {
 
     /**
      * The size of filter to apply. A radius of 1 is a 3x3 filter, a radius of 2 a
@@ -31,6 +35,12 @@ public class GaussianBlurFilter implements ImageOperation, java.io.Serializable
      */
     private int radius;
 
+    /** The normalised 1-dimensional kernels worked out so far, by radius. */
+    private static final Map<Integer, float[]> KERNELS = new ConcurrentHashMap<Integer, float[]>();
+
+    /** The amount added to blurred values before rounding them down, to make up for floating point error. */
+    private static final float EPSILON = 1e-4f;
+
     /**
      * <p>
      * Construct a Gaussian blur filter with the given size.
@@ -66,154 +76,202 @@ public class GaussianBlurFilter implements ImageOperation, java.io.Serializable
 
     /**
      * <p>
-     * Apply a Gaussian blur filter to an image.
+     * Get how far from an output pixel the Gaussian blur filter reads, which is its {@link radius}.
+     * </p>
+     * 
+     * @return The halo needed around each tile.
+     */
+    public int getHalo() {
+        return radius;
+    }
+
+    /**
+     * <p>
+     * Apply a Gaussian blur filter to one tile of an image.
      * </p>
      * 
      * <p>
      * As with many filters, the Gaussian blur filter is implemented via
      * convolution. The size of the convolution kernel is specified by the {@link radius}.
-     * Larger radii lead to stronger blurring, and affects sigma.
+     * Larger radii lead to stronger blurring, and affects sigma. Pixels beyond the edge
+     * of the image take the value of the nearest edge pixel.
      * </p>
      * 
-     * @param input The image to apply the Gaussian blur filter to.
-     * @return The resulting (blurred) image.
+     * <p>
+     * Since G(x, y, sigma) = G(x, sigma) * G(y, sigma), the 2-dimensional convolution is done as
+     * a horizontal 1-dimensional convolution followed by a vertical one. This takes 2 * (2 * radius + 1)
+     * multiplications per channel per pixel rather than (2 * radius + 1)^2, so large blurs stay fast.
+     * The results of the horizontal pass are kept as floats so that they are only rounded once.
+     * </p>
+     * 
+     * @param src The ARGB pixels of the tile and its halo.
+     * @param dst The array to write the ARGB pixels of the resulting tile into.
+     * @param width The width of the tile, not including the halo.
+     * @param height The height of the tile, not including the halo.
      */
-    public BufferedImage apply(BufferedImage input) {
-        // Convert the radius to sigma for creating our array for our kernel.
-        // Note this is not entirely accurate, but is good enough.
-        float sigma = ((float) radius) / 3.0f;
+    public void applyTile(int[] src, int[] dst, int width, int height) {
+        float[] kernel = kernel(radius);
+        int size = kernel.length;
+        int srcWidth = width + 2 * radius;
+        int srcHeight = height + 2 * radius;
 
-        // Create array to store kernel values.
-        int size = (2 * radius + 1) * (2 * radius + 1);
-        float[] array = new float[size];
-
-        // Fill array with corresponding Gaussian values (unnormalized).
-        for (int i = 0; i < size; i++) {
-            array[i] = calculateGaussian(i, size, sigma);
-        }
-
-        // Normalise the values in array (make sure they sum to 1).
-        float sum = 0;
-        for (int i = 0; i < size; i++) {
-            sum += array[i];
-        }
-        for (int i = 0; i < size; i++) {
-            array[i] = array[i] / sum;
+        // First, blur every row of the tile and its halo horizontally.
+        float[] a = new float[width * srcHeight];
+        float[] r = new float[width * srcHeight];
+        float[] g = new float[width * srcHeight];
+        float[] b = new float[width * srcHeight];
+        float[] rowA = new float[srcWidth];
+        float[] rowR = new float[srcWidth];
+        float[] rowG = new float[srcWidth];
+        float[] rowB = new float[srcWidth];
+        for (int y = 0; y < srcHeight; y++) {
+            // Split the row into its channels once, rather than once per kernel value.
+            for (int x = 0; x < srcWidth; x++) {
+                int argb = src[y * srcWidth + x];
+                rowA[x] = argb >>> 24;
+                rowR[x] = (argb >> 16) & 0xFF;
+                rowG[x] = (argb >> 8) & 0xFF;
+                rowB[x] = argb & 0xFF;
+            }
+            int out = y * width;
+            for (int k = 0; k < size; k++) {
+                float weight = kernel[k];
+                for (int x = 0; x < width; x++) {
+                    a[out + x] += weight * rowA[x + k];
+                    r[out + x] += weight * rowR[x + k];
+                    g[out + x] += weight * rowG[x + k];
+                    b[out + x] += weight * rowB[x + k];
+                }
+            }
         }
 
-        // Create the kernel.
-        Kernel kernel = new Kernel(2 * radius + 1, 2 * radius + 1, array);
-
-        // Create a new image with the same values as in the original image, but with
-        // the edge pixel values copied to new edge pixel values (the image is bigger by
-        // the radius of the kernel)
-        // on each side and the top and bottom.
-        BufferedImage edgesPlusInput = new BufferedImage(input.getWidth() + 2 * radius, input.getHeight() + 2 * radius,
-                BufferedImage.TYPE_INT_ARGB);
-        // Fill the pixel values of this new buffered image.
-        for (int y = 0; y < input.getHeight(); ++y) {
-            for (int x = 0; x < input.getWidth(); ++x) {
-                // Copy over pixel values from the original image to pixels to the right and
-                // lower by 'radius' amount.
-                edgesPlusInput.setRGB(x + radius, y + radius, input.getRGB(x, y));
-                // If we are at an edge, then we copy that value to the values above/below/right/left.
-                if (y == 0) { // We are at the top of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i, input.getRGB(x, y));
-                    }
-                } else if (y == input.getHeight() - 1) { // We are at the bottom of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i + input.getHeight() + radius, input.getRGB(x, y));
-                    }
-                }
-                if (x == 0) { // We are at the left of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i, y + radius, input.getRGB(x, y));
-                    }
-                } else if (x == input.getWidth() - 1) { // We are at the right of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i + input.getWidth() + radius, y + radius, input.getRGB(x, y));
-                    }
-                }
-                // Dealing with corners.
-                if (x == 0 && y == 0) { // Top left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b, input.getRGB(x, y));
-                        }
-                    }
-                } else if (x == 0 && y == input.getHeight() - 1) { // Bottom left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b + input.getHeight() + radius, input.getRGB(x, y));
-                        }
-                    }
-                } else if (x == input.getWidth() - 1 && y == 0) { // Top right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b, input.getRGB(x, y));
-                        }
-                    }
-                } else if (x == input.getWidth() - 1 && y == input.getHeight() - 1) { // Bottom right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b + input.getHeight() + radius,
-                                    input.getRGB(x, y));
-                        }
-                    }
+        // Then blur those columns vertically, a row at a time, and put the channels back together.
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(rowA, 0, width, 0);
+            Arrays.fill(rowR, 0, width, 0);
+            Arrays.fill(rowG, 0, width, 0);
+            Arrays.fill(rowB, 0, width, 0);
+            for (int k = 0; k < size; k++) {
+                float weight = kernel[k];
+                int in = (y + k) * width;
+                for (int x = 0; x < width; x++) {
+                    rowA[x] += weight * a[in + x];
+                    rowR[x] += weight * r[in + x];
+                    rowG[x] += weight * g[in + x];
+                    rowB[x] += weight * b[in + x];
                 }
             }
-        }
-        // Apply the filter to the new buffered image that has interpolated edges.
-        ConvolveOp convOp = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
-        BufferedImage uncroppedOutput = new BufferedImage(edgesPlusInput.getColorModel(), edgesPlusInput.copyData(null),
-                edgesPlusInput.isAlphaPremultiplied(), null);
-        convOp.filter(edgesPlusInput, uncroppedOutput);
-
-        // Crop the uncropped output.
-        BufferedImage output = new BufferedImage(input.getWidth(), input.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        for (int x = 0; x < input.getWidth(); x++) {
-            for (int y = 0; y < input.getHeight(); y++) {
-                output.setRGB(x, y, uncroppedOutput.getRGB(x + radius, y + radius));
+            for (int x = 0; x < width; x++) {
+                dst[y * width + x] = (channel(rowA[x]) << 24) | (channel(rowR[x]) << 16)
+                        | (channel(rowG[x]) << 8) | channel(rowB[x]);
             }
         }
+    }
 
-        return output;
+    /**
+     * <p>
+     * Get the normalised 1-dimensional Gaussian kernel for a radius.
+     * </p>
+     * 
+     * <p>
+     * Kernels are only worked out once for each radius, and shared by every GaussianBlurFilter after that.
+     * </p>
+     * 
+     * @param radius The radius of the kernel.
+     * @return The kernel, with 2 * radius + 1 values summing to 1.
+     */
+    private static float[] kernel(int radius) {
+        return KERNELS.computeIfAbsent(radius, GaussianBlurFilter::calculateKernel);
     }
 
     /**
      * <p>
-     * Calculate a 2-dimensional Gaussian float values for an element
-     * in an array of float values for our kernel.
+     * Work out the normalised 1-dimensional Gaussian kernel for a radius.
      * </p>
      * 
      * <p>
-     * Note, this depends on the length of the array and the index in the array
-     * we are calulating the Gaussian for, as this will determine x and y
-     * in G(x, y, sigma).
+     * Sigma is a third of the radius, as for the 2-dimensional kernel. The normalising constant
+     * of G(x, sigma) is left out, since the values are normalised to sum to 1 anyway.
+     * </p>
+     * 
+     * @param radius The radius of the kernel.
+     * @return The kernel, with 2 * radius + 1 values summing to 1.
+     */
+    private static float[] calculateKernel(int radius) {
+        // Convert the radius to sigma for creating our array for our kernel.
+        // Note this is not entirely accurate, but is good enough.
+        double sigma = radius / 3.0;
+        double[] values = new double[2 * radius + 1];
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            int x = i - radius;
+            values[i] = radius == 0 ? 1 : Math.exp(-(x * x) / (2 * sigma * sigma));
+            sum += values[i];
+        }
+        // Normalise the values in array (make sure they sum to 1).
+        float[] kernel = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            kernel[i] = (float) (values[i] / sum);
+        }
+        return kernel;
+    }
+
+    /**
+     * <p>
+     * Turn a blurred channel value back into an int between 0 and 255.
+     * </p>
+     * 
+     * <p>
+     * Like {@link ConvolveOp}, this rounds down. A tiny amount is added first so that a value that
+     * should be whole, but came out just under it in floating point, is not rounded down a whole step.
+     * </p>
+     * 
+     * @param value The blurred channel value.
+     * @return The channel value as an int between 0 and 255.
+     */
+    private static int channel(float value) {
+        return Math.min(Math.max((int) (value + EPSILON), 0), 255);
+    }
+
+    /**
+     * <p>
+     * Check whether another object is a GaussianBlurFilter with the same radius.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a GaussianBlurFilter with the same radius, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        GaussianBlurFilter other = (GaussianBlurFilter) obj;
+        return radius == other.radius;
+    }
+
+    /**
+     * <p>
+     * Get a hash code for this GaussianBlurFilter, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), radius);
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this GaussianBlurFilter made up of its radius.
      * </p>
      * 
-     * @param index The index of the array we are calculating the Gaussian for.
-     * @param size  The size of the array.
-     * @param sigma The value of sigma (the standard deviation).
-     * @return The resulting (blurred)) image.
+     * @return The fingerprint of this operation.
      */
-    private float calculateGaussian(int index, int size, float sigma) {
-        // Calculate x and y, the integer coordinates in our kernel.
-        // Note, (x, y) = (0, 0) is the center of the kernel.
-        // Also note, implicit assumption, which is true when called from
-        // the apply method, that size is a square number.
-        int side = (int) Math.sqrt(size);
-        int radius = (side - 1) / 2;
-        int x = (index % side) - radius;
-        int y = radius - (index / side);
-
-        // Calulate G(x, y, sigma).
-        float value = 1.0f / (2 * ((float) Math.PI) * sigma * sigma);
-        double pow = Math.exp((double) ((float) (-1.0f * (x * x + y * y))) / (2.0f * sigma * sigma));
-        value = value * ((float) pow);
-
-        return value;
+    @Override
+    public String fingerprint() {
+        return "GaussianBlurFilter(radius=" + radius + ")";
     }
 
 }
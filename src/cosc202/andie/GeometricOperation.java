@@ -0,0 +1,60 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * Interface for image operations that only change where pixels are, such as rotating,
+ * flipping, resizing and cropping.
+ * </p>
+ *
+ * <p>
+ * A run of geometric operations one after another is folded into a single
+ * {@link GeometricTransform}, which works out where each pixel of the result comes from and
+ * makes the result straight from the input, rather than drawing an intermediate image for each
+ * operation.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see GeometricTransform
+ * @version 1.0
+ */
+public interface GeometricOperation extends ImageOperation {
+
+    /**
+     * <p>
+     * Add this operation to the end of a transform.
+     * </p>
+     *
+     * @param transform The transform, whose size is the size of the image this operation is applied to.
+     */
+    public void foldInto(GeometricTransform transform);
+
+    /**
+     * <p>
+     * Check whether this operation only rearranges the pixels, without cropping or resampling them.
+     * </p>
+     *
+     * <p>
+     * Operations that change each pixel on its own, such as {@link PointOperation}s, give the same
+     * result whether they are done before or after a rigid operation.
+     * </p>
+     *
+     * @return True if the operation is a rotation or flip, false otherwise.
+     */
+    public default boolean isRigid() {
+        return false;
+    }
+
+    /**
+     * <p>
+     * Check whether this operation resamples the image, so that new pixel values are made up.
+     * </p>
+     *
+     * @return True if the operation is a resize, false otherwise.
+     */
+    public default boolean resamples() {
+        return false;
+    }
+}
@@ -0,0 +1,330 @@
+package cosc202.andie;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * A run of {@link GeometricOperation}s done as a single mapping from the input to the result.
+ * </p>
+ *
+ * <p>
+ * However many rotations, flips, crops and resizes make up the run, the result is always a
+ * rectangular window of the input, resampled to some size, then turned to one of eight
+ * orientations. So rather than drawing an image for each operation, the transform works out
+ * that window, size and orientation, then makes the result from the window directly.
+ * </p>
+ *
+ * <p>
+ * Without resizes, every pixel of the result is copied straight from the input by
+ * {@link PixelRemap}, so this gives exactly the same image as applying the operations in turn.
+ * With resizes, the window is
+ * resampled once, straight to its final size, which avoids blurring the image again with each
+ * resize but does not give exactly the same pixels. Crops flatten any transparency onto
+ * black, as {@link RegionCrop} does.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see GeometricOperation
+ * @see OperationPlan
+ * @version 1.0
+ */
+public class GeometricTransform implements ImageOperation {
+
+    /** The operations making up the transform, in order. */
+    private List<GeometricOperation> ops;
+
+    /** The size of the image at the point the operations have been folded up to. */
+    private int width, height;
+    /** The window of the input the result comes from, before it is turned to its orientation. */
+    private double windowX, windowY, windowWidth, windowHeight;
+    /** Whether the window is flipped horizontally, before it is rotated. */
+    private boolean flip;
+    /** The number of quarter turns clockwise the window is rotated by. */
+    private int turns;
+    /** Whether any of the operations resample the image. */
+    private boolean resampled;
+    /** Whether the window is flattened onto black before it is resampled. */
+    private boolean flattenWindow;
+    /** Whether the window is flattened onto black after it is resampled. */
+    private boolean flattenResult;
+    /** Whether any of the operations crop outside the image. */
+    private boolean outOfBounds;
+
+    /**
+     * <p>
+     * Create a transform doing each of the given operations in turn.
+     * </p>
+     *
+     * @param ops The operations.
+     */
+    public GeometricTransform(List<? extends GeometricOperation> ops) {
+        this.ops = new ArrayList<GeometricOperation>(ops);
+    }
+
+    /**
+     * <p>
+     * Check whether the operations undo each other, so that the transform does nothing.
+     * </p>
+     *
+     * @return True if the operations are all rotations and flips, which cancel out.
+     */
+    public boolean isIdentity() {
+        for (GeometricOperation op : ops) {
+            if (!op.isRigid()) {
+                return false;
+            }
+        }
+        fold(1, 1);
+        return !flip && turns == 0;
+    }
+
+    /**
+     * <p>
+     * Get the width of the image at the point the operations have been folded up to.
+     * </p>
+     *
+     * @return The width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * <p>
+     * Get the height of the image at the point the operations have been folded up to.
+     * </p>
+     *
+     * @return The height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * <p>
+     * Rotate the image clockwise.
+     * </p>
+     *
+     * @param quarterTurns The number of quarter turns, from 1 to 3.
+     */
+    public void rotate(int quarterTurns) {
+        turns = (turns + quarterTurns) % 4;
+        if (quarterTurns % 2 == 1) {
+            int oldWidth = width;
+            width = height;
+            height = oldWidth;
+        }
+    }
+
+    /**
+     * <p>
+     * Flip the image horizontally.
+     * </p>
+     *
+     * <p>
+     * Flipping after rotating is the same as flipping first and rotating the other way.
+     * </p>
+     */
+    public void flipHorizontal() {
+        flip = !flip;
+        turns = (4 - turns) % 4;
+    }
+
+    /**
+     * <p>
+     * Flip the image vertically.
+     * </p>
+     *
+     * <p>
+     * This is the same as flipping horizontally and then turning upside down.
+     * </p>
+     */
+    public void flipVertical() {
+        flip = !flip;
+        turns = (6 - turns) % 4;
+    }
+
+    /**
+     * <p>
+     * Crop the image to a rectangle, flattening any transparency onto black.
+     * </p>
+     *
+     * @param x The left of the rectangle.
+     * @param y The top of the rectangle.
+     * @param cropWidth The width of the rectangle.
+     * @param cropHeight The height of the rectangle.
+     */
+    public void crop(int x, int y, int cropWidth, int cropHeight) {
+        if (x < 0 || y < 0 || cropWidth <= 0 || cropHeight <= 0 || x + cropWidth > width || y + cropHeight > height) {
+            outOfBounds = true;
+            return;
+        }
+        // Undo the orientation of the corners of the rectangle, giving a rectangle of the window.
+        double[] corners = {x, y, x + cropWidth, y + cropHeight};
+        double orientedWidth = width;
+        double orientedHeight = height;
+        for (int i = 0; i < turns; i++) {
+            for (int c = 0; c < 4; c += 2) {
+                double oldX = corners[c];
+                corners[c] = corners[c + 1];
+                corners[c + 1] = orientedWidth - oldX;
+            }
+            double oldWidth = orientedWidth;
+            orientedWidth = orientedHeight;
+            orientedHeight = oldWidth;
+        }
+        if (flip) {
+            corners[0] = orientedWidth - corners[0];
+            corners[2] = orientedWidth - corners[2];
+        }
+        double scaleX = windowWidth / orientedWidth;
+        double scaleY = windowHeight / orientedHeight;
+        windowX += Math.min(corners[0], corners[2]) * scaleX;
+        windowY += Math.min(corners[1], corners[3]) * scaleY;
+        windowWidth = Math.abs(corners[2] - corners[0]) * scaleX;
+        windowHeight = Math.abs(corners[3] - corners[1]) * scaleY;
+        width = cropWidth;
+        height = cropHeight;
+        if (resampled) {
+            flattenResult = true;
+        } else {
+            flattenWindow = true;
+        }
+    }
+
+    /**
+     * <p>
+     * Resize the image.
+     * </p>
+     *
+     * @param newWidth The new width.
+     * @param newHeight The new height.
+     */
+    public void resize(int newWidth, int newHeight) {
+        width = newWidth;
+        height = newHeight;
+        resampled = true;
+    }
+
+    /**
+     * <p>
+     * Apply the transform to an image.
+     * </p>
+     *
+     * <p>
+     * If the transform only rotates and flips the image, this may change the image it is given.
+     * </p>
+     *
+     * @param input The image to transform.
+     * @return The resulting image.
+     * @throws RasterFormatException If one of the crops is outside the image.
+     */
+    public BufferedImage apply(BufferedImage input) {
+        return apply(input, new OperationContext());
+    }
+
+    /**
+     * <p>
+     * Apply the transform to an image, in a context that can cancel it while resampling.
+     * </p>
+     *
+     * @param input The image to transform.
+     * @param context The context to apply the transform in.
+     * @return The resulting image.
+     * @throws RasterFormatException If one of the crops is outside the image.
+     */
+    @Override
+    public BufferedImage apply(BufferedImage input, OperationContext context) {
+        context.checkCancelled();
+        fold(input.getWidth(), input.getHeight());
+        if (outOfBounds) {
+            throw new RasterFormatException("Crop region is outside the image");
+        }
+        // The size of the window once resampled, before it is turned to its orientation.
+        int sizeX = turns % 2 == 0 ? width : height;
+        int sizeY = turns % 2 == 0 ? height : width;
+        BufferedImage result = input;
+        if (!resampled) {
+            if (flattenWindow) {
+                result = flatten(input.getSubimage((int) windowX, (int) windowY, sizeX, sizeY));
+            }
+        } else {
+            int left = Math.min((int) Math.round(windowX), input.getWidth() - 1);
+            int top = Math.min((int) Math.round(windowY), input.getHeight() - 1);
+            int right = Math.max(Math.min((int) Math.round(windowX + windowWidth), input.getWidth()), left + 1);
+            int bottom = Math.max(Math.min((int) Math.round(windowY + windowHeight), input.getHeight()), top + 1);
+            BufferedImage window = input.getSubimage(left, top, right - left, bottom - top);
+            if (flattenWindow) {
+                window = flatten(window);
+            }
+            result = Resampler.resize(window, sizeX, sizeY, Resampler.Quality.AREA, context);
+            if (flattenResult) {
+                result = flatten(result);
+            }
+        }
+        context.progress(1);
+        if (turns % 2 == 1) {
+            return PixelRemap.orient(result, flip, turns);
+        }
+        // The result is either the input or a new image, and is the right size, so it can be
+        // turned in place.
+        if (flip && turns == 2) {
+            return PixelRemap.flipVertical(result);
+        }
+        if (flip) {
+            PixelRemap.flipHorizontal(result);
+        }
+        if (turns == 2) {
+            PixelRemap.rotate180(result);
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Work out the window, size and orientation of the result for an input of the given size.
+     * </p>
+     *
+     * @param inputWidth The width of the input.
+     * @param inputHeight The height of the input.
+     */
+    private void fold(int inputWidth, int inputHeight) {
+        width = inputWidth;
+        height = inputHeight;
+        windowX = 0;
+        windowY = 0;
+        windowWidth = inputWidth;
+        windowHeight = inputHeight;
+        flip = false;
+        turns = 0;
+        resampled = false;
+        flattenWindow = false;
+        flattenResult = false;
+        outOfBounds = false;
+        for (GeometricOperation op : ops) {
+            op.foldInto(this);
+        }
+    }
+
+    /**
+     * <p>
+     * Flatten an image onto black, as {@link RegionCrop} does.
+     * </p>
+     *
+     * @param image The image to flatten.
+     * @return A new opaque image.
+     */
+    private static BufferedImage flatten(BufferedImage image) {
+        BufferedImage flat = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics g = flat.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return flat;
+    }
+}
@@ -39,4 +39,40 @@ public interface ImageOperation {
      * @return The image resulting from the operation
      */
     public BufferedImage apply(BufferedImage input);    
+
+    /**
+     * Apply the operation to an image, in a context that can cancel it and hear its progress.
+     * 
+     * Operations that take a while should override this to check
+     * {@link OperationContext#checkCancelled} and report progress as they go, and do their
+     * work on {@link OperationContext#getPool}. The default is for operations written before
+     * contexts, and only checks for cancelling before applying the operation with
+     * {@link apply(BufferedImage)}, reporting it done afterwards.
+     * 
+     * @param input The image to apply the operation to
+     * @param context The context to apply the operation in
+     * @return The image resulting from the operation
+     * @throws java.util.concurrent.CancellationException If the context is cancelled
+     */
+    public default BufferedImage apply(BufferedImage input, OperationContext context) {
+        context.checkCancelled();
+        BufferedImage output = apply(input);
+        context.progress(1);
+        return output;
+    }
+
+    /**
+     * Get a fingerprint of the operation's parameters.
+     * 
+     * Two operations with the same fingerprint must always produce the same image from the
+     * same input, since results are looked up in the {@link RenderCache} by fingerprint.
+     * Operations should override this to include the class name and the value of every
+     * parameter that affects the result. The default is null, which means the operation cannot
+     * be fingerprinted, so neither its result nor anything applied after it is ever cached.
+     * 
+     * @return The fingerprint of this operation, or null if it has none.
+     */
+    public default String fingerprint() {
+        return null;
+    }
 }
@@ -5,6 +5,8 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeListener;
 
 import javax.swing.*;
 
@@ -88,6 +90,35 @@ public class ImagePanel extends JPanel {
      */
     public static double scale;
 
+    /** The smallest zoom level, as a percentage. */
+    public static final double MIN_ZOOM = 10;
+    /** The largest zoom level, as a percentage. */
+    public static final double MAX_ZOOM = 800;
+
+    /**
+     * The halving sizes of the current image, used to draw it zoomed out, or null if they are
+     * to be made again from scratch or are being brought up to date in the background.
+     */
+    private MipPyramid pyramid;
+    /** Counts requests to bring {@link pyramid} up to date, so that out of date ones can be ignored. */
+    private int pyramidRequest;
+    /** Whether the pyramid is being brought up to date in the background. */
+    private boolean requesting;
+
+    /**
+     * Repaints the panel whenever the image finishes rendering in the background.
+     */
+    private PropertyChangeListener imageListener = e -> {
+        if (!image.isBackgroundRendering()) {
+            // The image may have been changed in place, so the pyramid cannot be brought up to date.
+            dropPyramid();
+        }
+        repaint();
+        if (getParent() != null) {
+            getParent().revalidate();
+        }
+    };
+
     /**
      * <p>
      * Create a new ImagePanel.
@@ -101,6 +132,7 @@ public class ImagePanel extends JPanel {
      */
     public ImagePanel(JFrame frame) {
         image = new EditableImage(frame);
+        image.addPropertyChangeListener("image", imageListener);
         scale = 1.0;
         this.addMouseListener(mHandler);
 
@@ -303,7 +335,12 @@ public class ImagePanel extends JPanel {
      * @param image The editable image.
      */
     public void setImage(EditableImage image) {
+        if (this.image != null) {
+            this.image.removePropertyChangeListener("image", imageListener);
+        }
         this.image = image;
+        dropPyramid();
+        image.addPropertyChangeListener("image", imageListener);
         image.updateFrameTitle();
     }
 
@@ -337,11 +374,11 @@ public class ImagePanel extends JPanel {
      * @param zoomPercent The new zoom level as a percentage.
      */
     public void setZoom(double zoomPercent) {
-        if (zoomPercent < 50) {
-            zoomPercent = 50;
+        if (zoomPercent < MIN_ZOOM) {
+            zoomPercent = MIN_ZOOM;
         }
-        if (zoomPercent > 200) {
-            zoomPercent = 200;
+        if (zoomPercent > MAX_ZOOM) {
+            zoomPercent = MAX_ZOOM;
         }
         rect = null;
         // Update the scale.
@@ -363,13 +400,98 @@ public class ImagePanel extends JPanel {
     @Override
     public Dimension getPreferredSize() {
         if (image.hasImage()) {
-            return new Dimension((int) Math.round(image.getCurrentImage().getWidth() * scale),
-                    (int) Math.round(image.getCurrentImage().getHeight() * scale));
+            // Previews worked out on a proxy are shown at the size of the image they stand in for.
+            double drawScale = scale / image.getPreviewScale();
+            return new Dimension((int) Math.round(image.getCurrentImage().getWidth() * drawScale),
+                    (int) Math.round(image.getCurrentImage().getHeight() * drawScale));
         } else {
             return new Dimension(450, 450);
         }
     }
 
+    /**
+     * <p>
+     * Bring the pyramid up to date with an image in the background, and repaint once the level
+     * for a scale is ready.
+     * </p>
+     * 
+     * <p>
+     * The pyramid is handed over to a {@link JobScheduler.Priority#RENDER} job, which finds the
+     * part of the image that changed and makes the level, then hands it back on the event dispatch
+     * thread. Only one request goes at a time. If the image or scale has changed by the time it
+     * is handed back, the repaint makes another request, which only has to work out the part of
+     * the pyramid that changed since.
+     * </p>
+     * 
+     * @param current The image.
+     * @param drawScale The scale the image is drawn at.
+     */
+    private void requestPyramid(BufferedImage current, double drawScale) {
+        if (requesting) {
+            return;
+        }
+        MipPyramid old = pyramid;
+        int level = (old != null ? old : new MipPyramid(current)).levelFor(drawScale);
+        int request = ++pyramidRequest;
+        requesting = true;
+        // The job has the pyramid to itself until it is handed back.
+        pyramid = null;
+        JobScheduler.getShared().submit(this, JobScheduler.Priority.RENDER, context -> {
+            MipPyramid updated = old;
+            if (updated == null) {
+                updated = new MipPyramid(current);
+            } else if (updated.getImage() != current) {
+                BufferedImage before = updated.getImage();
+                Rectangle changed = null;
+                if (current.getWidth() == before.getWidth() && current.getHeight() == before.getHeight()) {
+                    changed = MipPyramid.changedRegion(before, current);
+                }
+                updated.update(current, changed);
+            }
+            context.checkCancelled();
+            updated.getLevel(level);
+            MipPyramid ready = updated;
+            SwingUtilities.invokeLater(() -> pyramidReady(ready, request));
+        }).whenComplete((result, e) -> {
+            if (e != null) {
+                // Start again from scratch at the next repaint.
+                SwingUtilities.invokeLater(() -> {
+                    if (request == pyramidRequest) {
+                        requesting = false;
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * <p>
+     * Take back the pyramid from a request, and repaint with it.
+     * </p>
+     * 
+     * @param ready The pyramid, brought up to date.
+     * @param request The number of the request, which is ignored if it is not the latest.
+     */
+    private void pyramidReady(MipPyramid ready, int request) {
+        if (request != pyramidRequest) {
+            return;
+        }
+        pyramid = ready;
+        requesting = false;
+        repaint();
+    }
+
+    /**
+     * <p>
+     * Drop the pyramid, so that it is made again from scratch, ignoring any request still going.
+     * </p>
+     */
+    private void dropPyramid() {
+        pyramid = null;
+        pyramidRequest++;
+        requesting = false;
+    }
+
     /**
      * <p>
      * (Re)draw the component in the GUI. This also allows for previews of
@@ -383,8 +505,27 @@ public class ImagePanel extends JPanel {
         super.paintComponent(g);
         if (image.hasImage()) {
             Graphics2D g2 = (Graphics2D) g.create();
-            g2.scale(scale, scale);
-            g2.drawImage(image.getCurrentImage(), null, 0, 0);
+            BufferedImage current = image.getCurrentImage();
+            double drawScale = scale / image.getPreviewScale();
+            // Zoomed out, draw the level of the pyramid nearest the size shown rather than
+            // shrinking the whole image on every repaint. Until the level is ready, the whole
+            // image is drawn shrunk.
+            BufferedImage drawn = current;
+            int level = 0;
+            if (drawScale < 1) {
+                if (pyramid != null && pyramid.getImage() == current && pyramid.isReady(pyramid.levelFor(drawScale))) {
+                    level = pyramid.levelFor(drawScale);
+                    drawn = pyramid.getLevel(level);
+                } else {
+                    requestPyramid(current, drawScale);
+                }
+            }
+            g2.scale(drawScale * current.getWidth() / drawn.getWidth(), drawScale * current.getHeight() / drawn.getHeight());
+            if (level > 0 || drawScale > scale) {
+                // Smooth out levels and proxies rather than showing their pixels as blocks.
+                g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            }
+            g2.drawImage(drawn, null, 0, 0);
             g2.dispose();
         }
         Graphics2D g2d = (Graphics2D) g.create();
@@ -1,6 +1,5 @@
 package cosc202.andie;
 
-import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
 
@@ -15,7 +14,7 @@ import java.io.Serializable;
  * </p>
  * 
  */
-public class ImageResize50 implements ImageOperation, Serializable {
+public class ImageResize50 implements GeometricOperation, Serializable {
 
     /**
      * <p>
@@ -27,15 +26,85 @@ public class ImageResize50 implements ImageOperation, Serializable {
      */
     @Override
     public BufferedImage apply(BufferedImage input) {
+        return apply(input, new OperationContext());
+    }
+
+    /**
+     * <p>
+     * Apply an image resize 50 operation, in a context that can cancel it between bands of rows.
+     * </p>
+     * 
+     * @param input a BufferedImage object to apply the image resize to.
+     * @param context The context to apply the resize in.
+     * @return The resized image.
+     */
+    @Override
+    public BufferedImage apply(BufferedImage input, OperationContext context) {
 
         int newWidth = (input.getWidth() / 2);
         int newHeight = (input.getHeight() / 2);
 
-        Image resize = input.getScaledInstance(newWidth, newHeight, Image.SCALE_AREA_AVERAGING);
+        return Resampler.resize(input, newWidth, newHeight, Resampler.Quality.AREA, context);
+    }
 
-        BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
-        resizedImage.getGraphics().drawImage(resize, 0, 0, null);
+    /**
+     * <p>
+     * Add this resize to the end of a {@link GeometricTransform}.
+     * </p>
+     * 
+     * @param transform The transform to add to.
+     */
+    @Override
+    public void foldInto(GeometricTransform transform) {
+        transform.resize(transform.getWidth() / 2, transform.getHeight() / 2);
+    }
 
-        return resizedImage;
+    /**
+     * <p>
+     * Check whether this operation resamples the image, which it does.
+     * </p>
+     * 
+     * @return True.
+     */
+    @Override
+    public boolean resamples() {
+        return true;
+    }
+
+    /**
+     * <p>
+     * Check whether another object is also a ImageResize50. All ImageResize50s are the same operation.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is an ImageResize50, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null && obj.getClass() == getClass();
+    }
+
+    /**
+     * <p>
+     * Get a hash code for this ImageResize50, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return getClass().getName().hashCode();
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this ImageResize50, which has no parameters.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "ImageResize50()";
     }
 }
\ No newline at end of file
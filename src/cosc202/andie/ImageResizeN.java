@@ -1,8 +1,8 @@
 package cosc202.andie;
 
-import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
  * <p>
@@ -22,7 +22,7 @@ import java.io.Serializable;
  *
  * @author Stella Srzich (Modified from Michael Campbell)
  */
-public class ImageResizeN implements ImageOperation, Serializable {
+public class ImageResizeN implements GeometricOperation, Serializable {
 
     /**
      * The percentage or resize to apply. A resize percent of 100% is no change,
@@ -78,6 +78,20 @@ public class ImageResizeN implements ImageOperation, Serializable {
      */
     @Override
     public BufferedImage apply(BufferedImage input) {
+        return apply(input, new OperationContext());
+    }
+
+    /**
+     * <p>
+     * Apply an image resize by n%, in a context that can cancel it between bands of rows.
+     * </p>
+     * 
+     * @param input a BufferedImage object to apply the image resize n to.
+     * @param context The context to apply the resize in.
+     * @return the input image modified to n% of its original size.
+     */
+    @Override
+    public BufferedImage apply(BufferedImage input, OperationContext context) {
         // Make sure resizePercent is in range [50, 200].
         if (resizePercent < 50) {
             resizePercent = 50;
@@ -90,30 +104,104 @@ public class ImageResizeN implements ImageOperation, Serializable {
         // nothing will happen.
         BufferedImage resizedImage = input;
 
-        if (resizePercent > 100) {
-            double scale = 100.0 / (resizePercent - 100.0);
+        if (resizePercent != 100) {
+            int newWidth = newLength(input.getWidth());
+            int newHeight = newLength(input.getHeight());
 
-            int newWidth = input.getWidth() + ((int) (((double) input.getWidth()) / scale));
-            int newHeight = input.getHeight() + ((int) (((double) input.getHeight()) / scale));
+            resizedImage = Resampler.resize(input, newWidth, newHeight, Resampler.Quality.AREA, context);
+        }
 
-            Image resize = input.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
+        return resizedImage;
+    }
 
-            resizedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
-            resizedImage.getGraphics().drawImage(resize, 0, 0, null);
+    /**
+     * <p>
+     * Work out the new length of a side of the image.
+     * </p>
+     * 
+     * @param length The old length.
+     * @return The new length, resizePercent% of the old one (kept in the range [50, 200]).
+     */
+    private int newLength(int length) {
+        int percent = Math.min(Math.max(resizePercent, 50), 200);
+        if (percent > 100) {
+            double scale = 100.0 / (percent - 100.0);
+            return length + ((int) (((double) length) / scale));
+        }
+        if (percent < 100) {
+            double scale = 100.0 / percent;
+            return ((int) (((double) length) / scale));
         }
-        if (resizePercent < 100) {
-            double scale = 100.0 / resizePercent;
+        return length;
+    }
 
-            int newWidth = ((int) (((double) input.getWidth()) / scale));
-            int newHeight = ((int) (((double) input.getHeight()) / scale));
+    /**
+     * <p>
+     * Add this resize to the end of a {@link GeometricTransform}. Resizing to 100% does nothing.
+     * </p>
+     * 
+     * @param transform The transform to add to.
+     */
+    @Override
+    public void foldInto(GeometricTransform transform) {
+        int newWidth = newLength(transform.getWidth());
+        int newHeight = newLength(transform.getHeight());
+        if (newWidth != transform.getWidth() || newHeight != transform.getHeight()) {
+            transform.resize(newWidth, newHeight);
+        }
+    }
 
-            Image resize = input.getScaledInstance(newWidth, newHeight, Image.SCALE_AREA_AVERAGING);
+    /**
+     * <p>
+     * Check whether this operation resamples the image, which it does.
+     * </p>
+     * 
+     * @return True.
+     */
+    @Override
+    public boolean resamples() {
+        return true;
+    }
 
-            resizedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
-            resizedImage.getGraphics().drawImage(resize, 0, 0, null);
+    /**
+     * <p>
+     * Check whether another object is an ImageResizeN with the same resize percentage.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is an ImageResizeN with the same resize percentage, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
         }
+        ImageResizeN other = (ImageResizeN) obj;
+        return resizePercent == other.resizePercent;
+    }
 
-        return resizedImage;
+    /**
+     * <p>
+     * Get a hash code for this ImageResizeN, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), resizePercent);
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this ImageResizeN made up of its resize percentage.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "ImageResizeN(resizePercent=" + resizePercent + ")";
     }
 
 }
@@ -0,0 +1,136 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * A summed-area table of the alpha, red, green and blue values of an image.
+ * </p>
+ *
+ * <p>
+ * Each entry holds the sum of one channel over every pixel above and to the left of it, so the
+ * sum over any rectangle can be worked out from just four entries, however big the rectangle is.
+ * This makes box filters like the {@link MeanFilter} take the same time whatever their radius.
+ * </p>
+ *
+ * <p>
+ * Entries are kept as <code>int</code>s and are allowed to overflow. Because the sum over a
+ * rectangle is worked out by adding and subtracting entries, it still comes out right as long as
+ * the rectangle itself holds no more than about 8 million pixels.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @version 1.0
+ */
+public class IntegralImage {
+
+    /** The channel holding blue values. */
+    public static final int BLUE = 0;
+    /** The channel holding green values. */
+    public static final int GREEN = 1;
+    /** The channel holding red values. */
+    public static final int RED = 2;
+    /** The channel holding alpha values. */
+    public static final int ALPHA = 3;
+
+    /** The summed-area table of each channel, with an extra row and column of zeros at the top and left. */
+    private int[][] tables;
+    /** The width of the image. */
+    private int width;
+    /** The height of the image. */
+    private int height;
+
+    /**
+     * <p>
+     * Build the summed-area tables of an image.
+     * </p>
+     *
+     * @param pixels The ARGB pixels of the image, <code>width</code> to a row.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     */
+    public IntegralImage(int[] pixels, int width, int height) {
+        this.width = width;
+        this.height = height;
+        int stride = width + 1;
+        tables = new int[4][stride * (height + 1)];
+        for (int channel = 0; channel < 4; channel++) {
+            int[] table = tables[channel];
+            int shift = 8 * channel;
+            for (int y = 0; y < height; y++) {
+                // Keep a running sum along the row and add it to the entry above.
+                int rowSum = 0;
+                int above = y * stride + 1;
+                int here = above + stride;
+                int in = y * width;
+                for (int x = 0; x < width; x++) {
+                    rowSum += (pixels[in + x] >> shift) & 0xff;
+                    table[here + x] = table[above + x] + rowSum;
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Get the width of the image.
+     * </p>
+     *
+     * @return The width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * <p>
+     * Get the height of the image.
+     * </p>
+     *
+     * @return The height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * <p>
+     * Get the sum of one channel over a rectangle of the image.
+     * </p>
+     *
+     * @param channel The channel to sum, one of {@link ALPHA}, {@link RED}, {@link GREEN} or {@link BLUE}.
+     * @param x The left of the rectangle.
+     * @param y The top of the rectangle.
+     * @param boxWidth The width of the rectangle.
+     * @param boxHeight The height of the rectangle.
+     * @return The sum of the channel over every pixel in the rectangle.
+     */
+    public int sum(int channel, int x, int y, int boxWidth, int boxHeight) {
+        int[] table = tables[channel];
+        int stride = width + 1;
+        int top = y * stride + x;
+        int bottom = (y + boxHeight) * stride + x;
+        return table[bottom + boxWidth] - table[bottom] - table[top + boxWidth] + table[top];
+    }
+
+    /**
+     * <p>
+     * Get the mean of each channel over a rectangle of the image, rounded down.
+     * </p>
+     *
+     * @param x The left of the rectangle.
+     * @param y The top of the rectangle.
+     * @param boxWidth The width of the rectangle.
+     * @param boxHeight The height of the rectangle.
+     * @return The mean pixel of the rectangle, as an ARGB value.
+     */
+    public int mean(int x, int y, int boxWidth, int boxHeight) {
+        int count = boxWidth * boxHeight;
+        int argb = 0;
+        for (int channel = 0; channel < 4; channel++) {
+            argb |= (sum(channel, x, y, boxWidth, boxHeight) / count) << (8 * channel);
+        }
+        return argb;
+    }
+}
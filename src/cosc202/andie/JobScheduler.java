@@ -0,0 +1,450 @@
+package cosc202.andie;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.prefs.Preferences;
+
+/**
+ * <p>
+ * Runs background work, such as renders and previews, on a fixed number of cores, most
+ * urgent first.
+ * </p>
+ *
+ * <p>
+ * Every job belongs to a {@link Priority} class. Queued jobs are started in order of class, then
+ * in the order they were submitted. Jobs work in parallel on a pool of their own, given to them
+ * through their {@link OperationContext}, whose size is a core budget read from the preferences
+ * under {@link #BUDGET_KEY}, defaulting to the number of processors. At most that many jobs run
+ * at once, and they share the pool.
+ * </p>
+ *
+ * <p>
+ * While a job is waiting or running, running jobs of less urgent classes are preempted: their
+ * context is {@link OperationContext#pause}d, so they stop at their next check and hand the pool
+ * over. Once nothing more urgent is waiting or running, they are resumed and carry on from where
+ * they stopped, rather than starting again. So a preview never waits for a full render, and a
+ * render loses no work to it.
+ * </p>
+ *
+ * <p>
+ * A job submitted for the same owner and class as an earlier one supersedes it. The earlier one
+ * is taken off the queue if it has not started, or cancelled if it has, and its future is
+ * cancelled either way. Owners are usually {@link EditableImage}s, so that only the latest
+ * change to an image is ever rendered.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see OperationContext
+ * @version 1.0
+ */
+public class JobScheduler {
+
+    /** The preferences key holding the number of cores jobs work on, or 0 for the number of processors. */
+    public static final String BUDGET_KEY = "jobThreads";
+
+    /**
+     * <p>
+     * The classes of job, from most to least urgent.
+     * </p>
+     */
+    public enum Priority {
+        /** Work the user is waiting on while they interact, such as slider previews. */
+        PREVIEW,
+        /** Full resolution renders of the image being edited, and exports. */
+        RENDER
+    }
+
+    /**
+     * <p>
+     * A piece of work to run on the scheduler.
+     * </p>
+     */
+    public interface Job {
+
+        /**
+         * <p>
+         * Do the work.
+         * </p>
+         *
+         * <p>
+         * The job should check the context for cancelling as it goes (applying operations in
+         * it does this), which is also where it waits while it is preempted.
+         * </p>
+         *
+         * @param context The context to do the work in, which is paused if the job is
+         * preempted, and cancelled if it is superseded.
+         */
+        public void run(OperationContext context);
+    }
+
+    /** The scheduler shared by every {@link EditableImage}. */
+    private static JobScheduler shared;
+
+    /** The number of cores jobs work on, which is also the number of jobs that may run at once. */
+    private int budget;
+    /** The pool jobs work in parallel on. */
+    private ForkJoinPool pool;
+    /** The jobs waiting to start, most urgent first. */
+    private PriorityQueue<Task> queue = new PriorityQueue<Task>();
+    /** The jobs running now. */
+    private List<Task> running = new ArrayList<Task>();
+    /** The jobs started but preempted, most urgent first, whose threads are waiting to resume them. */
+    private PriorityQueue<Task> paused = new PriorityQueue<Task>();
+    /** The number of worker threads started so far, each of which runs one job at a time. */
+    private int workers;
+    /** The number of jobs submitted so far, used to keep jobs of the same class in order. */
+    private long submitted;
+    /** The number of jobs of each class preempted so far. */
+    private long[] preempted = new long[Priority.values().length];
+    /** The number of jobs of each class superseded before they finished so far. */
+    private long[] coalesced = new long[Priority.values().length];
+
+    /**
+     * <p>
+     * Create a new scheduler.
+     * </p>
+     *
+     * @param budget The number of cores jobs work on, at least 1.
+     */
+    public JobScheduler(int budget) {
+        this.budget = Math.max(1, budget);
+        this.pool = new ForkJoinPool(this.budget);
+    }
+
+    /**
+     * <p>
+     * Get the scheduler shared by every {@link EditableImage}, creating it with the budget
+     * set in the preferences if needed.
+     * </p>
+     *
+     * @return The shared scheduler.
+     */
+    public static synchronized JobScheduler getShared() {
+        if (shared == null) {
+            Preferences prefs = Preferences.userNodeForPackage(Andie.class);
+            int budget = prefs.getInt(BUDGET_KEY, 0);
+            if (budget <= 0) {
+                budget = Runtime.getRuntime().availableProcessors();
+            }
+            shared = new JobScheduler(budget);
+        }
+        return shared;
+    }
+
+    /**
+     * <p>
+     * Submit a job, superseding any earlier job of the same class for the same owner.
+     * </p>
+     *
+     * @param owner The owner of the job, such as the image it is for.
+     * @param priority The class of the job.
+     * @param job The job.
+     * @return A future that completes when the job has finished, or is cancelled if the job is
+     * superseded. Cancelling it cancels the job.
+     */
+    public synchronized CompletableFuture<Void> submit(Object owner, Priority priority, Job job) {
+        List<Task> superseded = new ArrayList<Task>();
+        for (Task task : queue) {
+            if (task.owner == owner && task.priority == priority) {
+                superseded.add(task);
+            }
+        }
+        for (Task task : running) {
+            if (task.owner == owner && task.priority == priority && !task.isDone()) {
+                superseded.add(task);
+            }
+        }
+        for (Task task : superseded) {
+            coalesced[priority.ordinal()]++;
+            task.cancel(false);
+        }
+        Task task = new Task(owner, priority, job, submitted++);
+        queue.add(task);
+        schedule();
+        return task;
+    }
+
+    /**
+     * <p>
+     * Get the number of jobs of a class waiting to start.
+     * </p>
+     *
+     * @param priority The class.
+     * @return The number of jobs queued.
+     */
+    public synchronized int getQueueDepth(Priority priority) {
+        int depth = 0;
+        for (Task task : queue) {
+            if (task.priority == priority) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * <p>
+     * Get the number of jobs of a class running now.
+     * </p>
+     *
+     * @param priority The class.
+     * @return The number of jobs running.
+     */
+    public synchronized int getRunningCount(Priority priority) {
+        int count = 0;
+        for (Task task : running) {
+            if (task.priority == priority) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * <p>
+     * Get the number of times jobs of a class have been preempted by more urgent ones.
+     * </p>
+     *
+     * @param priority The class.
+     * @return The number of preemptions.
+     */
+    public synchronized long getPreemptedCount(Priority priority) {
+        return preempted[priority.ordinal()];
+    }
+
+    /**
+     * <p>
+     * Get the number of jobs of a class superseded by a later job for the same owner before
+     * they finished.
+     * </p>
+     *
+     * @param priority The class.
+     * @return The number of jobs superseded.
+     */
+    public synchronized long getCoalescedCount(Priority priority) {
+        return coalesced[priority.ordinal()];
+    }
+
+    /**
+     * <p>
+     * Get the number of jobs of a class preempted and waiting to be resumed.
+     * </p>
+     *
+     * @param priority The class.
+     * @return The number of jobs paused.
+     */
+    public synchronized int getPausedCount(Priority priority) {
+        int count = 0;
+        for (Task task : paused) {
+            if (task.priority == priority) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * <p>
+     * Get the number of cores jobs work on, which is also the number of jobs that may run at once.
+     * </p>
+     *
+     * @return The budget.
+     */
+    public int getBudget() {
+        return budget;
+    }
+
+    /**
+     * <p>
+     * Preempt and resume jobs after a change, and start a worker thread if a job can start and
+     * none is free to start it.
+     * </p>
+     *
+     * <p>
+     * Running jobs of a class less urgent than a job waiting or running are paused. Paused jobs
+     * are resumed, most urgent first, once nothing more urgent is waiting or running and there is
+     * room in the budget, before any queued job of the same class is started.
+     * </p>
+     */
+    private void schedule() {
+        Priority urgent = mostUrgent();
+        for (Task task : running) {
+            if (task.priority.compareTo(urgent) > 0 && !task.isDone()) {
+                preempted[task.priority.ordinal()]++;
+                task.context.pause();
+                paused.add(task);
+            }
+        }
+        running.removeAll(paused);
+        while (!paused.isEmpty() && running.size() < budget
+                && (queue.isEmpty() || paused.peek().compareTo(queue.peek()) < 0)
+                && paused.peek().priority.compareTo(mostUrgent()) <= 0) {
+            Task task = paused.poll();
+            running.add(task);
+            task.context.resume();
+        }
+        // Every running and paused job has a thread of its own.
+        if (canStart() && workers <= running.size() + paused.size()) {
+            Thread worker = new Thread(this::work, "ANDIE job " + workers);
+            worker.setDaemon(true);
+            worker.start();
+            workers++;
+        }
+        notifyAll();
+    }
+
+    /**
+     * <p>
+     * Get the most urgent class of job waiting or running.
+     * </p>
+     *
+     * @return The class, or the least urgent class if there are no jobs.
+     */
+    private Priority mostUrgent() {
+        Priority[] classes = Priority.values();
+        Priority urgent = classes[classes.length - 1];
+        if (!queue.isEmpty() && queue.peek().priority.compareTo(urgent) < 0) {
+            urgent = queue.peek().priority;
+        }
+        for (Task task : running) {
+            if (task.priority.compareTo(urgent) < 0) {
+                urgent = task.priority;
+            }
+        }
+        return urgent;
+    }
+
+    /**
+     * <p>
+     * Check whether the job at the head of the queue can be started.
+     * </p>
+     *
+     * @return True if there is a queued job, room in the budget, and no more urgent job running
+     * or paused job to resume first, false otherwise.
+     */
+    private boolean canStart() {
+        if (queue.isEmpty() || running.size() >= budget) {
+            return false;
+        }
+        Task next = queue.peek();
+        if (!paused.isEmpty() && paused.peek().compareTo(next) < 0) {
+            return false;
+        }
+        return next.priority.compareTo(mostUrgent()) <= 0;
+    }
+
+    /**
+     * <p>
+     * Run jobs from the queue, most urgent first, for as long as the program runs.
+     * </p>
+     */
+    private void work() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                while (!canStart()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                task = queue.poll();
+                task.context = new OperationContext(pool);
+                running.add(task);
+                schedule();
+            }
+            try {
+                task.job.run(task.context);
+            } catch (CancellationException e) {
+                // The job gave up because it was cancelled.
+            } catch (Throwable e) {
+                // Errors such as running out of memory fail the job, not the worker.
+                task.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    running.remove(task);
+                    // A job cancelled while it was paused finishes without being resumed.
+                    paused.remove(task);
+                    task.complete(null);
+                    schedule();
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * A job on the scheduler, which is also the future handed back for it.
+     * </p>
+     */
+    private class Task extends CompletableFuture<Void> implements Comparable<Task> {
+
+        /** The owner of the job. */
+        private Object owner;
+        /** The class of the job. */
+        private Priority priority;
+        /** The job itself. */
+        private Job job;
+        /** The order the job was submitted in. */
+        private long order;
+        /** The context the job is running in, or null if it has not started yet. */
+        private volatile OperationContext context;
+
+        /**
+         * <p>
+         * Create a new Task.
+         * </p>
+         *
+         * @param owner The owner of the job.
+         * @param priority The class of the job.
+         * @param job The job itself.
+         * @param order The order the job was submitted in.
+         */
+        Task(Object owner, Priority priority, Job job, long order) {
+            this.owner = owner;
+            this.priority = priority;
+            this.job = job;
+            this.order = order;
+        }
+
+        /**
+         * <p>
+         * Cancel the job, taking it off the queue if it has not started, or cancelling its
+         * context if it has.
+         * </p>
+         *
+         * @param mayInterruptIfRunning Ignored, as jobs are cancelled through their context.
+         * @return True if the job was cancelled, false if it had already finished.
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            synchronized (JobScheduler.this) {
+                queue.remove(this);
+                OperationContext started = context;
+                if (started != null) {
+                    started.cancel();
+                }
+            }
+            return cancelled;
+        }
+
+        /**
+         * <p>
+         * Compare jobs by class, then by the order they were submitted in.
+         * </p>
+         *
+         * @param other The job to compare to.
+         * @return Negative if this job should start first, positive if the other should.
+         */
+        @Override
+        public int compareTo(Task other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+    }
+}
@@ -36,16 +36,35 @@ public class Macro extends ArrayList<ImageOperation> implements IMacro {
      */
     @Override
     public BufferedImage apply(BufferedImage input) {
+        return apply(input, new OperationContext());
+    }
+
+    /**
+     * <p>
+     * Apply this macro to an image, in a context that can cancel it.
+     * </p>
+     * 
+     * <p>
+     * Each step of the macro is applied in a slice of the context, so that progress goes
+     * evenly from one step to the next.
+     * </p>
+     */
+    @Override
+    public BufferedImage apply(BufferedImage input, OperationContext context) {
         // Make copy of input
         BufferedImage output = new BufferedImage(input.getWidth(), input.getHeight(), input.getType());
         Graphics g = output.getGraphics();
         g.drawImage(input, 0, 0, null);
         g.dispose();
 
-        // Apply the operations in the right order
-        for (int i = 0; i < size(); i++) {
-            ImageOperation op = get(i);
-            output = op.apply(output);
+        // Apply the operations in the right order, by the cheapest plan. A macro is a single
+        // operation in the history, so its resizes can be combined into one resample.
+        OperationPlan plan = new OperationPlan(this, 0, true);
+        for (int i = 0; i < plan.size(); i++) {
+            ImageOperation op = plan.getOperation(i);
+            if (op != null) {
+                output = op.apply(output, context.slice((double) i / plan.size(), (double) (i + 1) / plan.size()));
+            }
         }
         return output;
     }
@@ -90,4 +109,28 @@ public class Macro extends ArrayList<ImageOperation> implements IMacro {
         return str;
     } 
     
+    /**
+     * <p>
+     * Get a fingerprint of this Macro made up of the fingerprints of its operations, in order.
+     * </p>
+     * 
+     * @return The fingerprint of this macro, or null if any of its operations has none.
+     */
+    @Override
+    public String fingerprint() {
+        StringBuilder str = new StringBuilder("Macro[");
+        for (int i = 0; i < size(); i++) {
+            if (i > 0) {
+                str.append(";");
+            }
+            String op = get(i).fingerprint();
+            if (op == null) {
+                // One of the operations cannot be fingerprinted, so neither can the macro.
+                return null;
+            }
+            str.append(op);
+        }
+        return str.append("]").toString();
+    }
+
 }
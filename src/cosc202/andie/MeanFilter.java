@@ -1,6 +1,5 @@
 package cosc202.andie;
 
-import java.awt.image.*;
 import java.util.*;
 
 /**
@@ -10,7 +9,8 @@ import java.util.*;
  * 
  * <p>
  * A Mean filter blurs an image by replacing each pixel by the average of the
- * pixels in a surrounding neighbourhood, and can be implemented by a convoloution.
+ * pixels in a surrounding neighbourhood. The sums over each neighbourhood are
+ * taken from an {@link IntegralImage}, so the cost does not grow with the radius.
  * </p>
  * 
  * <p>
@@ -18,11 +18,11 @@ import java.util.*;
  * 4.0</a>
  * </p>
  * 
- * @see java.awt.image.ConvolveOp
+ * @see IntegralImage
  * @author Steven Mills
  * @version 1.0
  */
-public class MeanFilter implements ImageOperation, java.io.Serializable {
+public class MeanFilter implements TileOperation, java.io.Serializable {
 
     /**
      * The size of filter to apply. A radius of 1 is a 3x3 filter, a radius of 2 a
@@ -63,100 +63,82 @@ public class MeanFilter implements ImageOperation, java.io.Serializable {
 
     /**
      * <p>
-     * Apply a Mean filter to an image.
+     * Get how far from an output pixel the Mean filter reads, which is its {@link radius}.
+     * </p>
+     * 
+     * @return The halo needed around each tile.
+     */
+    public int getHalo() {
+        return radius;
+    }
+
+    /**
+     * <p>
+     * Apply a Mean filter to one tile of an image.
      * </p>
      * 
      * <p>
-     * As with many filters, the Mean filter is implemented via convolution.
-     * The size of the convolution kernel is specified by the {@link radius}.
-     * Larger radii lead to stronger blurring.
+     * Each pixel is replaced by the mean of the (2 * {@link radius} + 1) square of pixels
+     * around it, rounded down. Larger radii lead to stronger blurring. Rather than adding up
+     * the whole square for every pixel, the sums come from an {@link IntegralImage} of the
+     * tile, so the filter takes the same time whatever the radius. Pixels beyond the edge of
+     * the image take the value of the nearest edge pixel.
      * </p>
      * 
-     * @param input The image to apply the Mean filter to.
-     * @return The resulting (blurred) image.
+     * @param src The ARGB pixels of the tile and its halo.
+     * @param dst The array to write the ARGB pixels of the resulting tile into.
+     * @param width The width of the tile, not including the halo.
+     * @param height The height of the tile, not including the halo.
      */
-    public BufferedImage apply(BufferedImage input) {
-        int size = (2 * radius + 1) * (2 * radius + 1);
-        float[] array = new float[size];
-        Arrays.fill(array, 1.0f / size);
-
-        Kernel kernel = new Kernel(2 * radius + 1, 2 * radius + 1, array);
-        // Create a new image with the same values as in the original image, but with
-        // the edge pixel values copied to new edge pixel values (the image is bigger by
-        // the radius of the kernel)
-        // on each side and the top and bottom.
-        BufferedImage edgesPlusInput = new BufferedImage(input.getWidth() + 2 * radius, input.getHeight() + 2 * radius,
-                BufferedImage.TYPE_INT_ARGB);
-        // Fill the pixel values of this new buffered image.
-        for (int y = 0; y < input.getHeight(); ++y) {
-            for (int x = 0; x < input.getWidth(); ++x) {
-                // Copy over pixel values from the original image to pixels to the right and
-                // lower by 'radius' amount.
-                edgesPlusInput.setRGB(x + radius, y + radius, input.getRGB(x, y));
-                // If we are at an edge, then we copy that value to the values
-                // above/below/right/left.
-                if (y == 0) { // We are at the top of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i, input.getRGB(x, y));
-                    }
-                } else if (y == input.getHeight() - 1) { // We are at the bottom of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i + input.getHeight() + radius, input.getRGB(x, y));
-                    }
-                }
-                if (x == 0) { // We are at the left of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i, y + radius, input.getRGB(x, y));
-                    }
-                } else if (x == input.getWidth() - 1) { // We are at the right of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i + input.getWidth() + radius, y + radius, input.getRGB(x, y));
-                    }
-                }
-                // Dealing with corners.
-                if (x == 0 && y == 0) { // Top left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b, input.getRGB(x, y));
-                        }
-                    }
-                } else if (x == 0 && y == input.getHeight() - 1) { // Bottom left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b + input.getHeight() + radius, input.getRGB(x, y));
-                        }
-                    }
-                } else if (x == input.getWidth() - 1 && y == 0) { // Top right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b, input.getRGB(x, y));
-                        }
-                    }
-                } else if (x == input.getWidth() - 1 && y == input.getHeight() - 1) { // Bottom right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b + input.getHeight() + radius,
-                                    input.getRGB(x, y));
-                        }
-                    }
-                }
+    public void applyTile(int[] src, int[] dst, int width, int height) {
+        int diameter = 2 * radius + 1;
+        IntegralImage sums = new IntegralImage(src, width + 2 * radius, height + 2 * radius);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                dst[y * width + x] = sums.mean(x, y, diameter, diameter);
             }
         }
-        // Apply the filter to the new buffered image that has interpolated edges.
-        ConvolveOp convOp = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
-        BufferedImage uncroppedOutput = new BufferedImage(edgesPlusInput.getColorModel(), edgesPlusInput.copyData(null),
-                edgesPlusInput.isAlphaPremultiplied(), null);
-        convOp.filter(edgesPlusInput, uncroppedOutput);
+    }
 
-        // Crop the uncropped output.
-        BufferedImage output = new BufferedImage(input.getWidth(), input.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        for (int x = 0; x < input.getWidth(); x++) {
-            for (int y = 0; y < input.getHeight(); y++) {
-                output.setRGB(x, y, uncroppedOutput.getRGB(x + radius, y + radius));
-            }
+    /**
+     * <p>
+     * Check whether another object is a MeanFilter with the same radius.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a MeanFilter with the same radius, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
         }
+        MeanFilter other = (MeanFilter) obj;
+        return radius == other.radius;
+    }
+
+    /**
+     * <p>
+     * Get a hash code for this MeanFilter, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), radius);
+    }
 
-        return output;
+    /**
+     * <p>
+     * Get a fingerprint of this MeanFilter made up of its radius.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "MeanFilter(radius=" + radius + ")";
     }
 
 }
@@ -22,7 +22,7 @@ import java.util.*;
  * @author Stella Srzich (Modified from Steven Mills)
  * @version 1.0
  */
-public class MedianFilter implements ImageOperation, java.io.Serializable {
+public class MedianFilter implements TileOperation, java.io.Serializable {
 
     /**
      * The size of filter to apply. A radius of 1 is a 3x3 filter, a radius of 2 a
@@ -64,136 +64,195 @@ public class MedianFilter implements ImageOperation, java.io.Serializable {
 
     /**
      * <p>
-     * Apply a median filter to an image.
+     * Get how far from an output pixel the median filter reads, which is its radius.
+     * </p>
+     * 
+     * @return The halo needed around each tile.
+     */
+    public int getHalo() {
+        return radius;
+    }
+
+    /**
+     * <p>
+     * Apply a median filter to one tile of an image.
      * </p>
      * 
      * <p>
-     * The median filter is implemented by storing the alpha, red, green, and blue
-     * channel values from the local neighbourhood of a pixel in an array
-     * and then finding the median values, and assigning that argb value
-     * to the pixel in the output image. The size of the local neighbourhood is
-     * specified by the {@link radius}. Larger radii lead to stronger blurring.
-     * Note, this implementation deals with the edges of the image.
+     * Rather than sorting the neighbourhood of every pixel, the median filter keeps a
+     * histogram of the alpha, red, green, and blue values in each column of the
+     * neighbourhood, as described by Perreault and H&eacute;bert. Moving down a row
+     * only changes each column histogram by one pixel in and one out, and moving along
+     * a row only changes the neighbourhood histogram by one column in and one out, so
+     * the cost hardly grows with the {@link radius}. Each histogram is split into 16
+     * coarse bins of 16 fine bins, and the fine bins of the neighbourhood are only
+     * brought up to date when the median falls in them.
+     * Larger radii lead to stronger blurring.
+     * Note, pixels beyond the edge of the image take the value of the nearest edge pixel.
      * </p>
      * 
-     * @param input The image to apply the median filter to.
-     * @return The resulting (blurred) image.
+     * <p>
+     * Alpha values are ordered as signed bytes, so that 128 to 255 come before 0 to 127,
+     * as they always have been for this filter.
+     * </p>
+     * 
+     * @param src The ARGB pixels of the tile and its halo.
+     * @param dst The array to write the ARGB pixels of the resulting (blurred) tile into.
+     * @param width The width of the tile, not including the halo.
+     * @param height The height of the tile, not including the halo.
      */
-    public BufferedImage apply(BufferedImage input) {
-        // Create a new image with the same values as in the original image, but with
-        // the edge pixel values copied to new edge pixel values (the image is bigger by
-        // the radius of the kernel) on each side and the top and bottom.
-        BufferedImage edgesPlusInput = new BufferedImage(input.getWidth() + 2 * radius, input.getHeight() + 2 * radius,
-                BufferedImage.TYPE_INT_ARGB);
-        // Fill the pixel values of this new buffered image.
-        for (int y = 0; y < input.getHeight(); ++y) {
-            for (int x = 0; x < input.getWidth(); ++x) {
-                // Copy over pixel values from the original image to pixels to the right and
-                // lower by 'radius' amount.
-                edgesPlusInput.setRGB(x + radius, y + radius, input.getRGB(x, y));
-                // If we are at an edge, then we copy that value to the values
-                // above/below/right/left.
-                if (y == 0) { // We are at the top of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i, input.getRGB(x, y));
-                    }
-                } else if (y == input.getHeight() - 1) { // We are at the bottom of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i + input.getHeight() + radius, input.getRGB(x, y));
+    public void applyTile(int[] src, int[] dst, int width, int height) {
+        int srcWidth = width + 2 * radius;
+        int size = 2 * radius + 1;
+        int middle = size * size / 2;
+        // The histograms of each channel in each column of the neighbourhood.
+        int[][] columnFine = new int[4][srcWidth * 256];
+        int[][] columnCoarse = new int[4][srcWidth * 16];
+        // The histograms of one channel over the whole neighbourhood.
+        int[] fine = new int[256];
+        int[] coarse = new int[16];
+        // The x coordinate each block of fine bins was last brought up to date for.
+        int[] synced = new int[16];
+
+        for (int j = 0; j < size; j++) {
+            addRow(src, j * srcWidth, srcWidth, columnFine, columnCoarse, 1);
+        }
+        for (int y = 0; y < height; ++y) {
+            if (y > 0) {
+                // Slide the column histograms down a row.
+                addRow(src, (y - 1) * srcWidth, srcWidth, columnFine, columnCoarse, -1);
+                addRow(src, (y + size - 1) * srcWidth, srcWidth, columnFine, columnCoarse, 1);
+            }
+            Arrays.fill(dst, y * width, (y + 1) * width, 0);
+            for (int channel = 0; channel < 4; channel++) {
+                int[] colFine = columnFine[channel];
+                int[] colCoarse = columnCoarse[channel];
+                Arrays.fill(coarse, 0);
+                for (int k = 0; k < size; k++) {
+                    for (int i = 0; i < 16; i++) {
+                        coarse[i] += colCoarse[k * 16 + i];
                     }
                 }
-                if (x == 0) { // We are at the left of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i, y + radius, input.getRGB(x, y));
+                // Every block of fine bins is out of date at the start of a row.
+                Arrays.fill(synced, -size);
+
+                for (int x = 0; x < width; ++x) {
+                    if (x > 0) {
+                        int in = (x + size - 1) * 16;
+                        int out = (x - 1) * 16;
+                        for (int i = 0; i < 16; i++) {
+                            coarse[i] += colCoarse[in + i] - colCoarse[out + i];
+                        }
                     }
-                } else if (x == input.getWidth() - 1) { // We are at the right of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i + input.getWidth() + radius, y + radius, input.getRGB(x, y));
+
+                    // Find the coarse bin holding the median.
+                    int count = 0;
+                    int block = 0;
+                    while (count + coarse[block] <= middle) {
+                        count += coarse[block];
+                        block++;
                     }
-                }
-                // Dealing with corners.
-                if (x == 0 && y == 0) { // Top left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b, input.getRGB(x, y));
+
+                    // Bring its fine bins up to date, from scratch if they are too far behind.
+                    int base = block * 16;
+                    if (x - synced[block] >= size) {
+                        Arrays.fill(fine, base, base + 16, 0);
+                        for (int k = x; k < x + size; k++) {
+                            for (int i = 0; i < 16; i++) {
+                                fine[base + i] += colFine[k * 256 + base + i];
+                            }
                         }
-                    }
-                } else if (x == 0 && y == input.getHeight() - 1) { // Bottom left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b + input.getHeight() + radius, input.getRGB(x, y));
+                    } else {
+                        for (int k = synced[block] + 1; k <= x; k++) {
+                            int in = (k + size - 1) * 256 + base;
+                            int out = (k - 1) * 256 + base;
+                            for (int i = 0; i < 16; i++) {
+                                fine[base + i] += colFine[in + i] - colFine[out + i];
+                            }
                         }
                     }
-                } else if (x == input.getWidth() - 1 && y == 0) { // Top right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b, input.getRGB(x, y));
-                        }
+                    synced[block] = x;
+
+                    // Find the fine bin holding the median.
+                    int value = base;
+                    while (count + fine[value] <= middle) {
+                        count += fine[value];
+                        value++;
                     }
-                } else if (x == input.getWidth() - 1 && y == input.getHeight() - 1) { // Bottom right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b + input.getHeight() + radius,
-                                    input.getRGB(x, y));
-                        }
+                    if (channel == 3) {
+                        value ^= 0x80;
                     }
+                    dst[y * width + x] |= value << (8 * channel);
                 }
             }
         }
+    }
 
-        // Make this buffered image to apply the filter into. Note, it is still uncropped.
-        BufferedImage uncroppedOutput = new BufferedImage(edgesPlusInput.getColorModel(), edgesPlusInput.copyData(null),
-                edgesPlusInput.isAlphaPremultiplied(), null);
-
-        // Loop through each pixel and get the median values for
-        // red, green, blue and alpha channels, then set each corresponding
-        // pixel in our output BufferedImage to the given value.
-        for (int y = radius; y < edgesPlusInput.getHeight() - radius; ++y) {
-            for (int x = radius; x < edgesPlusInput.getWidth() - radius; ++x) {
-
-                // Collect TYPE_INT_ARGB values for
-                // all pixels in the neighbourhood.
-                int[] argb = edgesPlusInput.getRGB(x - radius, y - radius, 2 * radius + 1, 2 * radius + 1, null, 0,
-                        2 * radius + 1);
-                int[] a = new int[argb.length];
-                int[] r = new int[argb.length];
-                int[] g = new int[argb.length];
-                int[] b = new int[argb.length];
-
-                // Split up these values into their channels
-                for (int i = 0; i < argb.length; i++) {
-                    a[i] = (argb[i] & 0xFF000000) >> 24;
-                    r[i] = (argb[i] & 0x00FF0000) >> 16;
-                    g[i] = (argb[i] & 0x0000FF00) >> 8;
-                    b[i] = (argb[i] & 0x000000FF);
+    /**
+     * <p>
+     * Add (or remove) one row of pixels to the column histograms.
+     * </p>
+     * 
+     * @param src The ARGB pixels of the tile and its halo.
+     * @param row The index of the first pixel in the row.
+     * @param srcWidth The width of the row.
+     * @param columnFine The fine histograms of each channel in each column.
+     * @param columnCoarse The coarse histograms of each channel in each column.
+     * @param delta 1 to add the row, -1 to remove it.
+     */
+    private static void addRow(int[] src, int row, int srcWidth, int[][] columnFine, int[][] columnCoarse, int delta) {
+        for (int i = 0; i < srcWidth; i++) {
+            int argb = src[row + i];
+            for (int channel = 0; channel < 4; channel++) {
+                int value = (argb >> (8 * channel)) & 0xFF;
+                if (channel == 3) {
+                    // Alpha is ordered as a signed byte.
+                    value ^= 0x80;
                 }
-
-                // Find the median value of each argb channel
-                Arrays.sort(a);
-                Arrays.sort(r);
-                Arrays.sort(g);
-                Arrays.sort(b);
-
-                int aVal = a[a.length / 2];
-                int rVal = r[r.length / 2];
-                int gVal = g[g.length / 2];
-                int bVal = b[b.length / 2];
-
-                int val = (aVal << 24) | (rVal << 16) | (gVal << 8) | bVal;
-
-                // Finally, set the argb value in to the given pixel in the output image
-                uncroppedOutput.setRGB(x, y, val);
+                columnFine[channel][i * 256 + value] += delta;
+                columnCoarse[channel][i * 16 + (value >> 4)] += delta;
             }
         }
+    }
 
-        // Crop the uncropped output.
-        BufferedImage output = new BufferedImage(input.getWidth(), input.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        for (int x = 0; x < input.getWidth(); x++) {
-            for (int y = 0; y < input.getHeight(); y++) {
-                output.setRGB(x, y, uncroppedOutput.getRGB(x + radius, y + radius));
-            }
+    /**
+     * <p>
+     * Check whether another object is a MedianFilter with the same radius.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a MedianFilter with the same radius, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
         }
+        MedianFilter other = (MedianFilter) obj;
+        return radius == other.radius;
+    }
 
-        return output;
+    /**
+     * <p>
+     * Get a hash code for this MedianFilter, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), radius);
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this MedianFilter made up of its radius.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "MedianFilter(radius=" + radius + ")";
     }
 }
@@ -0,0 +1,394 @@
+package cosc202.andie;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Copies of an image at halving sizes, for drawing it zoomed out.
+ * </p>
+ *
+ * <p>
+ * Level 0 is the image itself, and each level after is half the width and height of the one
+ * before (rounded up), down to a single pixel. Each pixel of a level is the average of the 2x2
+ * block of pixels it covers in the level before, weighted by their alpha so that transparent
+ * pixels do not darken their neighbours. Drawing the image at a scale of 1/8 then only needs to
+ * draw level 3 at its own size, rather than resample the whole image on every repaint.
+ * </p>
+ *
+ * <p>
+ * Levels are only made the first time they are needed. When the image changes, {@link update}
+ * is told which part changed, and only the pixels of each level made from that part are worked out
+ * again, the next time the level is needed. The image must not be changed in place, but replaced
+ * with a changed image, so that the part that changed can be found by comparing them.
+ * </p>
+ *
+ * <p>
+ * A MipPyramid is not safe to use from more than one thread at once. Making levels and finding
+ * the changed part both read the whole image, so {@link ImagePanel} does them in the background
+ * and hands the pyramid back to the event dispatch thread once they are done.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see ImagePanel
+ * @version 1.0
+ */
+public class MipPyramid {
+
+    /** The image, which is level 0. */
+    private BufferedImage image;
+    /** The levels made so far, with null for ones not made yet. Level 0 is never made, as it is the image. */
+    private PixelBuffer[] levels;
+    /** The part of each level to work out again before it is next used, or null if it is up to date. */
+    private Rectangle[] dirty;
+
+    /**
+     * <p>
+     * Create a new MipPyramid for an image.
+     * </p>
+     *
+     * @param image The image.
+     */
+    public MipPyramid(BufferedImage image) {
+        this.image = image;
+        int count = levelCount(image);
+        levels = new PixelBuffer[count];
+        dirty = new Rectangle[count];
+    }
+
+    /**
+     * <p>
+     * Count the levels an image has, halving it down to a single pixel.
+     * </p>
+     *
+     * @param image The image.
+     * @return The number of levels, including the image itself.
+     */
+    private static int levelCount(BufferedImage image) {
+        int count = 1;
+        for (int w = image.getWidth(), h = image.getHeight(); w > 1 || h > 1; count++) {
+            w = (w + 1) / 2;
+            h = (h + 1) / 2;
+        }
+        return count;
+    }
+
+    /**
+     * <p>
+     * Get the image, which is level 0.
+     * </p>
+     *
+     * @return The image.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * <p>
+     * Get the number of levels, including the image itself.
+     * </p>
+     *
+     * @return The number of levels.
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * <p>
+     * Get the level to draw the image from at a scale.
+     * </p>
+     *
+     * <p>
+     * This is the smallest level that is still at least as big as the image drawn at the
+     * scale, so that drawing it never shrinks it by more than half, and never enlarges it.
+     * </p>
+     *
+     * @param scale The scale the image is drawn at, where 1 is actual size.
+     * @return The level.
+     */
+    public int levelFor(double scale) {
+        if (scale >= 1) {
+            return 0;
+        }
+        // A tiny bit is added so that scales of exactly a power of 2 get their own level.
+        int level = (int) Math.floor(Math.log(1 / scale) / Math.log(2) + 1e-9);
+        return Math.min(level, levels.length - 1);
+    }
+
+    /**
+     * <p>
+     * Get a level, making it or bringing it up to date first if needed.
+     * </p>
+     *
+     * @param level The level, from 0 for the image itself.
+     * @return The image at the level.
+     */
+    public BufferedImage getLevel(int level) {
+        for (int i = 1; i <= level; i++) {
+            if (levels[i] == null) {
+                int width = (levelWidth(i - 1) + 1) / 2;
+                int height = (levelHeight(i - 1) + 1) / 2;
+                levels[i] = new PixelBuffer(width, height);
+                reduce(i, new Rectangle(0, 0, width, height));
+            } else if (dirty[i] != null) {
+                reduce(i, dirty[i]);
+            }
+            dirty[i] = null;
+        }
+        return level == 0 ? image : levels[level].getImage();
+    }
+
+    /**
+     * <p>
+     * Check whether a level has been made and is up to date, so that {@link getLevel} hands it
+     * back without working anything out.
+     * </p>
+     *
+     * @param level The level, from 0 for the image itself.
+     * @return True if the level is ready, false otherwise.
+     */
+    public boolean isReady(int level) {
+        for (int i = 1; i <= level; i++) {
+            if (levels[i] == null || dirty[i] != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Replace the image with a changed version of it.
+     * </p>
+     *
+     * <p>
+     * If the changed image is the same size, only the parts of the levels made so far that come
+     * from the changed part are worked out again, and only when they are next needed. Otherwise
+     * every level is made again from scratch.
+     * </p>
+     *
+     * @param changed The changed image.
+     * @param region The part of the image that changed, or null if nothing did.
+     */
+    public void update(BufferedImage changed, Rectangle region) {
+        if (changed.getWidth() != image.getWidth() || changed.getHeight() != image.getHeight()) {
+            this.image = changed;
+            levels = new PixelBuffer[levelCount(changed)];
+            dirty = new Rectangle[levels.length];
+            return;
+        }
+        this.image = changed;
+        if (region == null || region.isEmpty()) {
+            return;
+        }
+        for (int i = 1; i < levels.length; i++) {
+            if (levels[i] == null) {
+                // Levels after one not made yet have not been made either.
+                break;
+            }
+            int x0 = region.x >> i, y0 = region.y >> i;
+            int x1 = (region.x + region.width - 1) >> i, y1 = (region.y + region.height - 1) >> i;
+            Rectangle part = new Rectangle(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+            dirty[i] = dirty[i] == null ? part : dirty[i].union(part);
+        }
+    }
+
+    /**
+     * <p>
+     * Find the part of an image that differs from another of the same size.
+     * </p>
+     *
+     * <p>
+     * Rows are compared from the top and bottom until they differ, and each row in between
+     * from both ends until it differs. This reads each image about once, which is less work
+     * than making the levels again, and saves making most of them when only a small part changed.
+     * </p>
+     *
+     * @param before The image before it changed.
+     * @param after The image after it changed.
+     * @return The smallest rectangle holding every pixel that differs, or null if none do.
+     * @throws IllegalArgumentException If the images are not the same size.
+     */
+    public static Rectangle changedRegion(BufferedImage before, BufferedImage after) {
+        int width = before.getWidth(), height = before.getHeight();
+        if (after.getWidth() != width || after.getHeight() != height) {
+            throw new IllegalArgumentException("Images must be the same size to compare");
+        }
+        int[] a = new int[width], b = new int[width];
+        int top = 0;
+        while (top < height && sameRow(before, after, top, a, b)) {
+            top++;
+        }
+        if (top == height) {
+            return null;
+        }
+        int bottom = height - 1;
+        while (sameRow(before, after, bottom, a, b)) {
+            bottom--;
+        }
+        int left = width, right = -1;
+        for (int y = top; y <= bottom; y++) {
+            readRow(before, y, a);
+            readRow(after, y, b);
+            int x = 0;
+            while (x < left && a[x] == b[x]) {
+                x++;
+            }
+            left = Math.min(left, x);
+            x = width - 1;
+            while (x > right && a[x] == b[x]) {
+                x--;
+            }
+            right = Math.max(right, x);
+        }
+        return new Rectangle(left, top, right - left + 1, bottom - top + 1);
+    }
+
+    /**
+     * <p>
+     * Check whether a row is the same in two images.
+     * </p>
+     *
+     * @param before The first image.
+     * @param after The second image.
+     * @param y The row.
+     * @param a A buffer a row long for the first image.
+     * @param b A buffer a row long for the second image.
+     * @return True if every pixel of the row is the same, false otherwise.
+     */
+    private static boolean sameRow(BufferedImage before, BufferedImage after, int y, int[] a, int[] b) {
+        readRow(before, y, a);
+        readRow(after, y, b);
+        return Arrays.equals(a, b);
+    }
+
+    /**
+     * <p>
+     * Read the ARGB pixels of a row of an image.
+     * </p>
+     *
+     * @param image The image.
+     * @param y The row.
+     * @param row The array to read the pixels into, as long as the row.
+     */
+    private static void readRow(BufferedImage image, int y, int[] row) {
+        if (PixelBuffer.isDirect(image)) {
+            PixelBuffer.of(image).readRegion(0, y, row.length, 1, row);
+        } else {
+            image.getRGB(0, y, row.length, 1, row, 0, row.length);
+        }
+    }
+
+    /**
+     * <p>
+     * Work out part of a level from the level before it.
+     * </p>
+     *
+     * @param level The level, from 1.
+     * @param part The part of the level to work out.
+     */
+    private void reduce(int level, Rectangle part) {
+        PixelBuffer dst = levels[level];
+        int srcWidth = levelWidth(level - 1), srcHeight = levelHeight(level - 1);
+        int x0 = Math.max(part.x, 0), x1 = Math.min(part.x + part.width, dst.getWidth());
+        int y0 = Math.max(part.y, 0), y1 = Math.min(part.y + part.height, dst.getHeight());
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        // The columns of the level before that the part covers.
+        int srcX = 2 * x0;
+        int srcSpan = Math.min(2 * x1, srcWidth) - srcX;
+        int[] rows = new int[2 * srcSpan];
+        int[] data = dst.getData();
+        for (int y = y0; y < y1; y++) {
+            // An odd row or column at the edge is averaged with itself.
+            int srcY = 2 * y;
+            int rowsRead = srcY + 1 < srcHeight ? 2 : 1;
+            readLevel(level - 1, srcX, srcY, srcSpan, rowsRead, rows);
+            int second = rowsRead == 2 ? srcSpan : 0;
+            int out = dst.index(x0, y);
+            for (int x = x0; x < x1; x++) {
+                int i = 2 * (x - x0);
+                int j = i + 1 < srcSpan ? i + 1 : i;
+                data[out++] = average(rows[i], rows[j], rows[second + i], rows[second + j]);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Read a block of pixels from a level.
+     * </p>
+     *
+     * @param level The level.
+     * @param x The left of the block.
+     * @param y The top of the block.
+     * @param width The width of the block.
+     * @param height The height of the block.
+     * @param buffer The array to read the pixels into, <code>width</code> to a row.
+     */
+    private void readLevel(int level, int x, int y, int width, int height, int[] buffer) {
+        if (level > 0) {
+            levels[level].readRegion(x, y, width, height, buffer);
+        } else if (PixelBuffer.isDirect(image)) {
+            PixelBuffer.of(image).readRegion(x, y, width, height, buffer);
+        } else {
+            image.getRGB(x, y, width, height, buffer, 0, width);
+        }
+    }
+
+    /**
+     * <p>
+     * Average four ARGB pixels, weighting their colours by their alpha.
+     * </p>
+     *
+     * @param p0 The first pixel.
+     * @param p1 The second pixel.
+     * @param p2 The third pixel.
+     * @param p3 The fourth pixel.
+     * @return The average pixel.
+     */
+    private static int average(int p0, int p1, int p2, int p3) {
+        int a0 = p0 >>> 24, a1 = p1 >>> 24, a2 = p2 >>> 24, a3 = p3 >>> 24;
+        int alpha = a0 + a1 + a2 + a3;
+        if (alpha == 0) {
+            return 0;
+        }
+        int r = ((p0 >> 16 & 0xff) * a0 + (p1 >> 16 & 0xff) * a1 + (p2 >> 16 & 0xff) * a2 + (p3 >> 16 & 0xff) * a3
+                + alpha / 2) / alpha;
+        int g = ((p0 >> 8 & 0xff) * a0 + (p1 >> 8 & 0xff) * a1 + (p2 >> 8 & 0xff) * a2 + (p3 >> 8 & 0xff) * a3
+                + alpha / 2) / alpha;
+        int b = ((p0 & 0xff) * a0 + (p1 & 0xff) * a1 + (p2 & 0xff) * a2 + (p3 & 0xff) * a3 + alpha / 2) / alpha;
+        return (alpha + 2) / 4 << 24 | r << 16 | g << 8 | b;
+    }
+
+    /**
+     * <p>
+     * Get the width of a level.
+     * </p>
+     *
+     * @param level The level.
+     * @return The width.
+     */
+    private int levelWidth(int level) {
+        return level == 0 ? image.getWidth() : levels[level].getWidth();
+    }
+
+    /**
+     * <p>
+     * Get the height of a level.
+     * </p>
+     *
+     * @param level The level.
+     * @return The height.
+     */
+    private int levelHeight(int level) {
+        return level == 0 ? image.getHeight() : levels[level].getHeight();
+    }
+}
@@ -0,0 +1,277 @@
+package cosc202.andie;
+
+import java.util.concurrent.*;
+import java.util.function.DoubleConsumer;
+
+/**
+ * <p>
+ * The context an {@link ImageOperation} is applied in, which lets it be cancelled, report how far
+ * through it is, and know which pool to work on.
+ * </p>
+ *
+ * <p>
+ * Operations given a context check {@link checkCancelled} as they go, at the granularity of a tile
+ * or a band of rows, and give up with a {@link CancellationException} once the context has been
+ * {@link cancel}led or its timeout has passed. Cancelling is cooperative, so an operation finishes
+ * the tile it is on first. Progress is reported as the fraction of the operation done, from 0 to 1.
+ * </p>
+ *
+ * <p>
+ * A context can also be {@link pause}d, such as by a {@link JobScheduler} making way for more
+ * urgent work. Operations then wait at their next check until it is {@link resume}d, keeping the
+ * work they have done so far, and the threads of the pool they wait on are made up for by the pool.
+ * </p>
+ *
+ * <p>
+ * An operation made up of several steps, such as a {@link Macro}, gives each step a
+ * {@link slice} of its own context, which is cancelled along with it and reports progress
+ * within that step's share of the whole.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see ImageOperation#apply(java.awt.image.BufferedImage, OperationContext)
+ * @version 1.0
+ */
+public class OperationContext {
+
+    /** The context this is a slice of, or null if it is not a slice. */
+    private OperationContext parent;
+    /** The pool to do work in parallel on, or null for the pool shared by every {@link TiledImage}. */
+    private ForkJoinPool pool;
+    /** Whether the context has been cancelled. */
+    private volatile boolean cancelled;
+    /** Whether the context has been paused. */
+    private volatile boolean paused;
+    /** The {@link System#nanoTime} after which the context counts as cancelled, if it has a timeout. */
+    private volatile long deadline;
+    /** Whether the context has a timeout. */
+    private volatile boolean timed;
+    /** Where progress is reported to, or null if nobody is listening. */
+    private volatile DoubleConsumer progressListener;
+    /** The part of the parent's progress this slice covers. */
+    private double progressFrom = 0, progressTo = 1;
+
+    /**
+     * <p>
+     * Create a new context that works on the pool shared by every {@link TiledImage}.
+     * </p>
+     */
+    public OperationContext() {
+        this(null);
+    }
+
+    /**
+     * <p>
+     * Create a new context that works on the given pool.
+     * </p>
+     *
+     * <p>
+     * The pool is a hint at how much parallelism to use, so a pool of one thread keeps an
+     * operation to a single thread, such as for batch jobs running several images at once.
+     * </p>
+     *
+     * @param pool The pool to work on, or null for the pool shared by every {@link TiledImage}.
+     */
+    public OperationContext(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * <p>
+     * Make a context for one step of a larger operation.
+     * </p>
+     *
+     * <p>
+     * The slice is cancelled whenever this context is, and works on the same pool. Progress
+     * reported to the slice, from 0 to 1, is reported to this context as going from
+     * <code>from</code> to <code>to</code>.
+     * </p>
+     *
+     * @param from The progress of this context when the step starts.
+     * @param to The progress of this context when the step is done.
+     * @return The context for the step.
+     */
+    public OperationContext slice(double from, double to) {
+        OperationContext slice = new OperationContext(pool);
+        slice.parent = this;
+        slice.progressFrom = from;
+        slice.progressTo = to;
+        return slice;
+    }
+
+    /**
+     * <p>
+     * Cancel the context, so that operations applied in it give up at their next check.
+     * </p>
+     */
+    public void cancel() {
+        synchronized (this) {
+            cancelled = true;
+            // Paused operations give up straight away.
+            notifyAll();
+        }
+    }
+
+    /**
+     * <p>
+     * Pause the context, so that operations applied in it wait at their next check until it is
+     * resumed or cancelled.
+     * </p>
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * <p>
+     * Resume the context after it has been paused, so that operations waiting in it carry on.
+     * </p>
+     */
+    public void resume() {
+        synchronized (this) {
+            paused = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * <p>
+     * Check whether the context has been paused.
+     * </p>
+     *
+     * @return True if the context has been paused and not resumed since, false otherwise.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * <p>
+     * Cancel the context once a length of time has passed from now.
+     * </p>
+     *
+     * @param timeout The length of time.
+     * @param unit The unit the time is in.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        deadline = System.nanoTime() + unit.toNanos(timeout);
+        timed = true;
+    }
+
+    /**
+     * <p>
+     * Check whether the context has been cancelled, or has run out of time.
+     * </p>
+     *
+     * @return True if operations applied in this context should give up, false otherwise.
+     */
+    public boolean isCancelled() {
+        if (cancelled || (timed && System.nanoTime() - deadline > 0)) {
+            return true;
+        }
+        return parent != null && parent.isCancelled();
+    }
+
+    /**
+     * <p>
+     * Give up if the context has been cancelled, or has run out of time, first waiting for
+     * it to be resumed if it has been paused.
+     * </p>
+     *
+     * @throws CancellationException If the context has been cancelled.
+     */
+    public void checkCancelled() {
+        awaitResume();
+        if (isCancelled()) {
+            throw new CancellationException("Image operation cancelled");
+        }
+    }
+
+    /**
+     * <p>
+     * Wait while this context, or the one it is a slice of, is paused and not cancelled.
+     * </p>
+     *
+     * <p>
+     * The wait is managed by the {@link ForkJoinPool} of the calling thread, if it has one, so
+     * that the pool starts another thread in its place for the work that is not paused.
+     * </p>
+     *
+     * @throws CancellationException If the thread is interrupted while waiting.
+     */
+    private void awaitResume() {
+        if (parent != null) {
+            parent.awaitResume();
+        }
+        if (!paused) {
+            return;
+        }
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                public boolean block() throws InterruptedException {
+                    synchronized (OperationContext.this) {
+                        while (paused && !cancelled) {
+                            OperationContext.this.wait();
+                        }
+                    }
+                    return true;
+                }
+
+                public boolean isReleasable() {
+                    return !paused || cancelled;
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Image operation interrupted");
+        }
+    }
+
+    /**
+     * <p>
+     * Set where progress is reported to.
+     * </p>
+     *
+     * <p>
+     * Operations working in parallel report progress from the threads of the pool, so the
+     * listener must be safe to call from any thread, and should be quick.
+     * </p>
+     *
+     * @param listener The listener, given the fraction done from 0 to 1, or null to stop listening.
+     */
+    public void setProgressListener(DoubleConsumer listener) {
+        progressListener = listener;
+    }
+
+    /**
+     * <p>
+     * Report how far through the operation is.
+     * </p>
+     *
+     * @param fraction The fraction of the operation done, from 0 to 1.
+     */
+    public void progress(double fraction) {
+        fraction = Math.min(Math.max(fraction, 0), 1);
+        DoubleConsumer listener = progressListener;
+        if (listener != null) {
+            listener.accept(fraction);
+        }
+        if (parent != null) {
+            parent.progress(progressFrom + (progressTo - progressFrom) * fraction);
+        }
+    }
+
+    /**
+     * <p>
+     * Get the pool operations applied in this context should work on.
+     * </p>
+     *
+     * @return The pool.
+     */
+    public ForkJoinPool getPool() {
+        return pool == null ? TiledImage.getPool() : pool;
+    }
+}
@@ -0,0 +1,198 @@
+package cosc202.andie;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * A cheaper way of applying a list of operations that gives the same image.
+ * </p>
+ *
+ * <p>
+ * The list itself, which is what the user sees as the history, is left as it is. The plan is
+ * a separate list of steps, made by rewriting the operations as follows.
+ * </p>
+ *
+ * <ul>
+ * <li>A run of rotations and flips is just one of eight orientations of the image, so it is
+ * replaced by at most two operations giving that orientation. Pairs that undo each other, such
+ * as {@link RotateLeft} and {@link RotateRight}, two {@link FlipHorizontal}s, or four
+ * {@link RotateRight}s, disappear altogether.</li>
+ * <li>{@link PointOperation}s change each pixel on its own, so they can be moved past
+ * rotations and flips. The ones in a run of rotations, flips and point operations are all
+ * composed into a single {@link PointTransform}.</li>
+ * </ul>
+ *
+ * <p>
+ * Both rewrites only move pixels around or do the same thing to them in a different order, so
+ * the result is exactly the same. Resizes and crops are left where they are, as resampling or
+ * flattening the pixels in a different order would change them.
+ * </p>
+ *
+ * <p>
+ * Some steps leave an image that is not the image after any number of the original operations,
+ * as operations have been moved or merged. Each step records the number of operations its
+ * result matches, if any, so that checkpoints are only taken where they are correct.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @version 1.0
+ */
+public class OperationPlan {
+
+    /** The operation of each step, which may be null for a step that does nothing. */
+    private List<ImageOperation> steps = new ArrayList<ImageOperation>();
+    /** The number of original operations the image after each step matches, or -1 if none. */
+    private List<Integer> depths = new ArrayList<Integer>();
+
+    /** The geometric operations waiting to be done. */
+    private List<GeometricOperation> geometry = new ArrayList<GeometricOperation>();
+    /** The point operations waiting to be done after the geometric ones. */
+    private List<ImageOperation> points = new ArrayList<ImageOperation>();
+    /** The number of original operations waiting to be done. */
+    private int pending;
+    /** Whether the steps so far give exactly the image the original operations would. */
+    private boolean exact = true;
+
+    /**
+     * <p>
+     * Make a plan for applying the operations from the given index on, giving exactly the same
+     * image as applying them one at a time.
+     * </p>
+     *
+     * @param ops The operations.
+     * @param from The number of operations already applied, where the plan starts.
+     */
+    public OperationPlan(List<? extends ImageOperation> ops, int from) {
+        this(ops, from, false);
+    }
+
+    /**
+     * <p>
+     * Make a plan for applying the operations from the given index on.
+     * </p>
+     *
+     * <p>
+     * If the plan may resample, runs of resizes are done as one resample straight to the final
+     * size. This is quicker and blurs the image less, but the pixels are not quite the same, so
+     * none of the steps after the first resize match a depth.
+     * </p>
+     *
+     * @param ops The operations.
+     * @param from The number of operations already applied, where the plan starts.
+     * @param resample Whether resizes may be combined with other geometric operations.
+     */
+    public OperationPlan(List<? extends ImageOperation> ops, int from, boolean resample) {
+        for (int i = from; i < ops.size(); i++) {
+            ImageOperation op = ops.get(i);
+            if (op instanceof PointOperation) {
+                points.add(op);
+            } else if (op instanceof GeometricOperation && (resample || !((GeometricOperation) op).resamples())) {
+                GeometricOperation geometric = (GeometricOperation) op;
+                if (!geometric.isRigid() && !points.isEmpty()) {
+                    // Point operations can't be moved past a crop or resize, so do them first.
+                    flush(i);
+                }
+                if (geometric.resamples()) {
+                    exact = false;
+                }
+                geometry.add(geometric);
+            } else {
+                flush(i);
+                add(op, i + 1);
+                continue;
+            }
+            pending++;
+        }
+        flush(ops.size());
+    }
+
+    /**
+     * <p>
+     * Get the number of steps in the plan.
+     * </p>
+     *
+     * @return The number of steps.
+     */
+    public int size() {
+        return steps.size();
+    }
+
+    /**
+     * <p>
+     * Get the operation to apply at a step.
+     * </p>
+     *
+     * @param step The index of the step.
+     * @return The operation, or null if the step does nothing but mark a depth.
+     */
+    public ImageOperation getOperation(int step) {
+        return steps.get(step);
+    }
+
+    /**
+     * <p>
+     * Get the number of original operations the image after a step matches.
+     * </p>
+     *
+     * @param step The index of the step.
+     * @return The number of operations, or -1 if the image is not the image after any number of them.
+     */
+    public int getDepth(int step) {
+        return depths.get(step);
+    }
+
+    /**
+     * <p>
+     * Add a step to the plan.
+     * </p>
+     *
+     * @param op The operation of the step.
+     * @param depth The number of original operations the image after it matches, or -1 if none.
+     */
+    private void add(ImageOperation op, int depth) {
+        steps.add(op);
+        depths.add(exact ? depth : -1);
+    }
+
+    /**
+     * <p>
+     * Add steps for the pending geometric and point operations, and mark the depth they reach.
+     * </p>
+     *
+     * @param depth The number of original operations done once the pending ones are.
+     */
+    private void flush(int depth) {
+        if (pending == 0) {
+            return;
+        }
+        int start = steps.size();
+        if (geometry.size() == 1) {
+            // A single operation may have a faster way of applying itself than a transform.
+            add(geometry.get(0), -1);
+        } else if (geometry.size() > 1) {
+            GeometricTransform transform = new GeometricTransform(geometry);
+            if (!transform.isIdentity()) {
+                add(transform, -1);
+            }
+        }
+        if (points.size() == 1) {
+            // A single operation may have a faster way of applying itself than a transform.
+            add(points.get(0), -1);
+        } else if (points.size() > 1) {
+            add(PointTransform.compose(points, 0, points.size()), -1);
+        }
+        if (steps.size() == start) {
+            // Everything cancelled out, so just mark that the image is already at this depth.
+            add(null, depth);
+        } else {
+            depths.set(steps.size() - 1, exact ? depth : -1);
+        }
+        geometry.clear();
+        points.clear();
+        pending = 0;
+    }
+}
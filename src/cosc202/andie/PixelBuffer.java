@@ -0,0 +1,428 @@
+package cosc202.andie;
+
+import java.awt.image.*;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Direct access to the ARGB pixels of an image as an <code>int[]</code>.
+ * </p>
+ *
+ * <p>
+ * {@link BufferedImage#getRGB(int, int)} and {@link BufferedImage#setRGB(int, int, int)} go through
+ * the image's {@link ColorModel} for every pixel, which is slow. A PixelBuffer instead hands out the
+ * array behind a {@link BufferedImage#TYPE_INT_ARGB} image, so pixels can be read and written with
+ * plain array indexing. The pixel at (x, y) is at <code>getData()[getOffset() + y * getStride() + x]</code>.
+ * </p>
+ *
+ * <p>
+ * Images of any other type are converted to {@link BufferedImage#TYPE_INT_ARGB} once, when the
+ * PixelBuffer is made, and the PixelBuffer then refers to the converted copy.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @version 1.0
+ */
+public class PixelBuffer {
+
+    /** The TYPE_INT_ARGB image the pixels belong to. */
+    private BufferedImage image;
+    /** The array holding the pixels. */
+    private int[] data;
+    /** The index in the array of the top left pixel. */
+    private int offset;
+    /** The distance in the array from one row to the next. */
+    private int stride;
+    /** The width of the image. */
+    private int width;
+    /** The height of the image. */
+    private int height;
+
+    /**
+     * <p>
+     * Create a new PixelBuffer over a new, transparent black, image.
+     * </p>
+     *
+     * @param width The width of the image.
+     * @param height The height of the image.
+     */
+    public PixelBuffer(int width, int height) {
+        this(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    /**
+     * <p>
+     * Create a new PixelBuffer over the pixels of a TYPE_INT_ARGB image.
+     * </p>
+     *
+     * @param image The image, which must be able to be used directly.
+     * @see isDirect(BufferedImage)
+     */
+    private PixelBuffer(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+        this.image = image;
+        this.data = db.getData();
+        this.offset = db.getOffset() + sm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+        this.stride = sm.getScanlineStride();
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+    }
+
+    /**
+     * <p>
+     * Get a PixelBuffer over the pixels of an image.
+     * </p>
+     *
+     * <p>
+     * If the image is a {@link BufferedImage#TYPE_INT_ARGB} image, the PixelBuffer uses its pixels
+     * directly, so changes to one change the other. Otherwise the image is converted to a new
+     * TYPE_INT_ARGB image, and the PixelBuffer uses that.
+     * </p>
+     *
+     * @param image The image to get the pixels of.
+     * @return A PixelBuffer over the pixels of the image, or of a TYPE_INT_ARGB copy of it.
+     */
+    public static PixelBuffer of(BufferedImage image) {
+        if (isDirect(image)) {
+            return new PixelBuffer(image);
+        }
+        PixelBuffer converted = new PixelBuffer(image.getWidth(), image.getHeight());
+        for (int y = 0; y < converted.height; y++) {
+            image.getRGB(0, y, converted.width, 1, converted.data, converted.index(0, y), converted.stride);
+        }
+        return converted;
+    }
+
+    /**
+     * <p>
+     * Wrap an array of ARGB pixels, <code>width</code> to a row, as a PixelBuffer.
+     * </p>
+     *
+     * @param data The array of pixels, which is used directly rather than copied.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return A PixelBuffer over the array.
+     */
+    public static PixelBuffer wrap(int[] data, int width, int height) {
+        DirectColorModel cm = (DirectColorModel) ColorModel.getRGBdefault();
+        WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(data, width * height),
+                width, height, width, cm.getMasks(), null);
+        return new PixelBuffer(new BufferedImage(cm, raster, false, null));
+    }
+
+    /**
+     * <p>
+     * Check whether an image is a TYPE_INT_ARGB image whose pixels can be used directly.
+     * </p>
+     *
+     * @param image The image to check.
+     * @return True if a PixelBuffer made from the image will share its pixels, false if it will copy them.
+     */
+    public static boolean isDirect(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        return image.getType() == BufferedImage.TYPE_INT_ARGB
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getDataBuffer().getNumBanks() == 1;
+    }
+
+    /**
+     * <p>
+     * Get the TYPE_INT_ARGB image these pixels belong to.
+     * </p>
+     *
+     * @return The image.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * <p>
+     * Get the array holding the pixels.
+     * </p>
+     *
+     * @return The array of ARGB pixels.
+     */
+    public int[] getData() {
+        return data;
+    }
+
+    /**
+     * <p>
+     * Get the index in the array of the top left pixel.
+     * </p>
+     *
+     * @return The offset of the first pixel.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * <p>
+     * Get the distance in the array from one row to the next.
+     * </p>
+     *
+     * @return The row stride.
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * <p>
+     * Get the width of the image.
+     * </p>
+     *
+     * @return The width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * <p>
+     * Get the height of the image.
+     * </p>
+     *
+     * @return The height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * <p>
+     * Get the index in the array of a pixel.
+     * </p>
+     *
+     * @param x The x coordinate of the pixel.
+     * @param y The y coordinate of the pixel.
+     * @return The index of the pixel.
+     */
+    public int index(int x, int y) {
+        return offset + y * stride + x;
+    }
+
+    /**
+     * <p>
+     * Get a pixel.
+     * </p>
+     *
+     * @param x The x coordinate of the pixel.
+     * @param y The y coordinate of the pixel.
+     * @return The ARGB value of the pixel.
+     */
+    public int get(int x, int y) {
+        return data[offset + y * stride + x];
+    }
+
+    /**
+     * <p>
+     * Set a pixel.
+     * </p>
+     *
+     * @param x The x coordinate of the pixel.
+     * @param y The y coordinate of the pixel.
+     * @param argb The new ARGB value of the pixel.
+     */
+    public void set(int x, int y, int argb) {
+        data[offset + y * stride + x] = argb;
+    }
+
+    /**
+     * <p>
+     * Read the pixels of a region, row by row.
+     * </p>
+     *
+     * <p>
+     * The region may hang over the edges of the image, in which case the missing pixels are
+     * copied from the nearest edge pixel.
+     * </p>
+     *
+     * @param x The left of the region.
+     * @param y The top of the region.
+     * @param regionWidth The width of the region.
+     * @param regionHeight The height of the region.
+     * @param buffer An array to read into, or null (or too short) to allocate a new one.
+     * @return The array holding the pixels of the region.
+     */
+    public int[] readRegion(int x, int y, int regionWidth, int regionHeight, int[] buffer) {
+        if (buffer == null || buffer.length < regionWidth * regionHeight) {
+            buffer = new int[regionWidth * regionHeight];
+        }
+        // The part of each row that is actually inside the image.
+        int left = Math.min(Math.max(x, 0), width - 1);
+        int right = Math.max(Math.min(x + regionWidth, width), left + 1);
+        for (int j = 0; j < regionHeight; j++) {
+            int row = j * regionWidth;
+            int sourceRow = offset + Math.min(Math.max(y + j, 0), height - 1) * stride;
+            if (x + regionWidth <= 0 || x >= width) {
+                // The row misses the image altogether, so it is all the one edge pixel.
+                Arrays.fill(buffer, row, row + regionWidth, data[sourceRow + left]);
+                continue;
+            }
+            System.arraycopy(data, sourceRow + left, buffer, row + left - x, right - left);
+            // Copy the edge pixels out over the left and right of the image.
+            Arrays.fill(buffer, row, row + Math.min(left - x, regionWidth), data[sourceRow + left]);
+            Arrays.fill(buffer, row + Math.max(right - x, 0), row + regionWidth, data[sourceRow + right - 1]);
+        }
+        return buffer;
+    }
+
+    /**
+     * <p>
+     * Read the pixels of a region, row by row, making up any pixels beyond the edges of
+     * the image with the given {@link BorderMode}.
+     * </p>
+     *
+     * @param x The left of the region.
+     * @param y The top of the region.
+     * @param regionWidth The width of the region.
+     * @param regionHeight The height of the region.
+     * @param buffer An array to read into, or null (or too short) to allocate a new one.
+     * @param border How to make up pixels beyond the edges of the image.
+     * @param constant The ARGB value of pixels beyond the edges, if the border mode is {@link BorderMode#CONSTANT}.
+     * @return The array holding the pixels of the region.
+     */
+    public int[] readRegion(int x, int y, int regionWidth, int regionHeight, int[] buffer, BorderMode border,
+            int constant) {
+        if (border == BorderMode.CLAMP) {
+            return readRegion(x, y, regionWidth, regionHeight, buffer);
+        }
+        if (buffer == null || buffer.length < regionWidth * regionHeight) {
+            buffer = new int[regionWidth * regionHeight];
+        }
+        // The part of each row that is actually inside the image, if any.
+        int left = Math.max(x, 0);
+        int right = Math.min(x + regionWidth, width);
+        for (int j = 0; j < regionHeight; j++) {
+            int row = j * regionWidth;
+            int sy = border.resolve(y + j, height);
+            if (sy < 0) {
+                Arrays.fill(buffer, row, row + regionWidth, constant);
+                continue;
+            }
+            int sourceRow = offset + sy * stride;
+            if (left < right) {
+                System.arraycopy(data, sourceRow + left, buffer, row + left - x, right - left);
+            }
+            // Work out the pixels to the left and right of the image one at a time.
+            for (int i = 0; i < regionWidth; i++) {
+                if (x + i == left && left < right) {
+                    i = right - x - 1;
+                    continue;
+                }
+                int sx = border.resolve(x + i, width);
+                buffer[row + i] = sx < 0 ? constant : data[sourceRow + sx];
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * <p>
+     * Write the pixels of a region, row by row.
+     * </p>
+     *
+     * @param x The left of the region.
+     * @param y The top of the region.
+     * @param regionWidth The width of the region.
+     * @param regionHeight The height of the region.
+     * @param pixels The pixels to write, <code>regionWidth</code> to a row.
+     */
+    public void writeRegion(int x, int y, int regionWidth, int regionHeight, int[] pixels) {
+        for (int j = 0; j < regionHeight; j++) {
+            System.arraycopy(pixels, j * regionWidth, data, index(x, y + j), regionWidth);
+        }
+    }
+
+    /**
+     * <p>
+     * Replace the red, green and blue values of every pixel using a lookup table, leaving alpha as it is.
+     * </p>
+     *
+     * @param table The new value for each of the 256 old values.
+     */
+    public void applyTable(int[] table) {
+        for (int y = 0; y < height; y++) {
+            int row = index(0, y);
+            lookup(table, data, row, data, row, width);
+        }
+    }
+
+    /**
+     * <p>
+     * Scale and offset the red, green and blue values of every pixel, clamping them to be between
+     * 0 and 255 and leaving alpha as it is.
+     * </p>
+     *
+     * <p>
+     * This gives the same pixels as applying {@link rescaleTable}, but uses the
+     * vector loops where they are available.
+     * </p>
+     *
+     * @param scale The factor to multiply each value by.
+     * @param offset The amount to add to each value after scaling.
+     */
+    public void rescale(float scale, float offset) {
+        int[] table = rescaleTable(scale, offset);
+        VectorSupport.RowKernel vector = VectorSupport.kernel("rescale", scale, offset);
+        for (int y = 0; y < height; y++) {
+            int row = index(0, y);
+            VectorSupport.applyRow(
+                    (src, srcFrom, srcStride, dst, dstFrom, length) -> lookup(table, src, srcFrom, dst, dstFrom, length),
+                    vector, data, row, stride, data, row, width);
+        }
+    }
+
+    /**
+     * <p>
+     * Replace the red, green and blue values of a run of pixels using a lookup table, leaving alpha as it is.
+     * </p>
+     *
+     * @param table The new value for each of the 256 old values.
+     * @param src The array to read pixels from.
+     * @param srcFrom The index of the first pixel to read.
+     * @param dst The array to write pixels to, which may be <code>src</code>.
+     * @param dstFrom The index of the first pixel to write.
+     * @param length The number of pixels in the run.
+     * @return The number of pixels done, which is all of them.
+     */
+    private static int lookup(int[] table, int[] src, int srcFrom, int[] dst, int dstFrom, int length) {
+        for (int i = 0; i < length; i++) {
+            int argb = src[srcFrom + i];
+            dst[dstFrom + i] = (argb & 0xff000000) | (table[(argb >> 16) & 0xff] << 16)
+                    | (table[(argb >> 8) & 0xff] << 8) | table[argb & 0xff];
+        }
+        return length;
+    }
+
+    /**
+     * <p>
+     * Make a lookup table that scales and offsets values, clamping them to be between 0 and 255.
+     * </p>
+     *
+     * <p>
+     * This gives exactly the same values as a {@link RescaleOp} with a single scale factor and offset,
+     * which works out <code>(int) (value * scale + offset)</code> for each value.
+     * </p>
+     *
+     * @param scale The factor to multiply each value by.
+     * @param offset The amount to add to each value after scaling.
+     * @return The lookup table, for use with {@link applyTable}.
+     */
+    public static int[] rescaleTable(float scale, float offset) {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = Math.min(Math.max((int) (i * scale + offset), 0), 255);
+        }
+        return table;
+    }
+}
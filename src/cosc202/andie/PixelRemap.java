@@ -0,0 +1,403 @@
+package cosc202.andie;
+
+import java.awt.image.*;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Rotations and flips done by moving pixels around in the arrays behind an image.
+ * </p>
+ *
+ * <p>
+ * Drawing an image through a rotated or flipped {@link java.awt.Graphics2D} goes through the whole
+ * Java2D pipeline, rounds partly transparent pixels, and needs a new image of the same type,
+ * which can't be made for images of {@link BufferedImage#TYPE_CUSTOM}. Instead, these methods
+ * copy the data elements of each pixel as they are, so the result has exactly the same pixels,
+ * colour model and layout as the input, whatever its type.
+ * </p>
+ *
+ * <p>
+ * Flips and half turns keep the size of the image, so are done in place by swapping and
+ * reversing rows. Quarter turns need a new image, which is filled a square block at a time so
+ * that the rows being read and the columns being written both stay in the cache.
+ * </p>
+ *
+ * <p>
+ * Images whose pixels are each a run of elements in a single array, which is every image ImageIO
+ * reads apart from those with less than a byte per pixel, have their arrays used directly. Any
+ * others are done a pixel at a time through their {@link WritableRaster}.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see RotateLeft
+ * @see FlipHorizontal
+ * @version 1.0
+ */
+public class PixelRemap {
+
+    /** The width and height, in pixels, of the blocks a quarter turn copies at a time. */
+    private static final int BLOCK = 64;
+
+    /**
+     * <p>
+     * Where the pixels of a raster are in the array behind it.
+     * </p>
+     *
+     * <p>
+     * The first data element of the pixel at (x, y) is at <code>offset + y * stride + x * pixelSize</code>.
+     * </p>
+     */
+    private static class Layout {
+        /** The array holding the data elements. */
+        Object data;
+        /** The index in the array of the top left pixel. */
+        int offset;
+        /** The distance in the array from one row to the next. */
+        int stride;
+        /** The number of data elements in each pixel. */
+        int pixelSize;
+        /** Which element of a pixel each band is in, or null if the bands are packed into one element. */
+        int[] bandOffsets;
+
+        /**
+         * <p>
+         * Work out where the pixels of a raster are.
+         * </p>
+         *
+         * @param raster The raster.
+         * @return The layout, or null if the pixels are not each a run of elements in a single array.
+         */
+        static Layout of(WritableRaster raster) {
+            DataBuffer buffer = raster.getDataBuffer();
+            SampleModel sm = raster.getSampleModel();
+            Layout layout = new Layout();
+            if (buffer.getNumBanks() != 1) {
+                return null;
+            }
+            if (sm instanceof SinglePixelPackedSampleModel) {
+                layout.stride = ((SinglePixelPackedSampleModel) sm).getScanlineStride();
+                layout.pixelSize = 1;
+                layout.offset = ((SinglePixelPackedSampleModel) sm).getOffset(-raster.getSampleModelTranslateX(),
+                        -raster.getSampleModelTranslateY());
+            } else if (sm instanceof ComponentSampleModel) {
+                ComponentSampleModel csm = (ComponentSampleModel) sm;
+                layout.stride = csm.getScanlineStride();
+                layout.pixelSize = csm.getPixelStride();
+                // The offset of a pixel includes the offset of its first band, which is not wanted here.
+                layout.offset = csm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY())
+                        - csm.getBandOffsets()[0];
+                layout.bandOffsets = csm.getBandOffsets();
+                for (int band = 0; band < csm.getNumBands(); band++) {
+                    int bandOffset = csm.getBandOffsets()[band];
+                    if (csm.getBankIndices()[band] != 0 || bandOffset < 0 || bandOffset >= layout.pixelSize) {
+                        return null;
+                    }
+                }
+            } else {
+                return null;
+            }
+            if (buffer instanceof DataBufferInt) {
+                layout.data = ((DataBufferInt) buffer).getData();
+            } else if (buffer instanceof DataBufferByte) {
+                layout.data = ((DataBufferByte) buffer).getData();
+            } else if (buffer instanceof DataBufferUShort) {
+                layout.data = ((DataBufferUShort) buffer).getData();
+            } else if (buffer instanceof DataBufferShort) {
+                layout.data = ((DataBufferShort) buffer).getData();
+            } else {
+                return null;
+            }
+            layout.offset += buffer.getOffset();
+            return layout;
+        }
+
+        /**
+         * <p>
+         * Get the index in the array of the first data element of a pixel.
+         * </p>
+         *
+         * @param x The x coordinate of the pixel.
+         * @param y The y coordinate of the pixel.
+         * @return The index.
+         */
+        int index(int x, int y) {
+            return offset + y * stride + x * pixelSize;
+        }
+
+        /**
+         * <p>
+         * Check whether the elements of each pixel mean the same in another layout.
+         * </p>
+         *
+         * @param other The other layout.
+         * @return True if pixels can be copied from one layout to the other element by element.
+         */
+        boolean matches(Layout other) {
+            return other.data.getClass() == data.getClass() && other.pixelSize == pixelSize
+                    && Arrays.equals(other.bandOffsets, bandOffsets);
+        }
+    }
+
+    /**
+     * <p>
+     * Flip an image horizontally, in place.
+     * </p>
+     *
+     * @param image The image to flip.
+     * @return The same image, now flipped.
+     */
+    public static BufferedImage flipHorizontal(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        Layout layout = Layout.of(raster);
+        for (int y = 0; y < raster.getHeight(); y++) {
+            reverseRow(raster, layout, y);
+        }
+        return image;
+    }
+
+    /**
+     * <p>
+     * Flip an image vertically, in place.
+     * </p>
+     *
+     * @param image The image to flip.
+     * @return The same image, now flipped.
+     */
+    public static BufferedImage flipVertical(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        Layout layout = Layout.of(raster);
+        int height = raster.getHeight();
+        Object buffer = null;
+        for (int y = 0; y < height / 2; y++) {
+            buffer = swapRows(raster, layout, y, height - 1 - y, buffer);
+        }
+        return image;
+    }
+
+    /**
+     * <p>
+     * Turn an image upside down, in place.
+     * </p>
+     *
+     * @param image The image to turn.
+     * @return The same image, now turned.
+     */
+    public static BufferedImage rotate180(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        Layout layout = Layout.of(raster);
+        int height = raster.getHeight();
+        Object buffer = null;
+        for (int y = 0; y < (height + 1) / 2; y++) {
+            if (y != height - 1 - y) {
+                buffer = swapRows(raster, layout, y, height - 1 - y, buffer);
+                reverseRow(raster, layout, height - 1 - y);
+            }
+            reverseRow(raster, layout, y);
+        }
+        return image;
+    }
+
+    /**
+     * <p>
+     * Make a copy of an image, flipped horizontally if asked and then turned clockwise.
+     * </p>
+     *
+     * <p>
+     * The copy has the same colour model and layout as the image, and a new array of pixels.
+     * </p>
+     *
+     * @param image The image to copy.
+     * @param flip Whether to flip the image horizontally before turning it.
+     * @param turns The number of quarter turns clockwise, from 0 to 3.
+     * @return The new image.
+     */
+    public static BufferedImage orient(BufferedImage image, boolean flip, int turns) {
+        WritableRaster raster = image.getRaster();
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        WritableRaster oriented = turns % 2 == 0 ? raster.createCompatibleWritableRaster(width, height)
+                : raster.createCompatibleWritableRaster(height, width);
+        // Where the top left pixel goes, and how far each step along a row or down a column moves it.
+        int[] origin = position(0, 0, width, height, flip, turns);
+        int[] acrossOne = position(1, 0, width, height, flip, turns);
+        int[] downOne = position(0, 1, width, height, flip, turns);
+        int acrossX = acrossOne[0] - origin[0];
+        int acrossY = acrossOne[1] - origin[1];
+        int downX = downOne[0] - origin[0];
+        int downY = downOne[1] - origin[1];
+
+        Layout from = Layout.of(raster);
+        Layout to = Layout.of(oriented);
+        if (from == null || to == null || !from.matches(to)) {
+            Object pixel = null;
+            for (int v = 0; v < height; v++) {
+                for (int u = 0; u < width; u++) {
+                    pixel = raster.getDataElements(u, v, pixel);
+                    oriented.setDataElements(origin[0] + u * acrossX + v * downX, origin[1] + u * acrossY + v * downY, pixel);
+                }
+            }
+        } else {
+            int n = from.pixelSize;
+            int across = acrossY * to.stride + acrossX * n;
+            int down = downY * to.stride + downX * n;
+            int base = to.index(origin[0], origin[1]);
+            for (int v0 = 0; v0 < height; v0 += BLOCK) {
+                for (int u0 = 0; u0 < width; u0 += BLOCK) {
+                    int runLength = Math.min(BLOCK, width - u0);
+                    for (int v = v0; v < Math.min(v0 + BLOCK, height); v++) {
+                        copyRun(from.data, from.index(u0, v), to.data, base + u0 * across + v * down, across, runLength, n);
+                    }
+                }
+            }
+        }
+        ColorModel cm = image.getColorModel();
+        return new BufferedImage(cm, oriented, cm.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * <p>
+     * Work out where a pixel goes once an image is flipped and turned.
+     * </p>
+     *
+     * @param u The x coordinate of the pixel.
+     * @param v The y coordinate of the pixel.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param flip Whether the image is flipped horizontally before it is turned.
+     * @param turns The number of quarter turns clockwise.
+     * @return The x and y coordinates of the pixel in the result.
+     */
+    private static int[] position(int u, int v, int width, int height, boolean flip, int turns) {
+        int x = flip ? width - 1 - u : u;
+        int y = v;
+        int columnLength = height;
+        for (int i = 0; i < turns; i++) {
+            // A quarter turn clockwise puts the left column along the top, from right to left.
+            int oldX = x;
+            x = columnLength - 1 - y;
+            y = oldX;
+            columnLength = i % 2 == 0 ? width : height;
+        }
+        return new int[] {x, y};
+    }
+
+    /**
+     * <p>
+     * Copy a run of pixels from a row into evenly spaced pixels of another array.
+     * </p>
+     *
+     * @param src The array to read from.
+     * @param srcFrom The index of the first element of the first pixel to read.
+     * @param dst The array to write to, of the same type as <code>src</code>.
+     * @param dstFrom The index of the first element of the first pixel to write.
+     * @param dstStep The distance in <code>dst</code> from one pixel written to the next.
+     * @param length The number of pixels in the run.
+     * @param n The number of data elements in each pixel.
+     */
+    private static void copyRun(Object src, int srcFrom, Object dst, int dstFrom, int dstStep, int length, int n) {
+        if (src instanceof int[] && n == 1) {
+            int[] s = (int[]) src;
+            int[] d = (int[]) dst;
+            for (int i = 0; i < length; i++) {
+                d[dstFrom + i * dstStep] = s[srcFrom + i];
+            }
+        } else if (src instanceof byte[]) {
+            byte[] s = (byte[]) src;
+            byte[] d = (byte[]) dst;
+            for (int i = 0; i < length; i++) {
+                for (int k = 0; k < n; k++) {
+                    d[dstFrom + i * dstStep + k] = s[srcFrom + i * n + k];
+                }
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                System.arraycopy(src, srcFrom + i * n, dst, dstFrom + i * dstStep, n);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Reverse the order of the pixels in a row, in place.
+     * </p>
+     *
+     * @param raster The raster the row is in.
+     * @param layout The layout of the raster, or null to go through the raster itself.
+     * @param y The y coordinate of the row.
+     */
+    private static void reverseRow(WritableRaster raster, Layout layout, int y) {
+        int width = raster.getWidth();
+        if (layout == null) {
+            Object left = null;
+            Object right = null;
+            for (int x = 0; x < width / 2; x++) {
+                left = raster.getDataElements(x, y, left);
+                right = raster.getDataElements(width - 1 - x, y, right);
+                raster.setDataElements(x, y, right);
+                raster.setDataElements(width - 1 - x, y, left);
+            }
+            return;
+        }
+        int n = layout.pixelSize;
+        int left = layout.index(0, y);
+        int right = layout.index(width - 1, y);
+        if (layout.data instanceof int[] && n == 1) {
+            int[] data = (int[]) layout.data;
+            for (; left < right; left++, right--) {
+                int swap = data[left];
+                data[left] = data[right];
+                data[right] = swap;
+            }
+        } else if (layout.data instanceof byte[]) {
+            byte[] data = (byte[]) layout.data;
+            for (; left < right; left += n, right -= n) {
+                for (int k = 0; k < n; k++) {
+                    byte swap = data[left + k];
+                    data[left + k] = data[right + k];
+                    data[right + k] = swap;
+                }
+            }
+        } else {
+            Object swap = Array.newInstance(layout.data.getClass().getComponentType(), n);
+            for (; left < right; left += n, right -= n) {
+                System.arraycopy(layout.data, left, swap, 0, n);
+                System.arraycopy(layout.data, right, layout.data, left, n);
+                System.arraycopy(swap, 0, layout.data, right, n);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Swap two rows of pixels.
+     * </p>
+     *
+     * @param raster The raster the rows are in.
+     * @param layout The layout of the raster, or null to go through the raster itself.
+     * @param y1 The y coordinate of one row.
+     * @param y2 The y coordinate of the other row.
+     * @param buffer A row to hold pixels in while swapping, or null to allocate a new one.
+     * @return The row used to hold pixels in, to pass back in for the next swap.
+     */
+    private static Object swapRows(WritableRaster raster, Layout layout, int y1, int y2, Object buffer) {
+        int width = raster.getWidth();
+        if (layout == null) {
+            buffer = raster.getDataElements(0, y1, width, 1, buffer);
+            raster.setDataElements(0, y1, width, 1, raster.getDataElements(0, y2, width, 1, null));
+            raster.setDataElements(0, y2, width, 1, buffer);
+            return buffer;
+        }
+        int length = width * layout.pixelSize;
+        if (buffer == null) {
+            buffer = Array.newInstance(layout.data.getClass().getComponentType(), length);
+        }
+        System.arraycopy(layout.data, layout.index(0, y1), buffer, 0, length);
+        System.arraycopy(layout.data, layout.index(0, y2), layout.data, layout.index(0, y1), length);
+        System.arraycopy(buffer, 0, layout.data, layout.index(0, y2), length);
+        return buffer;
+    }
+}
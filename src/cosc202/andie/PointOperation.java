@@ -0,0 +1,32 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * Interface for image operations that change each pixel on its own, as a {@link PointTransform}.
+ * </p>
+ *
+ * <p>
+ * A run of point operations one after another, in an {@link EditableImage} or a {@link Macro},
+ * is composed into a single transform and applied in one pass over the pixels, rather than one
+ * pass for each operation. Applying a point operation on its own gives the same pixels as
+ * applying its transform.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see PointTransform
+ * @version 1.0
+ */
+public interface PointOperation extends ImageOperation {
+
+    /**
+     * <p>
+     * Get the change this operation makes to each pixel.
+     * </p>
+     *
+     * @return The transform for this operation.
+     */
+    public PointTransform getTransform();
+}
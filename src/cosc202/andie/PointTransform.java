@@ -0,0 +1,197 @@
+package cosc202.andie;
+
+import java.awt.image.*;
+import java.util.List;
+
+/**
+ * <p>
+ * A change to the colour of each pixel on its own, made up of any number of {@link PointOperation}s.
+ * </p>
+ *
+ * <p>
+ * Every point operation in ANDIE does the same thing to the red, green and blue values, apart from
+ * converting to grey, which mixes them. So a transform is a lookup table applied to each of the
+ * red, green and blue values, then optionally converting to grey as {@link ConvertToGrey} does,
+ * then a second lookup table applied to the grey value. Alpha is left as it is.
+ * </p>
+ *
+ * <p>
+ * Following one transform with another only composes their tables, so however many operations
+ * make up a transform, applying it takes a single pass over the pixels. Transforms are only applied
+ * as steps of an {@link OperationPlan}, so are never in the list of operations of an image themselves.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see PointOperation
+ * @version 1.0
+ */
+public class PointTransform implements ImageOperation {
+
+    /** The new value for each old red, green and blue value. */
+    private int[] table;
+    /** Whether the pixels are converted to grey after {@link table}. */
+    private boolean grey;
+    /** The new value for each grey value, only used if {@link grey} is true. */
+    private int[] greyTable;
+
+    /**
+     * <p>
+     * Create a new transform.
+     * </p>
+     *
+     * @param table The new value for each old red, green and blue value.
+     * @param grey Whether to convert to grey after the table.
+     * @param greyTable The new value for each grey value.
+     */
+    private PointTransform(int[] table, boolean grey, int[] greyTable) {
+        this.table = table;
+        this.grey = grey;
+        this.greyTable = greyTable;
+    }
+
+    /**
+     * <p>
+     * Make a transform that replaces the red, green and blue values of each pixel using a lookup table.
+     * </p>
+     *
+     * @param table The new value for each of the 256 old values.
+     * @return The transform.
+     */
+    public static PointTransform of(int[] table) {
+        return new PointTransform(table.clone(), false, identity());
+    }
+
+    /**
+     * <p>
+     * Make a transform that converts each pixel to grey, as {@link ConvertToGrey} does.
+     * </p>
+     *
+     * @return The transform.
+     */
+    public static PointTransform grey() {
+        return new PointTransform(identity(), true, identity());
+    }
+
+    /**
+     * <p>
+     * Make a transform that does this transform and then another.
+     * </p>
+     *
+     * @param next The transform to do after this one.
+     * @return The combined transform.
+     */
+    public PointTransform then(PointTransform next) {
+        if (!grey) {
+            // The next table just follows this one, and any conversion to grey comes after both.
+            return new PointTransform(compose(table, next.table), next.grey, next.greyTable);
+        }
+        // The pixels are already grey, so everything after is done to the grey value. Converting
+        // grey pixels to grey again does not quite leave every value as it is, so that is a table too.
+        int[] after = compose(greyTable, next.table);
+        if (next.grey) {
+            int[] regrey = new int[256];
+            for (int i = 0; i < 256; i++) {
+                regrey[i] = greyValue(i, i, i);
+            }
+            after = compose(compose(after, regrey), next.greyTable);
+        }
+        return new PointTransform(table, true, after);
+    }
+
+    /**
+     * <p>
+     * Apply this transform to an image, in one pass over its pixels.
+     * </p>
+     *
+     * <p>
+     * As with the point operations themselves, this may change the image it is given.
+     * </p>
+     *
+     * @param input The image to apply the transform to.
+     * @return The resulting image.
+     */
+    public BufferedImage apply(BufferedImage input) {
+        PixelBuffer pixels = PixelBuffer.of(input);
+        if (!grey) {
+            pixels.applyTable(table);
+            return pixels.getImage();
+        }
+        int[] data = pixels.getData();
+        for (int y = 0; y < pixels.getHeight(); y++) {
+            int row = pixels.index(0, y);
+            for (int x = 0; x < pixels.getWidth(); x++) {
+                int argb = data[row + x];
+                int value = greyTable[greyValue(table[(argb >> 16) & 0xff], table[(argb >> 8) & 0xff], table[argb & 0xff])];
+                data[row + x] = (argb & 0xff000000) | (value << 16) | (value << 8) | value;
+            }
+        }
+        return pixels.getImage();
+    }
+
+    /**
+     * <p>
+     * Compose a run of point operations into a single transform.
+     * </p>
+     *
+     * @param ops The operations.
+     * @param from The index of the first operation in the run.
+     * @param length The number of operations in the run, which must all be {@link PointOperation}s.
+     * @return The transform doing each of the operations in turn.
+     */
+    public static PointTransform compose(List<? extends ImageOperation> ops, int from, int length) {
+        PointTransform transform = ((PointOperation) ops.get(from)).getTransform();
+        for (int i = from + 1; i < from + length; i++) {
+            transform = transform.then(((PointOperation) ops.get(i)).getTransform());
+        }
+        return transform;
+    }
+
+    /**
+     * <p>
+     * Work out the grey value of a colour, as {@link ConvertToGrey} does.
+     * </p>
+     *
+     * @param r The red value.
+     * @param g The green value.
+     * @param b The blue value.
+     * @return The grey value.
+     */
+    private static int greyValue(int r, int g, int b) {
+        return (int) Math.round(0.3*r + 0.6*g + 0.1*b);
+    }
+
+    /**
+     * <p>
+     * Make a table that does one table and then another.
+     * </p>
+     *
+     * @param first The table to look values up in first.
+     * @param second The table to look the results up in.
+     * @return The composed table.
+     */
+    private static int[] compose(int[] first, int[] second) {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = second[first[i]];
+        }
+        return table;
+    }
+
+    /**
+     * <p>
+     * Make a table that leaves every value as it is.
+     * </p>
+     *
+     * @return The table.
+     */
+    private static int[] identity() {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = i;
+        }
+        return table;
+    }
+}
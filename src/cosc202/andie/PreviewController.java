@@ -0,0 +1,328 @@
+package cosc202.andie;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * <p>
+ * Shows previews of an operation on the image in an {@link ImagePanel} while the user picks
+ * its parameters, such as with a slider.
+ * </p>
+ *
+ * <p>
+ * Every change of the parameters is passed to {@link update} as the operation they make. Changes
+ * are debounced, so that a preview is only started once the parameters have stayed the same for
+ * {@link #DEBOUNCE_MILLIS}, and previews are worked out as
+ * {@link JobScheduler.Priority#PREVIEW} jobs rather than on the event dispatch thread. A newer
+ * preview supersedes one still going, and a preview that finishes after the parameters have
+ * changed again is kept but not shown.
+ * </p>
+ *
+ * <p>
+ * Previews are worked out on a proxy of the image, downscaled to the size the panel can show
+ * of it, and the operation is only applied at full size once the user settles on it. The
+ * parameters of an operation may need scaling down to look right on the proxy, such as with
+ * {@link scaleRadius}, in which case the operation for the proxy is passed to {@link update}
+ * alongside the full size one.
+ * </p>
+ *
+ * <p>
+ * Finished previews are kept by the {@link ImageOperation#fingerprint} of their operation, so
+ * going back to parameters already seen shows their preview straight away. When the user
+ * settles on an operation whose preview was worked out at full size, the preview is handed to
+ * the {@link RenderCache}, so applying it to the actual image does not work it out again.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see JobScheduler
+ * @version 1.0
+ */
+public class PreviewController {
+
+    /** How long the parameters must stay the same before a preview is started, in milliseconds. */
+    public static final int DEBOUNCE_MILLIS = 60;
+    /** The most bytes of previews kept at once. The latest preview is always kept. */
+    private static final long CACHE_BYTES = 256L * 1024 * 1024;
+
+    /** The panel to show previews in. */
+    private ImagePanel target;
+    /** The actual image, which previews are worked out from but never change. */
+    private EditableImage actualImage;
+    /** Whether the actual image has finished rendering, so that previews can be started. */
+    private boolean ready;
+    /** The scale of the proxy previews are worked out on, 1 if they are worked out at full size. */
+    private double proxyScale;
+    /** The proxy previews are applied to copies of, or null until it is first needed. */
+    private BufferedImage proxy;
+    /** The timer starting a preview once the parameters have settled. */
+    private Timer timer;
+    /** The operation the latest parameters make, or null if they make no change. */
+    private ImageOperation latest;
+    /** The operation the latest parameters make for the proxy. */
+    private ImageOperation latestProxy;
+    /** The preview being worked out, or null if there is none. */
+    private Future<Void> pending;
+    /** Finished previews by the fingerprint of their operation, least recently used first. */
+    private LinkedHashMap<String, BufferedImage> cache = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true);
+    /** The bytes used by the previews in {@link cache}. */
+    private long cacheBytes;
+    /** Whether the user has finished picking, so that no more previews are shown. */
+    private boolean closed;
+
+    /**
+     * <p>
+     * Create a new PreviewController for the image shown in a panel.
+     * </p>
+     *
+     * <p>
+     * The proxy is the whole image, downscaled until it is as wide or as high as the part of the
+     * panel on screen, and no bigger than the image is shown at the panel's zoom.
+     * Since the dialog picking the parameters keeps the user from scrolling or zooming, this is
+     * as much detail as they can see.
+     * </p>
+     *
+     * <p>
+     * If the actual image is still rendering, previews are not started until it has finished,
+     * so that they are worked out from the result of all of its operations.
+     * </p>
+     *
+     * @param target The panel, which should be showing the actual image.
+     */
+    public PreviewController(ImagePanel target) {
+        this.target = target;
+        this.actualImage = target.getImage();
+        // The image shown may be out of date, but it is the one the user is looking at.
+        BufferedImage shown = actualImage.getCurrentImage();
+        proxyScale = Math.min(1, target.getZoom() / 100);
+        Rectangle visible = target.getVisibleRect();
+        if (visible.width > 0 && visible.height > 0) {
+            double fit = Math.max((double) visible.width / shown.getWidth(), (double) visible.height / shown.getHeight());
+            proxyScale = Math.min(proxyScale, fit);
+        }
+        timer = new Timer(DEBOUNCE_MILLIS, e -> start());
+        timer.setRepeats(false);
+        actualImage.whenRendered(() -> {
+            ready = true;
+            if (latest != null && !timer.isRunning()) {
+                start();
+            }
+        });
+    }
+
+    /**
+     * <p>
+     * Preview the operation made by the latest parameters, when it looks the same on the proxy
+     * as at full size.
+     * </p>
+     *
+     * @param op The operation, or null to show the actual image unchanged.
+     * @see #update(ImageOperation, ImageOperation)
+     */
+    public void update(ImageOperation op) {
+        update(op, op);
+    }
+
+    /**
+     * <p>
+     * Preview the operation made by the latest parameters.
+     * </p>
+     *
+     * <p>
+     * A preview already worked out for the same operation is shown straight away. Otherwise the
+     * preview is started once the parameters have settled, and the preview shown until then is
+     * left as it is.
+     * </p>
+     *
+     * @param op The operation, or null to show the actual image unchanged.
+     * @param proxyOp The operation with its parameters scaled to the proxy, such as by {@link scaleRadius}.
+     */
+    public void update(ImageOperation op, ImageOperation proxyOp) {
+        if (closed) {
+            return;
+        }
+        latest = op;
+        latestProxy = proxyOp;
+        BufferedImage cached = op == null ? null : getCached(op);
+        if (op == null || cached != null) {
+            timer.stop();
+            show(op, cached);
+            return;
+        }
+        timer.restart();
+    }
+
+    /**
+     * <p>
+     * Get the scale of the proxy previews are worked out on.
+     * </p>
+     *
+     * @return The scale, 1 if previews are worked out at full size.
+     */
+    public double getProxyScale() {
+        return proxyScale;
+    }
+
+    /**
+     * <p>
+     * Scale a radius, in pixels, down to the proxy, so that an operation with the scaled radius
+     * looks on the proxy as one with the full radius does at full size.
+     * </p>
+     *
+     * @param radius The radius at full size.
+     * @return The radius on the proxy, which is at least 1 unless the full radius is 0.
+     */
+    public int scaleRadius(int radius) {
+        if (radius <= 0) {
+            return radius;
+        }
+        return Math.max(1, (int) Math.round(radius * proxyScale));
+    }
+
+    /**
+     * <p>
+     * Stop previewing, once the user has finished picking the parameters.
+     * </p>
+     *
+     * <p>
+     * Any preview still going is cancelled. If the user has settled on an operation whose
+     * preview has been worked out at full size, the preview is put in the {@link RenderCache} as
+     * the result of applying it to the actual image.
+     * </p>
+     *
+     * @param chosen The operation the user settled on, or null if they cancelled.
+     */
+    public void close(ImageOperation chosen) {
+        closed = true;
+        timer.stop();
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        BufferedImage result = chosen == null || proxyScale < 1 ? null : getCached(chosen);
+        if (result != null) {
+            String key = RenderCache.keyOf(actualImage.getCurrentKey(), chosen);
+            RenderCache.getShared().put(key, result);
+        }
+        cache.clear();
+        cacheBytes = 0;
+    }
+
+    /**
+     * <p>
+     * Start working out the preview of the latest operation in the background.
+     * </p>
+     */
+    private void start() {
+        ImageOperation op = latest;
+        ImageOperation proxyOp = latestProxy;
+        if (closed || !ready || op == null || getCached(op) != null) {
+            return;
+        }
+        pending = JobScheduler.getShared().submit(this, JobScheduler.Priority.PREVIEW, context -> {
+            // Operations may change the image they are given, so each preview has its own copy.
+            BufferedImage input = getProxy(context);
+            ColorModel cm = input.getColorModel();
+            BufferedImage copy = new BufferedImage(cm, input.copyData(null), cm.isAlphaPremultiplied(), null);
+            BufferedImage result = proxyOp.apply(copy, context);
+            SwingUtilities.invokeLater(() -> finished(op, result));
+        });
+    }
+
+    /**
+     * <p>
+     * Get the proxy previews are applied to copies of, making it the first time.
+     * </p>
+     *
+     * <p>
+     * The proxy is made from the actual image as it is when the first preview starts, which is
+     * after it has finished rendering.
+     * </p>
+     *
+     * @param context The context of the preview needing the proxy.
+     * @return The proxy, which is the image itself if previews are worked out at full size.
+     */
+    private synchronized BufferedImage getProxy(OperationContext context) {
+        if (proxy == null) {
+            BufferedImage base = actualImage.getCurrentImage();
+            if (proxyScale < 1) {
+                int width = Math.max(1, (int) Math.round(base.getWidth() * proxyScale));
+                int height = Math.max(1, (int) Math.round(base.getHeight() * proxyScale));
+                proxy = Resampler.resize(base, width, height, Resampler.Quality.AREA, context);
+            } else {
+                proxy = base;
+            }
+        }
+        return proxy;
+    }
+
+    /**
+     * <p>
+     * Keep a finished preview, and show it if the parameters have not changed since it was started.
+     * </p>
+     *
+     * @param op The operation the preview is of.
+     * @param result The preview.
+     */
+    private void finished(ImageOperation op, BufferedImage result) {
+        if (closed) {
+            return;
+        }
+        String fingerprint = op.fingerprint();
+        if (fingerprint != null) {
+            BufferedImage old = cache.put(fingerprint, result);
+            if (old != null) {
+                cacheBytes -= CheckpointStore.sizeOf(old);
+            }
+            cacheBytes += CheckpointStore.sizeOf(result);
+            // Drop the least recently used previews until they fit, always keeping this one.
+            Iterator<Map.Entry<String, BufferedImage>> it = cache.entrySet().iterator();
+            while (cacheBytes > CACHE_BYTES && cache.size() > 1) {
+                Map.Entry<String, BufferedImage> eldest = it.next();
+                cacheBytes -= CheckpointStore.sizeOf(eldest.getValue());
+                it.remove();
+            }
+        }
+        if (op == latest) {
+            show(op, result);
+        }
+    }
+
+    /**
+     * <p>
+     * Get the preview worked out for an operation, if there is one.
+     * </p>
+     *
+     * @param op The operation.
+     * @return The preview, or null if it has not been worked out or the operation has no fingerprint.
+     */
+    private BufferedImage getCached(ImageOperation op) {
+        String fingerprint = op.fingerprint();
+        return fingerprint == null ? null : cache.get(fingerprint);
+    }
+
+    /**
+     * <p>
+     * Show a preview in the panel.
+     * </p>
+     *
+     * @param op The operation the preview is of, or null to show the actual image.
+     * @param result The preview, or null to show the actual image.
+     */
+    private void show(ImageOperation op, BufferedImage result) {
+        if (op == null || result == null) {
+            target.setImage(actualImage);
+        } else {
+            target.setImage(actualImage.previewOf(op, result, proxyScale));
+        }
+        target.repaint();
+        if (target.getParent() != null) {
+            target.getParent().revalidate();
+        }
+    }
+}
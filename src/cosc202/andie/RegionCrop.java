@@ -3,6 +3,7 @@ package cosc202.andie;
 import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.image.*;
+import java.util.Objects;
 
 /**
  * <p>
@@ -25,7 +26,7 @@ import java.awt.image.*;
  * 
  * @author Katie Wink
  */
-public class RegionCrop implements ImageOperation, java.io.Serializable {
+public class RegionCrop implements GeometricOperation, java.io.Serializable {
 
     /*
      * This stores the x and y coordinates of the upper-left corner of the region
@@ -78,4 +79,57 @@ public class RegionCrop implements ImageOperation, java.io.Serializable {
         g.drawImage(img, 0, 0, null);
         return copyOfImage;
     }
+
+    /**
+     * <p>
+     * Add this crop to the end of a {@link GeometricTransform}.
+     * </p>
+     * 
+     * @param transform The transform to add to.
+     */
+    @Override
+    public void foldInto(GeometricTransform transform) {
+        transform.crop((int) (r.x / scale), (int) (r.y / scale), (int) (r.width / scale), (int) (r.height / scale));
+    }
+
+    /**
+     * <p>
+     * Check whether another object is a RegionCrop with the same region and scale.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a RegionCrop with the same region and scale, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        RegionCrop other = (RegionCrop) obj;
+        return Objects.equals(r, other.r) && Double.compare(scale, other.scale) == 0;
+    }
+
+    /**
+     * <p>
+     * Get a hash code for this RegionCrop, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), r, scale);
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this RegionCrop made up of its region and scale.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "RegionCrop(r=" + (r == null ? "none" : r.x + "," + r.y + "," + r.width + "," + r.height) + ",scale=" + scale + ")";
+    }
 }
@@ -0,0 +1,340 @@
+package cosc202.andie;
+
+import java.awt.image.*;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.util.*;
+import java.util.prefs.Preferences;
+
+/**
+ * <p>
+ * A cache of rendered images, shared by every {@link EditableImage}.
+ * </p>
+ *
+ * <p>
+ * Results are keyed by their content rather than by where they are in a history. The key of an
+ * original image is a hash of its pixels, and the key of the result of applying an
+ * {@link ImageOperation} is a hash of the previous key together with the operation's
+ * {@link ImageOperation#fingerprint()}. So the same operations applied to the same pixels get the
+ * same key, whether that is after reopening an image with its <code>.ops</code> file, after
+ * trying and reverting the same filter, or after running the same macro twice.
+ * </p>
+ *
+ * <p>
+ * Images are evicted least recently used first once the cache goes over its byte budget. The
+ * budget is read from the preferences under {@link #BUDGET_KEY} (in megabytes), and defaults to
+ * {@link #DEFAULT_BUDGET_MB}. Like the {@link CheckpointStore}, the cache copies images on the
+ * way in and on the way out, since many operations change their input in place.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @version 1.0
+ */
+public class RenderCache {
+
+    /** The preferences key holding the render cache budget in megabytes. */
+    public static final String BUDGET_KEY = "renderCacheMB";
+    /** The render cache budget in megabytes used if none is set in the preferences. */
+    public static final long DEFAULT_BUDGET_MB = 256;
+
+    /** The cache shared by every {@link EditableImage}. */
+    private static RenderCache shared;
+
+    /** The cached images in least recently used order. */
+    private LinkedHashMap<String, BufferedImage> images;
+    /** The maximum number of bytes the cached images may take up. */
+    private long budgetBytes;
+    /** The number of bytes the cached images currently take up. */
+    private long usedBytes;
+    /** The number of lookups that found an image. */
+    private long hits;
+    /** The number of lookups that did not find an image. */
+    private long misses;
+
+    /**
+     * <p>
+     * Create a new RenderCache with the given budget.
+     * </p>
+     *
+     * @param budgetBytes The maximum number of bytes the cached images may take up.
+     */
+    public RenderCache(long budgetBytes) {
+        this.budgetBytes = Math.max(0, budgetBytes);
+        // Access order, so that iteration starts at the least recently used image.
+        images = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true);
+        usedBytes = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * <p>
+     * Get the cache shared by every {@link EditableImage}, creating it with the budget set in the
+     * preferences if needed.
+     * </p>
+     *
+     * @return The shared render cache.
+     */
+    public static synchronized RenderCache getShared() {
+        if (shared == null) {
+            Preferences prefs = Preferences.userNodeForPackage(Andie.class);
+            shared = new RenderCache(prefs.getLong(BUDGET_KEY, DEFAULT_BUDGET_MB) * 1024 * 1024);
+        }
+        return shared;
+    }
+
+    /**
+     * <p>
+     * Compute the key of an original image from its size, format and pixels.
+     * </p>
+     *
+     * <p>
+     * The format is part of the key because operations may work on an image's own samples
+     * rather than its ARGB pixels, so two images with the same ARGB pixels but different types
+     * or colour models, such as an opaque and a translucent one, may not give the same results.
+     * </p>
+     *
+     * @param image The image to compute the key of.
+     * @return The key of the image.
+     */
+    public static String keyOf(BufferedImage image) {
+        MessageDigest digest = newDigest();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] row = new byte[width * 4];
+        int[] argb = new int[width];
+        digest.update((width + "x" + height + "\n" + formatOf(image)).getBytes(StandardCharsets.UTF_8));
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, argb, 0, width);
+            for (int x = 0; x < width; x++) {
+                row[4 * x] = (byte) (argb[x] >> 24);
+                row[4 * x + 1] = (byte) (argb[x] >> 16);
+                row[4 * x + 2] = (byte) (argb[x] >> 8);
+                row[4 * x + 3] = (byte) argb[x];
+            }
+            digest.update(row);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * <p>
+     * Describe the format of an image: its type and the details of its colour model.
+     * </p>
+     *
+     * @param image The image.
+     * @return The description of its format.
+     */
+    private static String formatOf(BufferedImage image) {
+        ColorModel cm = image.getColorModel();
+        StringBuilder format = new StringBuilder();
+        format.append("type=").append(image.getType());
+        format.append(",model=").append(cm.getClass().getName());
+        format.append(",space=").append(cm.getColorSpace().getType());
+        format.append(",sRGB=").append(cm.getColorSpace().isCS_sRGB());
+        format.append(",bits=").append(Arrays.toString(cm.getComponentSize()));
+        format.append(",alpha=").append(cm.hasAlpha());
+        format.append(",premultiplied=").append(cm.isAlphaPremultiplied());
+        format.append(",transparency=").append(cm.getTransparency());
+        format.append(",transferType=").append(cm.getTransferType());
+        if (cm instanceof IndexColorModel) {
+            format.append(",mapSize=").append(((IndexColorModel) cm).getMapSize());
+        }
+        return format.toString();
+    }
+
+    /**
+     * <p>
+     * Compute the key of the result of applying an operation to the image with the given key.
+     * </p>
+     *
+     * @param key The key of the image the operation is applied to, or null if it has none.
+     * @param op The operation applied.
+     * @return The key of the result, or null if either the input or the operation has no key.
+     */
+    public static String keyOf(String key, ImageOperation op) {
+        String fingerprint = op.fingerprint();
+        if (key == null || fingerprint == null) {
+            return null;
+        }
+        MessageDigest digest = newDigest();
+        digest.update(key.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * <p>
+     * Look up an image, counting the lookup as a hit or a miss.
+     * </p>
+     *
+     * @param key The key of the image.
+     * @return A copy of the cached image, or null if it is not in the cache.
+     */
+    public synchronized BufferedImage get(String key) {
+        BufferedImage image = key == null ? null : images.get(key);
+        if (image == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy(image);
+    }
+
+    /**
+     * <p>
+     * Check whether an image is in the cache, without counting a hit or miss.
+     * </p>
+     *
+     * @param key The key of the image.
+     * @return True if the image is in the cache, false otherwise.
+     */
+    public synchronized boolean contains(String key) {
+        return key != null && images.containsKey(key);
+    }
+
+    /**
+     * <p>
+     * Add a copy of an image to the cache, evicting the least recently used images as needed.
+     * </p>
+     *
+     * <p>
+     * Images with no key, images already cached, and images bigger than the whole budget are ignored.
+     * </p>
+     *
+     * @param key The key of the image.
+     * @param image The image to cache.
+     */
+    public synchronized void put(String key, BufferedImage image) {
+        if (key == null || images.containsKey(key)) {
+            return;
+        }
+        long bytes = CheckpointStore.sizeOf(image);
+        if (bytes > budgetBytes) {
+            return;
+        }
+        Iterator<BufferedImage> oldest = images.values().iterator();
+        while (usedBytes + bytes > budgetBytes && oldest.hasNext()) {
+            usedBytes -= CheckpointStore.sizeOf(oldest.next());
+            oldest.remove();
+        }
+        images.put(key, copy(image));
+        usedBytes += bytes;
+    }
+
+    /**
+     * <p>
+     * Remove every image from the cache and reset the counters.
+     * </p>
+     */
+    public synchronized void clear() {
+        images.clear();
+        usedBytes = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * <p>
+     * Get the number of lookups that found an image.
+     * </p>
+     *
+     * @return The number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * <p>
+     * Get the number of lookups that did not find an image.
+     * </p>
+     *
+     * @return The number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * <p>
+     * Get the number of images in the cache.
+     * </p>
+     *
+     * @return The number of images.
+     */
+    public synchronized int size() {
+        return images.size();
+    }
+
+    /**
+     * <p>
+     * Get the number of bytes the cached images currently take up.
+     * </p>
+     *
+     * @return The number of bytes used.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * <p>
+     * Get the maximum number of bytes the cached images may take up.
+     * </p>
+     *
+     * @return The budget in bytes.
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * <p>
+     * Create a new SHA-256 digest.
+     * </p>
+     *
+     * @return The new digest.
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256, so this will not happen.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Write bytes out as a hexadecimal string.
+     * </p>
+     *
+     * @param bytes The bytes to write out.
+     * @return The hexadecimal string.
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder str = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            str.append(String.format("%02x", b));
+        }
+        return str.toString();
+    }
+
+    /**
+     * <p>
+     * Make an independent copy of an image.
+     * </p>
+     *
+     * @param image The image to copy.
+     * @return The copy.
+     */
+    private static BufferedImage copy(BufferedImage image) {
+        ColorModel cm = image.getColorModel();
+        return new BufferedImage(cm, image.copyData(null), cm.isAlphaPremultiplied(), null);
+    }
+}
@@ -0,0 +1,414 @@
+package cosc202.andie;
+
+import java.awt.image.*;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Resizes images, one direction at a time, in bands of rows on a shared pool.
+ * </p>
+ *
+ * <p>
+ * Each pixel of the result is a weighted sum of the pixels of the input near it, and the weights
+ * only depend on the column (for the horizontal pass) or the row (for the vertical pass). So the
+ * weights are worked out once for each column and each row of the result, then each band of
+ * result rows is made by resampling just the input rows under it horizontally, then resampling
+ * those vertically. Bands are done in parallel on the same pool as a {@link TiledImage}, or the
+ * pool of an {@link OperationContext}, which is checked for cancelling before each band.
+ * </p>
+ *
+ * <p>
+ * Colours are weighted by their alpha, so that transparent pixels don't darken the edges of
+ * opaque ones. Pixels beyond the edges of the image are left out, and the weights of the rest
+ * scaled up to make up for them.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see ImageResizeN
+ * @version 1.0
+ */
+public class Resampler {
+
+    /** The number of result rows in each band. */
+    private static final int BAND_HEIGHT = 64;
+
+    /**
+     * <p>
+     * The ways new pixels can be worked out from the old ones.
+     * </p>
+     */
+    public enum Quality {
+        /** Each pixel takes the value of the input pixel nearest its centre. Fastest, but blocky. */
+        NEAREST,
+        /** Pixels are blended linearly with their neighbours, widened when shrinking so no pixels are skipped. */
+        BILINEAR,
+        /** Each pixel is the average of the part of the input it covers, as {@link java.awt.Image#SCALE_AREA_AVERAGING} is. */
+        AREA,
+        /** Pixels are blended with a Lanczos window three pixels wide, which keeps edges sharpest. */
+        LANCZOS3
+    }
+
+    /** The width of the result. */
+    private int width;
+    /** The height of the result. */
+    private int height;
+    /** The weights of the input columns for each result column. */
+    private Weights columns;
+    /** The weights of the input rows for each result row. */
+    private Weights rows;
+
+    /**
+     * <p>
+     * The weights of the input pixels along one direction, for each pixel of the result.
+     * </p>
+     */
+    private static class Weights {
+        /** The first input pixel each result pixel is made from. */
+        int[] start;
+        /** The number of input pixels each result pixel is made from. */
+        int[] count;
+        /** The weight of each of those input pixels, <code>stride</code> to a result pixel. */
+        float[] weights;
+        /** The distance in {@link weights} from one result pixel to the next. */
+        int stride;
+    }
+
+    /**
+     * <p>
+     * Set up a resampler from one size to another.
+     * </p>
+     *
+     * @param srcWidth The width of the input.
+     * @param srcHeight The height of the input.
+     * @param width The width of the result, which must be at least 1.
+     * @param height The height of the result, which must be at least 1.
+     * @param quality How to work out the new pixels.
+     */
+    public Resampler(int srcWidth, int srcHeight, int width, int height, Quality quality) {
+        this.width = width;
+        this.height = height;
+        this.columns = weights(srcWidth, width, quality);
+        this.rows = weights(srcHeight, height, quality);
+    }
+
+    /**
+     * <p>
+     * Resize an image on the shared pool.
+     * </p>
+     *
+     * @param image The image to resize.
+     * @param width The new width, which must be at least 1.
+     * @param height The new height, which must be at least 1.
+     * @param quality How to work out the new pixels.
+     * @return A new {@link BufferedImage#TYPE_INT_ARGB} image of the new size.
+     */
+    public static BufferedImage resize(BufferedImage image, int width, int height, Quality quality) {
+        return resize(image, width, height, quality, new OperationContext());
+    }
+
+    /**
+     * <p>
+     * Resize an image on the pool of a context, checking for cancelling before each band.
+     * </p>
+     *
+     * @param image The image to resize.
+     * @param width The new width, which must be at least 1.
+     * @param height The new height, which must be at least 1.
+     * @param quality How to work out the new pixels.
+     * @param context The context to resize in.
+     * @return A new {@link BufferedImage#TYPE_INT_ARGB} image of the new size.
+     * @throws CancellationException If the context is cancelled.
+     */
+    public static BufferedImage resize(BufferedImage image, int width, int height, Quality quality, OperationContext context) {
+        return new Resampler(image.getWidth(), image.getHeight(), width, height, quality).apply(image, context);
+    }
+
+    /**
+     * <p>
+     * Resize an image to the size this resampler was set up for.
+     * </p>
+     *
+     * @param image The image to resize, which must be the size this resampler was set up for.
+     * @param pool The pool to resample the bands on.
+     * @return A new {@link BufferedImage#TYPE_INT_ARGB} image of the new size.
+     */
+    public BufferedImage apply(BufferedImage image, ForkJoinPool pool) {
+        return apply(image, new OperationContext(pool));
+    }
+
+    /**
+     * <p>
+     * Resize an image to the size this resampler was set up for, on the pool of a context,
+     * checking for cancelling before each band and reporting progress after each.
+     * </p>
+     *
+     * @param image The image to resize, which must be the size this resampler was set up for.
+     * @param context The context to resize in.
+     * @return A new {@link BufferedImage#TYPE_INT_ARGB} image of the new size.
+     * @throws CancellationException If the context is cancelled.
+     */
+    public BufferedImage apply(BufferedImage image, OperationContext context) {
+        PixelBuffer input = PixelBuffer.of(image);
+        PixelBuffer output = new PixelBuffer(width, height);
+        int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        BandTask task = new BandTask(input, output, 0, bands, context, new AtomicInteger(), bands);
+        if (bands <= 1) {
+            task.compute();
+        } else {
+            context.getPool().invoke(task);
+        }
+        return output.getImage();
+    }
+
+    /**
+     * <p>
+     * Work out the weights for resampling along one direction.
+     * </p>
+     *
+     * <p>
+     * The centre of result pixel <code>i</code> is at <code>(i + 0.5) * scale</code> in the input.
+     * When shrinking, the filters are stretched by the scale, so that every input pixel counts
+     * towards the result.
+     * </p>
+     *
+     * @param srcLength The number of input pixels.
+     * @param length The number of result pixels.
+     * @param quality How to work out the new pixels.
+     * @return The weights.
+     */
+    private static Weights weights(int srcLength, int length, Quality quality) {
+        double scale = (double) srcLength / length;
+        double stretch = Math.max(scale, 1.0);
+        double support;
+        switch (quality) {
+            case NEAREST: support = 0.5; break;
+            case BILINEAR: support = stretch; break;
+            case LANCZOS3: support = 3 * stretch; break;
+            default: support = stretch / 2 + 0.5; break;
+        }
+        Weights weights = new Weights();
+        weights.start = new int[length];
+        weights.count = new int[length];
+        weights.stride = (int) Math.ceil(2 * support) + 2;
+        weights.weights = new float[length * weights.stride];
+        for (int i = 0; i < length; i++) {
+            double centre = (i + 0.5) * scale;
+            int first = Math.max((int) Math.floor(centre - support), 0);
+            int last = Math.min((int) Math.ceil(centre + support), srcLength - 1);
+            if (quality == Quality.NEAREST) {
+                first = Math.min((int) centre, srcLength - 1);
+                last = first;
+            }
+            double[] w = new double[last - first + 1];
+            double total = 0;
+            for (int j = first; j <= last; j++) {
+                double value;
+                switch (quality) {
+                    case NEAREST:
+                        value = 1;
+                        break;
+                    case BILINEAR:
+                        value = Math.max(0, 1 - Math.abs(j + 0.5 - centre) / stretch);
+                        break;
+                    case LANCZOS3:
+                        value = lanczos3((j + 0.5 - centre) / stretch);
+                        break;
+                    default:
+                        // How much of input pixel j the result pixel covers.
+                        value = Math.max(0, Math.min(j + 1, (i + 1) * scale) - Math.max(j, i * scale));
+                        break;
+                }
+                w[j - first] = value;
+                total += value;
+            }
+            // Leave out the pixels with no weight at either end.
+            int from = 0;
+            int to = w.length;
+            while (from < to - 1 && w[from] == 0) {
+                from++;
+            }
+            while (to > from + 1 && w[to - 1] == 0) {
+                to--;
+            }
+            weights.start[i] = first + from;
+            weights.count[i] = to - from;
+            for (int k = from; k < to; k++) {
+                weights.weights[i * weights.stride + k - from] = (float) (total == 0 ? 1.0 / w.length : w[k] / total);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * <p>
+     * Work out the Lanczos window three pixels wide.
+     * </p>
+     *
+     * @param x The distance from the centre, in pixels.
+     * @return The weight at that distance.
+     */
+    private static double lanczos3(double x) {
+        if (x == 0) {
+            return 1;
+        }
+        if (Math.abs(x) >= 3) {
+            return 0;
+        }
+        double px = Math.PI * x;
+        return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+    }
+
+    /**
+     * <p>
+     * Resample a band of result rows.
+     * </p>
+     *
+     * @param input The pixels of the input.
+     * @param output The pixels of the result.
+     * @param top The first row of the band.
+     * @param bottom The row after the last row of the band.
+     */
+    private void resampleBand(PixelBuffer input, PixelBuffer output, int top, int bottom) {
+        // The input rows the band is made from.
+        int first = rows.start[top];
+        int last = first;
+        for (int y = top; y < bottom; y++) {
+            first = Math.min(first, rows.start[y]);
+            last = Math.max(last, rows.start[y] + rows.count[y]);
+        }
+        // Resample those rows horizontally, keeping the alpha and the colours weighted by it.
+        int[] src = input.getData();
+        float[] band = new float[(last - first) * width * 4];
+        for (int sy = first; sy < last; sy++) {
+            int row = input.index(0, sy);
+            int b = (sy - first) * width * 4;
+            for (int x = 0; x < width; x++, b += 4) {
+                int from = row + columns.start[x];
+                int w = x * columns.stride;
+                float a = 0, r = 0, g = 0, bl = 0;
+                for (int k = 0; k < columns.count[x]; k++) {
+                    int argb = src[from + k];
+                    float wa = columns.weights[w + k] * (argb >>> 24);
+                    a += wa;
+                    r += wa * ((argb >> 16) & 0xff);
+                    g += wa * ((argb >> 8) & 0xff);
+                    bl += wa * (argb & 0xff);
+                }
+                band[b] = a;
+                band[b + 1] = r;
+                band[b + 2] = g;
+                band[b + 3] = bl;
+            }
+        }
+        // Then resample vertically into the result.
+        int[] dst = output.getData();
+        float[] sum = new float[width * 4];
+        for (int y = top; y < bottom; y++) {
+            Arrays.fill(sum, 0);
+            int w = y * rows.stride;
+            for (int k = 0; k < rows.count[y]; k++) {
+                float weight = rows.weights[w + k];
+                int b = (rows.start[y] + k - first) * width * 4;
+                for (int i = 0; i < sum.length; i++) {
+                    sum[i] += weight * band[b + i];
+                }
+            }
+            int row = output.index(0, y);
+            for (int x = 0; x < width; x++) {
+                dst[row + x] = pack(sum, x * 4);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Turn a resampled alpha and alpha weighted colour back into an ARGB pixel.
+     * </p>
+     *
+     * @param sum The resampled values.
+     * @param i The index of the alpha, followed by the red, green and blue.
+     * @return The ARGB pixel.
+     */
+    private static int pack(float[] sum, int i) {
+        int a = Math.min(Math.max(Math.round(sum[i]), 0), 255);
+        if (a == 0) {
+            return 0;
+        }
+        float scale = 1 / sum[i];
+        int r = Math.min(Math.max(Math.round(sum[i + 1] * scale), 0), 255);
+        int g = Math.min(Math.max(Math.round(sum[i + 2] * scale), 0), 255);
+        int b = Math.min(Math.max(Math.round(sum[i + 3] * scale), 0), 255);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * <p>
+     * A task resampling a run of bands, split in half until each task has a single band.
+     * </p>
+     */
+    private class BandTask extends RecursiveAction {
+
+        /** The pixels of the input. */
+        private PixelBuffer input;
+        /** The pixels of the result. */
+        private PixelBuffer output;
+        /** The first band of the run. */
+        private int start;
+        /** The band after the last band of the run. */
+        private int end;
+        /** The context the resize is done in. */
+        private OperationContext context;
+        /** The number of bands of the whole result done so far. */
+        private AtomicInteger done;
+        /** The number of bands in the whole result. */
+        private int bands;
+
+        /**
+         * <p>
+         * Create a new BandTask.
+         * </p>
+         *
+         * @param input The pixels of the input.
+         * @param output The pixels of the result.
+         * @param start The first band of the run.
+         * @param end The band after the last band of the run.
+         * @param context The context the resize is done in.
+         * @param done The number of bands of the whole result done so far.
+         * @param bands The number of bands in the whole result.
+         */
+        BandTask(PixelBuffer input, PixelBuffer output, int start, int end, OperationContext context,
+                AtomicInteger done, int bands) {
+            this.input = input;
+            this.output = output;
+            this.start = start;
+            this.end = end;
+            this.context = context;
+            this.done = done;
+            this.bands = bands;
+        }
+
+        /**
+         * <p>
+         * Resample the run of bands, splitting it up if it is longer than one band.
+         * </p>
+         */
+        @Override
+        protected void compute() {
+            if (end - start > 1) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new BandTask(input, output, start, middle, context, done, bands),
+                        new BandTask(input, output, middle, end, context, done, bands));
+                return;
+            }
+            context.checkCancelled();
+            int top = start * BAND_HEIGHT;
+            resampleBand(input, output, top, Math.min(top + BAND_HEIGHT, height));
+            context.progress((double) done.incrementAndGet() / bands);
+        }
+    }
+}
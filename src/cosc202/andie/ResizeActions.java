@@ -245,22 +245,14 @@ public class ResizeActions {
                 EditableImage actualImage = target.getImage();
                 // Need to keep track of the original zoom as the slider changes its value.
                 double zoom = target.getZoom();
+                // Previews are worked out in the background on a proxy the size of the panel, so the slider stays responsive.
+                PreviewController preview = new PreviewController(target);
 
                 // This part updates how the image looks when the slider is moved.
                 jslider.addChangeListener(new ChangeListener() {
                     public void stateChanged(ChangeEvent ce) {
-                        // Create a deep copy of the editable image (so that we don't change the actual editable image)
-                        EditableImage copyImage = actualImage.deepCopyEditableImage();
-                        // Set the target to have this new copy of the actual image.
-                        target.setImage(copyImage);
-                        // Apply the brightness change to the new copy of the actual image.
-                        if (jslider.getValue() == 0) { // No change to apply.
-                            return;
-                        }
-                        // Apply the image resize with n given from user.
-                        target.getImage().apply(new ImageResizeN(jslider.getValue()));
-                        target.repaint();
-                        target.getParent().revalidate();
+                        // Resizing by a percentage looks the same on the proxy, so nothing needs scaling.
+                        preview.update(jslider.getValue() == 100 ? null : new ImageResizeN(jslider.getValue()));
                     }
                 });
 
@@ -268,6 +260,8 @@ public class ResizeActions {
                 try {
                     int option = JOptionPane.showOptionDialog(Andie.frame, jslider, LanguageActions.getLocaleString("resizeSlid"),
                             JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
+                    // Hand over the preview of the chosen value so applying it does not work it out again.
+                    preview.close(option == JOptionPane.OK_OPTION ? new ImageResizeN(jslider.getValue()) : null);
                     if (option == JOptionPane.CANCEL_OPTION || option == JOptionPane.CLOSED_OPTION) {
                         // Set the image in target back to the actual image and repaint.
                         target.setImage(actualImage);
@@ -1,7 +1,5 @@
 package cosc202.andie;
 
-import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
 
@@ -22,37 +20,83 @@ import java.io.Serializable;
  * 
  * @author Mathias Øgaard
  */
-public class Rotate180 implements ImageOperation, Serializable {
+public class Rotate180 implements GeometricOperation, Serializable {
 
     /**
      * <p>
      * Rotate an image by 180 degrees.
      * </p>
      * 
+     * <p>
+     * The pixels are moved around within the image itself, so the image is turned in place.
+     * </p>
+     * 
      * @param input The image to Rotate180 to.
      * @return The resulting (rotated) image.
      */
     @Override
     public BufferedImage apply(BufferedImage input) {
-        // When rotating 180 degrees, the width and height of the image stays the same
-        int width = input.getWidth();
-        int height = input.getHeight();
-
-        BufferedImage rotated = new BufferedImage(width, height, input.getType());
+        return PixelRemap.rotate180(input);
+    }
 
-        Graphics2D g = rotated.createGraphics(); // The "canvas" the new image is drawn on
-        AffineTransform at = g.getTransform();
+    /**
+     * <p>
+     * Add a half turn to the end of a {@link GeometricTransform}.
+     * </p>
+     * 
+     * @param transform The transform to add to.
+     */
+    @Override
+    public void foldInto(GeometricTransform transform) {
+        transform.rotate(2);
+    }
 
-        // Move canvas down and to the right, so the top left corner is rightly placed:
-        at.translate(width, height);
+    /**
+     * <p>
+     * Check whether this operation only rearranges the pixels, which it does.
+     * </p>
+     * 
+     * @return True.
+     */
+    @Override
+    public boolean isRigid() {
+        return true;
+    }
 
-        // Rotate canvas, so all corners of image is rightly placed:
-        at.quadrantRotate(2);
+    /**
+     * <p>
+     * Check whether another object is also a Rotate180. All Rotate180s are the same operation.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a Rotate180, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null && obj.getClass() == getClass();
+    }
 
-        g.setTransform(at); // Executes the transformation
-        g.drawImage(input, 0, 0, null); // Draws the image on the transformed canvas.
-        g.dispose();
+    /**
+     * <p>
+     * Get a hash code for this Rotate180, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return getClass().getName().hashCode();
+    }
 
-        return rotated;
+    /**
+     * <p>
+     * Get a fingerprint of this Rotate180, which has no parameters.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "Rotate180()";
     }
 }
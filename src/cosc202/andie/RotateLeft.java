@@ -1,7 +1,5 @@
 package cosc202.andie;
 
-import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
 
@@ -23,7 +21,7 @@ import java.io.Serializable;
  * 
  * @author Mathias Øgaard
  */
-public class RotateLeft implements ImageOperation, Serializable {
+public class RotateLeft implements GeometricOperation, Serializable {
 
     /**
      * <p>
@@ -35,25 +33,67 @@ public class RotateLeft implements ImageOperation, Serializable {
      */
     @Override
     public BufferedImage apply(BufferedImage input) {
-        // When rotating 90 degrees, the width and height of the image swap places
-        int width = input.getHeight();
-        int height = input.getWidth();
-
-        BufferedImage rotated = new BufferedImage(width, height, input.getType());
+        return PixelRemap.orient(input, false, 3);
+    }
 
-        Graphics2D g = rotated.createGraphics(); // The "canvas" the new image is drawn on
-        AffineTransform at = g.getTransform();
+    /**
+     * <p>
+     * Add a quarter turn anticlockwise to the end of a {@link GeometricTransform}.
+     * </p>
+     * 
+     * @param transform The transform to add to.
+     */
+    @Override
+    public void foldInto(GeometricTransform transform) {
+        transform.rotate(3);
+    }
 
-        // Move canvas down, so the top left corner is rightly placed:
-        at.translate(0, height);
+    /**
+     * <p>
+     * Check whether this operation only rearranges the pixels, which it does.
+     * </p>
+     * 
+     * @return True.
+     */
+    @Override
+    public boolean isRigid() {
+        return true;
+    }
 
-        // Rotate canvas, so all corners of image is rightly placed:
-        at.quadrantRotate(3);
+    /**
+     * <p>
+     * Check whether another object is also a RotateLeft. All RotateLefts are the same operation.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a RotateLeft, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null && obj.getClass() == getClass();
+    }
 
-        g.setTransform(at); // Executes the transformation
-        g.drawImage(input, 0, 0, null); // Draws the image on the transformed canvas.
-        g.dispose();
+    /**
+     * <p>
+     * Get a hash code for this RotateLeft, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return getClass().getName().hashCode();
+    }
 
-        return rotated;
+    /**
+     * <p>
+     * Get a fingerprint of this RotateLeft, which has no parameters.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "RotateLeft()";
     }
 }
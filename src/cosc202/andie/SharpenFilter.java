@@ -1,6 +1,7 @@
 package cosc202.andie;
 
 import java.awt.image.*;
+import java.util.Objects;
 
 /**
  * <p>
@@ -22,7 +23,7 @@ import java.awt.image.*;
  * @author Stella Srzich (Modified from Steven Mills)
  * @version 1.0
  */
-public class SharpenFilter implements ImageOperation, java.io.Serializable {
+public class SharpenFilter implements TileOperation, java.io.Serializable {
 
     /**
      * The amount we want to sharpen by. An amount of 1 just applies a generic sharpen filter.
@@ -68,105 +69,125 @@ public class SharpenFilter implements ImageOperation, java.io.Serializable {
 
     /**
      * <p>
-     * Apply a sharpen filter to an image.
+     * Get how far from an output pixel the sharpen filter reads. The kernel is always 3x3.
+     * </p>
+     * 
+     * @return The halo needed around each tile.
+     */
+    public int getHalo() {
+        return 1;
+    }
+
+    /**
+     * <p>
+     * Apply a sharpen filter to one tile of an image.
      * </p>
      * 
      * <p>
-     * As with many filters, the sharpen filter is implemented via convolution.
+     * As with many filters, the sharpen filter is a convolution, here with the kernel
+     * [0 0 0; 0 1 0; 0 0 0] + [0 -1 0; -1 4 -1; 0 -1 0]*amount/2.
      * With an amount of 1, the generic sharpen filter is applied. With 
      * a higher amount, a stronger sharpen filter is applied. Note, this does
      * not work by increasing the radius of the kernel. Rather, it changes the values
-     * of the numbers in the 3x3 kernel.
+     * of the numbers in the 3x3 kernel. Pixels beyond the edge of the image take the
+     * value of the nearest edge pixel.
      * </p>
      * 
-     * @param input The image to apply the sharpen filter to.
-     * @return The resulting (sharpened) image, sharpened to the specified amount.
+     * @param src The ARGB pixels of the tile and its halo.
+     * @param dst The array to write the ARGB pixels of the resulting tile into.
+     * @param width The width of the tile, not including the halo.
+     * @param height The height of the tile, not including the halo.
      */
-    public BufferedImage apply(BufferedImage input) {
-        // The values for the sharpening kernel as a 9-element array with the specified amount.
-        // Note, this is using [0 0 0; 0 1 0; 0 0 0] + [0 -1 0; -1 4 -1; 0 -1 0]*amount/2.
-        float factor = ((float)amount)/2.0f;
-        float [] array = { 0 , -1*factor, 0 ,
-                        -1*factor, 1 + 4*factor, -1*factor,
-                        0   , -1*factor,   0   };
-        
-        Kernel kernel = new Kernel(3, 3, array);
-        // Create a new image with the same values as in the original image, but with 
-        // the edge pixel values copied to new edge pixel values (the image is bigger by the radius of the kernel)
-        // on each side and the top and bottom.
-        int radius = 1;
-        BufferedImage edgesPlusInput = new BufferedImage(input.getWidth() + 2*radius, input.getHeight() + 2*radius, BufferedImage.TYPE_INT_ARGB);
-        // Fill the pixel values of this new buffered image.
-        for (int y = 0; y < input.getHeight(); ++y) {
-            for (int x = 0; x < input.getWidth(); ++x) {
-                // Copy over pixel values from the original image to pixels to the right and lower by 'radius' amount.
-                edgesPlusInput.setRGB(x + radius, y + radius, input.getRGB(x, y));
-                // If we are at an edge, then we copy that value to the values above/below/right/left.
-                if (y == 0) { // We are at the top of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i, input.getRGB(x, y));
-                    }
-                }
-                else if (y == input.getHeight() - 1) { // We are at the bottom of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i + input.getHeight() + radius, input.getRGB(x, y));
-                    }
-                }
-                if (x == 0) { // We are at the left of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i, y + radius, input.getRGB(x, y));
-                    }
-                }
-                else if (x == input.getWidth() - 1) { // We are at the right of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i + input.getWidth() + radius, y + radius, input.getRGB(x, y));
-                    }
-                }
-                // Dealing with corners.
-                if (x == 0 && y == 0) { // Top left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b, input.getRGB(x, y));
-                        }
-                    }
-                }
-                else if (x == 0 && y == input.getHeight() - 1) { // Bottom left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b + input.getHeight() + radius, input.getRGB(x, y));
-                        }
-                    }
-                }
-                else if (x == input.getWidth() - 1 && y == 0) { // Top right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b, input.getRGB(x, y));
-                        }
-                    }
-                }
-                else if (x == input.getWidth() - 1 && y == input.getHeight() - 1) { // Bottom right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b + input.getHeight() + radius, input.getRGB(x, y));
-                        }
-                    }
-                }
-            }
+    public void applyTile(int[] src, int[] dst, int width, int height) {
+        int srcWidth = width + 2;
+        int amount = this.amount;
+        VectorSupport.RowKernel vector = VectorSupport.kernel("sharpen", amount);
+        for (int y = 0; y < height; y++) {
+            VectorSupport.applyRow(
+                    (s, sFrom, sStride, d, dFrom, length) -> sharpenRow(s, sFrom, sStride, d, dFrom, length, amount),
+                    vector, src, y * srcWidth, srcWidth, dst, y * width, width);
         }
-        // Apply the filter to the new buffered image that has interpolated edges.
-        ConvolveOp convOp = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
-        BufferedImage uncroppedOutput = new BufferedImage(edgesPlusInput.getColorModel(), edgesPlusInput.copyData(null), edgesPlusInput.isAlphaPremultiplied(), null);
-        convOp.filter(edgesPlusInput, uncroppedOutput);
+    }
 
-        // Crop the uncropped output.
-        BufferedImage output = new BufferedImage(input.getWidth(), input.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        for (int x = 0; x < input.getWidth(); x++) {
-            for (int y = 0; y < input.getHeight(); y++) {
-                output.setRGB(x, y, uncroppedOutput.getRGB(x + radius, y + radius));
+    /**
+     * <p>
+     * Sharpen a run of pixels, one pixel at a time.
+     * </p>
+     * 
+     * <p>
+     * The kernel's weights are all multiples of a half, so this works out twice the
+     * convolution in whole numbers and halves it, rounding down, as {@link ConvolveOp} does.
+     * </p>
+     * 
+     * @param src The array to read pixels from.
+     * @param srcFrom The index of the top left of the neighbourhood of the first pixel.
+     * @param srcStride The distance in <code>src</code> from one row to the next.
+     * @param dst The array to write pixels to.
+     * @param dstFrom The index of the first pixel to write.
+     * @param length The number of pixels in the run.
+     * @param amount The amount to sharpen by.
+     * @return The number of pixels done, which is all of them.
+     */
+    private static int sharpenRow(int[] src, int srcFrom, int srcStride, int[] dst, int dstFrom, int length, int amount) {
+        int centreWeight = 2 + 4 * amount;
+        for (int x = 0; x < length; x++) {
+            int centre = srcFrom + srcStride + 1 + x;
+            int c = src[centre];
+            int up = src[centre - srcStride];
+            int down = src[centre + srcStride];
+            int left = src[centre - 1];
+            int right = src[centre + 1];
+            int argb = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                int neighbours = ((up >> shift) & 0xff) + ((down >> shift) & 0xff)
+                        + ((left >> shift) & 0xff) + ((right >> shift) & 0xff);
+                int value = (((c >> shift) & 0xff) * centreWeight - neighbours * amount) >> 1;
+                argb |= Math.min(Math.max(value, 0), 255) << shift;
             }
+            dst[dstFrom + x] = argb;
+        }
+        return length;
+    }
+
+    /**
+     * <p>
+     * Check whether another object is a SharpenFilter with the same amount.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a SharpenFilter with the same amount, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
         }
+        SharpenFilter other = (SharpenFilter) obj;
+        return amount == other.amount;
+    }
 
-        return output;
+    /**
+     * <p>
+     * Get a hash code for this SharpenFilter, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), amount);
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this SharpenFilter made up of its amount.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "SharpenFilter(amount=" + amount + ")";
     }
 }
 
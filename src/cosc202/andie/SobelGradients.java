@@ -0,0 +1,450 @@
+package cosc202.andie;
+
+import java.awt.image.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * The horizontal and vertical Sobel gradients of an image, with their magnitude and angle.
+ * </p>
+ *
+ * <p>
+ * This is the one edge detection engine behind {@link SobelHorizontalFilter},
+ * {@link SobelVerticalFilter} and {@link SobelOrientationFilter}, which are just different views
+ * of its results. The image is worked through in bands of rows, on the same pool as a
+ * {@link TiledImage}. Each band is (optionally) blurred, converted into a flat buffer of grey
+ * values, and then every gradient, magnitude and angle in it is worked out in a single pass over
+ * that buffer. Pixels beyond the edge of the image take the value of the nearest edge pixel.
+ * </p>
+ *
+ * <p>
+ * Gradients are halved (rounding halves up) so that they fit between -510 and 510.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @version 1.0
+ */
+public class SobelGradients {
+
+    /** The number of rows in each band. */
+    private static final int BAND_HEIGHT = 64;
+
+    /** The width of the image. */
+    private int width;
+    /** The height of the image. */
+    private int height;
+    /** The horizontal gradient of each pixel, row by row. */
+    private short[] gx;
+    /** The vertical gradient of each pixel, row by row. */
+    private short[] gy;
+    /** The magnitude of the gradient of each pixel, rounded down. */
+    private short[] magnitude;
+    /** The angle of the gradient of each pixel, from 0 to 2*pi, or null if not worked out. */
+    private double[] angle;
+    /** The smallest and largest horizontal gradients, and the same for vertical, and the largest magnitude. */
+    private int minGx, maxGx, minGy, maxGy, maxMagnitude;
+
+    /**
+     * <p>
+     * Work out the Sobel gradients of an image on the shared pool.
+     * </p>
+     *
+     * @param image The image to find the edges of.
+     * @param removeNoise True to apply a light Gaussian blur filter before finding the edges.
+     * @param angles True to work out the angle of each gradient as well.
+     */
+    public SobelGradients(BufferedImage image, boolean removeNoise, boolean angles) {
+        this(image, removeNoise, angles, TiledImage.getPool());
+    }
+
+    /**
+     * <p>
+     * Work out the Sobel gradients of an image on the given pool.
+     * </p>
+     *
+     * @param image The image to find the edges of.
+     * @param removeNoise True to apply a light Gaussian blur filter before finding the edges.
+     * @param angles True to work out the angle of each gradient as well.
+     * @param pool The pool to work out the bands on.
+     */
+    public SobelGradients(BufferedImage image, boolean removeNoise, boolean angles, ForkJoinPool pool) {
+        this(image, removeNoise, angles, new OperationContext(pool));
+    }
+
+    /**
+     * <p>
+     * Work out the Sobel gradients of an image on the pool of a context, checking for cancelling
+     * before each band and reporting progress after each.
+     * </p>
+     *
+     * @param image The image to find the edges of.
+     * @param removeNoise True to apply a light Gaussian blur filter before finding the edges.
+     * @param angles True to work out the angle of each gradient as well.
+     * @param context The context to work in.
+     * @throws CancellationException If the context is cancelled.
+     */
+    public SobelGradients(BufferedImage image, boolean removeNoise, boolean angles, OperationContext context) {
+        PixelBuffer pixels = PixelBuffer.of(image);
+        width = pixels.getWidth();
+        height = pixels.getHeight();
+        gx = new short[width * height];
+        gy = new short[width * height];
+        magnitude = new short[width * height];
+        angle = angles ? new double[width * height] : null;
+        int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        int[][] ranges = new int[bands][];
+        BandTask task = new BandTask(pixels, removeNoise, ranges, 0, bands, context, new AtomicInteger());
+        if (bands <= 1) {
+            task.compute();
+        } else {
+            context.getPool().invoke(task);
+        }
+        // The ranges start out including 0, and 1 for the maximums, as they always have.
+        maxGx = 1;
+        maxGy = 1;
+        maxMagnitude = 1;
+        for (int[] range : ranges) {
+            minGx = Math.min(minGx, range[0]);
+            maxGx = Math.max(maxGx, range[1]);
+            minGy = Math.min(minGy, range[2]);
+            maxGy = Math.max(maxGy, range[3]);
+            maxMagnitude = Math.max(maxMagnitude, range[4]);
+        }
+    }
+
+    /**
+     * <p>
+     * Get the width of the image.
+     * </p>
+     *
+     * @return The width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * <p>
+     * Get the height of the image.
+     * </p>
+     *
+     * @return The height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * <p>
+     * Get the horizontal gradient of each pixel, which is large across horizontal edges.
+     * </p>
+     *
+     * @return The gradients, row by row. This is not a copy, so should not be changed.
+     */
+    public short[] getGx() {
+        return gx;
+    }
+
+    /**
+     * <p>
+     * Get the vertical gradient of each pixel, which is large across vertical edges.
+     * </p>
+     *
+     * @return The gradients, row by row. This is not a copy, so should not be changed.
+     */
+    public short[] getGy() {
+        return gy;
+    }
+
+    /**
+     * <p>
+     * Get the magnitude of the gradient of each pixel, rounded down.
+     * </p>
+     *
+     * @return The magnitudes, row by row. This is not a copy, so should not be changed.
+     */
+    public short[] getMagnitude() {
+        return magnitude;
+    }
+
+    /**
+     * <p>
+     * Get the angle of the gradient of each pixel, if it was worked out.
+     * </p>
+     *
+     * @return The angles from 0 to 2*pi, row by row, or null if they were not worked out.
+     *         This is not a copy, so should not be changed.
+     */
+    public double[] getAngle() {
+        return angle;
+    }
+
+    /**
+     * <p>
+     * Make a grey image of the horizontal gradients, offset and rescaled to be between 0 and 255.
+     * </p>
+     *
+     * @return The horizontal edges, mostly grey with dark and light edges.
+     */
+    public BufferedImage horizontalImage() {
+        return offsetImage(gx, minGx, maxGx);
+    }
+
+    /**
+     * <p>
+     * Make a grey image of the vertical gradients, offset and rescaled to be between 0 and 255.
+     * </p>
+     *
+     * @return The vertical edges, mostly grey with dark and light edges.
+     */
+    public BufferedImage verticalImage() {
+        return offsetImage(gy, minGy, maxGy);
+    }
+
+    /**
+     * <p>
+     * Make an image of the magnitudes of the gradients, rescaled to be between 0 and 255,
+     * and optionally coloured by their angles.
+     * </p>
+     *
+     * <p>
+     * The hue of each pixel has always come from the edge one pixel up and to the left (with an
+     * angle of 0 along the top and left), and this is kept.
+     * </p>
+     *
+     * @param hue True to colour the edges by their angles, which must have been worked out.
+     * @return The edges, light on a black background.
+     */
+    public BufferedImage orientationImage(boolean hue) {
+        PixelBuffer out = new PixelBuffer(width, height);
+        int[] data = out.getData();
+        double scale = 255d / ((double) maxMagnitude);
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int newVal = (int) (magnitude[row + x] * scale);
+                int pixel = 0xff000000 | (newVal << 16) | (newVal << 8) | newVal;
+                if (hue) {
+                    pixel = colour(x > 0 && y > 0 ? angle[row - width + x - 1] : 0, pixel);
+                }
+                data[out.index(x, y)] = pixel;
+            }
+        }
+        return out.getImage();
+    }
+
+    /**
+     * <p>
+     * Make a grey image of gradients, offset and rescaled from their range to be between 0 and 255.
+     * </p>
+     *
+     * @param values The gradients.
+     * @param min The smallest gradient.
+     * @param max The largest gradient.
+     * @return The grey image.
+     */
+    private BufferedImage offsetImage(short[] values, int min, int max) {
+        PixelBuffer out = new PixelBuffer(width, height);
+        int[] data = out.getData();
+        int offset = -min;
+        double scale = 255d / ((double) max - min);
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int newVal = (int) ((values[row + x] + offset) * scale);
+                data[out.index(x, y)] = 0xff000000 | (newVal << 16) | (newVal << 8) | newVal;
+            }
+        }
+        return out.getImage();
+    }
+
+    /**
+     * <p>
+     * Work out the gradients of a band of rows in a single pass over its grey values.
+     * </p>
+     *
+     * @param grey The grey values of the band with a one pixel border, <code>width + 2</code> to a row.
+     * @param top The first row of the band.
+     * @param rows The number of rows in the band.
+     * @return The smallest and largest horizontal and vertical gradients, and the largest magnitude, in the band.
+     */
+    private int[] gradients(int[] grey, int top, int rows) {
+        int stride = width + 2;
+        int[] range = new int[5];
+        for (int y = 0; y < rows; y++) {
+            int above = y * stride;
+            int middle = above + stride;
+            int below = middle + stride;
+            int out = (top + y) * width;
+            for (int x = 0; x < width; x++) {
+                // The horizontal kernel finds horizontal edges, so compares the rows above and below.
+                int dx = (grey[below + x] + 2 * grey[below + x + 1] + grey[below + x + 2])
+                        - (grey[above + x] + 2 * grey[above + x + 1] + grey[above + x + 2]);
+                int dy = (grey[above + x + 2] - grey[above + x]) + 2 * (grey[middle + x + 2] - grey[middle + x])
+                        + (grey[below + x + 2] - grey[below + x]);
+                // The same as Math.round(dx / 2.0f), since halves round up.
+                int dxVal = (dx + 1) >> 1;
+                int dyVal = (dy + 1) >> 1;
+                int mag = (int) Math.sqrt(dxVal * dxVal + dyVal * dyVal);
+                gx[out + x] = (short) dxVal;
+                gy[out + x] = (short) dyVal;
+                magnitude[out + x] = (short) mag;
+                if (angle != null) {
+                    angle[out + x] = Math.atan2(dyVal, dxVal) + Math.PI;
+                }
+                range[0] = Math.min(range[0], dxVal);
+                range[1] = Math.max(range[1], dxVal);
+                range[2] = Math.min(range[2], dyVal);
+                range[3] = Math.max(range[3], dyVal);
+                range[4] = Math.max(range[4], mag);
+            }
+        }
+        return range;
+    }
+
+    /**
+     * <p>
+     * Convert an ARGB pixel to grey. This follows the convention of weighting green higher and
+     * blue lower as to match how humans perceive brightness.
+     * </p>
+     *
+     * @param rgb The ARGB value of the pixel.
+     * @return The grey value, from 0 to 255.
+     */
+    private static int greyscale(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = (rgb) & 0xff;
+        return (int) Math.round(0.3*r + 0.6*g + 0.1*b);
+    }
+
+    /**
+     * <p>
+     * Decide the hue of a pixel. Note, the decision has been made that if theta is from a polar
+     * coordinate in the cartesian plane, the positive x axis is red, negative x axis is green,
+     * positive y axis is yellow and negative y axis is blue.
+     * </p>
+     *
+     * @param angle The angle of the edge at the pixel, from 0 to 2*pi, which corresponds to hue.
+     * @param val The pixel to have hue added. This is assumed to be grey.
+     * @return The pixel now with hue decided by the angle, fully opaque.
+     */
+    private static int colour(double angle, int val) {
+        int r = (val >> 16) & 0xff;
+        int g = (val >> 8) & 0xff;
+        int b = val & 0xff;
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        // Due to cos and sin, these will always be between 0 and 1.
+        double newR = 0;
+        double newG = 0;
+        double newB = 0;
+        if (cos > 0) {
+            newR = cos; // Red value, green will be 0.
+        }
+        else if (cos < 0) {
+            newG = -cos; // Green value, red will be 0.
+        }
+        if (sin > 0) {
+            newR += sin; // Yellow (red and green) value, blue will be 0.
+            newG += sin;
+        }
+        else if (sin < 0) {
+            newB = -sin; // Blue value, yellow will be 0.
+        }
+        int pixelR = (int)Math.round(((double)r)*newR);
+        int pixelG = (int)Math.round(((double)g)*newG);
+        int pixelB = (int)Math.round(((double)b)*newB);
+        return 0xff000000 | (pixelR << 16) | (pixelG << 8) | pixelB;
+    }
+
+    /**
+     * <p>
+     * A task working out the gradients of a run of bands.
+     * </p>
+     *
+     * <p>
+     * Runs of more than one band are split in half. Each band records the range of its
+     * gradients, to be combined once every band is done.
+     * </p>
+     */
+    private class BandTask extends RecursiveAction {
+
+        /** The pixels of the image. */
+        private PixelBuffer pixels;
+        /** Whether to blur the image first. */
+        private boolean removeNoise;
+        /** The range of the gradients in each band, filled in as bands are done. */
+        private int[][] ranges;
+        /** The first band of the run. */
+        private int start;
+        /** The band after the last band of the run. */
+        private int end;
+        /** The context the gradients are worked out in. */
+        private OperationContext context;
+        /** The number of bands of the whole image done so far. */
+        private AtomicInteger done;
+
+        /**
+         * <p>
+         * Create a new BandTask.
+         * </p>
+         *
+         * @param pixels The pixels of the image.
+         * @param removeNoise Whether to blur the image first.
+         * @param ranges The range of the gradients in each band, filled in as bands are done.
+         * @param start The first band of the run.
+         * @param end The band after the last band of the run.
+         * @param context The context the gradients are worked out in.
+         * @param done The number of bands of the whole image done so far.
+         */
+        BandTask(PixelBuffer pixels, boolean removeNoise, int[][] ranges, int start, int end,
+                OperationContext context, AtomicInteger done) {
+            this.pixels = pixels;
+            this.removeNoise = removeNoise;
+            this.ranges = ranges;
+            this.start = start;
+            this.end = end;
+            this.context = context;
+            this.done = done;
+        }
+
+        /**
+         * <p>
+         * Work out the gradients of the run of bands, splitting it up if it is longer than one band.
+         * </p>
+         */
+        @Override
+        protected void compute() {
+            if (end - start > 1) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new BandTask(pixels, removeNoise, ranges, start, middle, context, done),
+                        new BandTask(pixels, removeNoise, ranges, middle, end, context, done));
+                return;
+            }
+            context.checkCancelled();
+            int top = start * BAND_HEIGHT;
+            int rows = Math.min(BAND_HEIGHT, height - top);
+            int stride = width + 2;
+            int[] region;
+            if (removeNoise) {
+                // The blur reads one pixel further out, so that the border can be blurred too.
+                int[] src = pixels.readRegion(-2, top - 2, width + 4, rows + 4, null);
+                region = new int[stride * (rows + 2)];
+                new GaussianBlurFilter().applyTile(src, region, stride, rows + 2);
+            } else {
+                region = pixels.readRegion(-1, top - 1, stride, rows + 2, null);
+            }
+            // Convert to grey in place, giving the flat buffer of grey values the gradients come from.
+            for (int i = 0; i < region.length; i++) {
+                region[i] = greyscale(region[i]);
+            }
+            ranges[start] = gradients(region, top, rows);
+            context.progress((double) done.incrementAndGet() / ranges.length);
+        }
+    }
+}
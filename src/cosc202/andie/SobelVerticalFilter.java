@@ -1,6 +1,7 @@
 package cosc202.andie;
 
 import java.awt.image.*;
+import java.util.Objects;
 
 /**
  * <p>
@@ -72,199 +73,33 @@ public class SobelVerticalFilter implements ImageOperation, java.io.Serializable
      * </p>
      * 
      * <p>
-     * As with many filters, the sobel vertical filter is implemented via convolution.
-     * First, the image is converted to grey scale. Then, if removeNoise is true, a light
-     * Gaussian blur filter is applied. Lastly, the vertical edges are detected via convolution.
+     * The image is converted to grey scale (after a light Gaussian blur if removeNoise is true),
+     * and its vertical edges are detected by a {@link SobelGradients}. The raw (possibly negative)
+     * results are then offset and rescaled to be between 0 and 255 over the whole image, which
+     * makes the image mostly grey rather than mostly black.
      * </p>
      * 
      * @param input The image to apply the sobel vertical filter to.
      * @return The resulting (vertical edge detected) image.
      */
     public BufferedImage apply(BufferedImage input) {
-        // Create a new image with the same values as in the original image, but with 
-        // the edge pixel values copied to new edge pixel values (the image is bigger by the radius of the kernel)
-        // on each side and the top and bottom.
-        int radius = 1;
-        BufferedImage edgesPlusInput = new BufferedImage(input.getWidth() + 2*radius, input.getHeight() + 2*radius, BufferedImage.TYPE_INT_ARGB);
-        // Fill the pixel values of this new buffered image.
-        for (int y = 0; y < input.getHeight(); ++y) {
-            for (int x = 0; x < input.getWidth(); ++x) {
-                // Copy over pixel values from the original image to pixels to the right and lower by 'radius' amount.
-                edgesPlusInput.setRGB(x + radius, y + radius, input.getRGB(x, y));
-                // If we are at an edge, then we copy that value to the values above/below/right/left.
-                if (y == 0) { // We are at the top of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i, input.getRGB(x, y));
-                    }
-                }
-                else if (y == input.getHeight() - 1) { // We are at the bottom of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(x + radius, i + input.getHeight() + radius, input.getRGB(x, y));
-                    }
-                }
-                if (x == 0) { // We are at the left of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i, y + radius, input.getRGB(x, y));
-                    }
-                }
-                else if (x == input.getWidth() - 1) { // We are at the right of the image.
-                    for (int i = 0; i < radius; i++) {
-                        edgesPlusInput.setRGB(i + input.getWidth() + radius, y + radius, input.getRGB(x, y));
-                    }
-                }
-                // Dealing with corners.
-                if (x == 0 && y == 0) { // Top left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b, input.getRGB(x, y));
-                        }
-                    }
-                }
-                else if (x == 0 && y == input.getHeight() - 1) { // Bottom left corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a, b + input.getHeight() + radius, input.getRGB(x, y));
-                        }
-                    }
-                }
-                else if (x == input.getWidth() - 1 && y == 0) { // Top right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b, input.getRGB(x, y));
-                        }
-                    }
-                }
-                else if (x == input.getWidth() - 1 && y == input.getHeight() - 1) { // Bottom right corner.
-                    for (int a = 0; a < radius; a++) {
-                        for (int b = 0; b < radius; b++) {
-                            edgesPlusInput.setRGB(a + input.getWidth() + radius, b + input.getHeight() + radius, input.getRGB(x, y));
-                        }
-                    }
-                }
-            }
-        }
-
-        // If we want to remove the noise, apply a gaussian blur filter of radius 1.
-        if (removeNoise) {
-            GaussianBlurFilter blur =  new GaussianBlurFilter();
-            edgesPlusInput = blur.apply(edgesPlusInput);
-        }
-
-        // Apply the edge detection filter to the new buffered image that has extended edges.
-        // Note, I am not using ConvolveOp as it makes the negative values get lost.
-        int width = edgesPlusInput.getWidth();
-        int height = edgesPlusInput.getHeight();
-        // We use an array of int to store the pixel values for now so that the negative ones don't get lost.
-        int[][] pixels = new int[width][height];
-        // We apply the kernel manually.
-        // This part also converts the image to grey.
-        for (int x = 1; x < width - 1; x++) {
-            for (int y = 1; y < height - 1; y++) {
-                int val00 = greyscale(edgesPlusInput.getRGB(x - 1, y - 1));
-                int val01 = greyscale(edgesPlusInput.getRGB(x - 1, y));
-                int val02 = greyscale(edgesPlusInput.getRGB(x - 1, y + 1));
-
-                int val10 = greyscale(edgesPlusInput.getRGB(x, y - 1));
-                int val11 = greyscale(edgesPlusInput.getRGB(x, y));
-                int val12 = greyscale(edgesPlusInput.getRGB(x, y + 1));
-
-                int val20 = greyscale(edgesPlusInput.getRGB(x + 1, y - 1));
-                int val21 = greyscale(edgesPlusInput.getRGB(x + 1, y));
-                int val22 = greyscale(edgesPlusInput.getRGB(x + 1, y + 1));
-                // Manually do the kernel convolution.
-                int val = (int) (((-1 * val00) + (-2 * val01) + (-1 * val02))
-                            + ((0 * val10) + (0 * val11) + (0 * val12))
-                            + ((1 * val20) + (2 * val21) + (1 * val22)));
-                // Save this value.
-                pixels[x][y] = (int) Math.round((float)val/2.0f);
-            }
-        }
-        // Now, we 'squish' all values to be between 0 and 255 by scaling and adding
-        // to deal with negative values. Note, this part makes the image mostly grey rather than mostly black.
-        BufferedImage uncroppedOutput = offset(pixels);
-
-        // Crop the uncropped output.
-        BufferedImage output = new BufferedImage(input.getWidth(), input.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        for (int x = 0; x < input.getWidth(); x++) {
-            for (int y = 0; y < input.getHeight(); y++) {
-                output.setRGB(x, y, uncroppedOutput.getRGB(x + radius, y + radius));
-            }
-        }
-        // Finally, make the edges white and the background black by
-        // taking the absolute difference between a pixel channel value and 127.
-        //output = absolute(output);
-        // Return the output.
-        return output;
+        return new SobelGradients(input, removeNoise, false).verticalImage();
     }
 
     /**
      * <p>
-     * This support method is used to convert an individual int RGB pixel value
-     * to grey scale. This follows the convention of weighting green higher and blue lower
-     * as to match how humans perceive brightness.
+     * Apply a sobel vertical filter to an image, in a context that can cancel it between bands of rows.
      * </p>
      * 
-     * @param rgb The int RGB value of a pixel in a BufferedImage.
-     * @return rgb converted to an int RGB value of a pixel in grey scale.
+     * @param input The image to apply the sobel vertical filter to.
+     * @param context The context to apply the filter in.
+     * @return The resulting image.
      */
-    private static int greyscale(int rgb) {
-        int r = (rgb >> 16) & 0xff;
-        int g = (rgb >> 8) & 0xff;
-        int b = (rgb) & 0xff;
-        int grey = (int) Math.round(0.3*r + 0.6*g + 0.1*b);
-        //int grey = (int) Math.round((r + g + b)/3);
-        return grey;
-    }
-    
-    /**
-     * <p>
-     * This support method is used in the final stages of the filter to offset, and rescale, the pixel values
-     * to deal with negative results. It takes all pixel values, calculates the range the pixel values
-     * are in, and shifts them, potentially squishing or squeezing the range with a scale factor, into
-     * the range 0 to 255. Note, this always makes it fully opaque in alpha.
-     * </p>
-     * 
-     * @param input The image to be offset to the range 0 to 255. 
-     * @return The offset image.
-     */
-    private static BufferedImage offset(int[][] input) {
-        int width = input.length;
-        int height = input[0].length;
-        // Used to store the min and max pixel values.
-        int min = 0;
-        int max = 1;
-        // Create a new BufferedImage to store the offet image. 
-        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        // Loop through each pixel in the image to find the minimum and maximum value.
-        for (int y = 1; y < height - 1; y++) {
-            for (int x = 1; x < width - 1; x++) {
-                int val = input[x][y];
-                // Update max and min.
-                if (val < min) {
-                    min = val;
-                }  
-                if (val > max) {
-                    max = val;
-                }            
-            }
-        }
-        // Now, loop through the pixel values to offset and rescale them.
-        int offset = -min;
-        double scale = 255d / ((double) max - min);
-        // Finally, rescale pixel values.
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int val = input[x][y];
-                // Get the ARGB channels.
-                int newVal = (int)((val + offset) * scale);
-                // Put the offset pixel value in output. Note, we keep fully opacity.
-                int pixel = 0xff000000 | (newVal << 16) | (newVal << 8) | newVal;
-                output.setRGB(x, y, pixel);
-            }
-        }
-        return output;
+    public BufferedImage apply(BufferedImage input, OperationContext context) {
+        return new SobelGradients(input, removeNoise, false, context).verticalImage();
     }
 
+    
      /**
       * <p>
      * This support method is used in the final stages of the filter after the offset and rescaling
@@ -283,14 +118,15 @@ public class SobelVerticalFilter implements ImageOperation, java.io.Serializable
      * @return The absolute image, i.e. white edges and black background.
      */
     private static BufferedImage absolute(BufferedImage input) {
-        int width = input.getWidth();
-        int height = input.getHeight();
+        PixelBuffer in = PixelBuffer.of(input);
+        int width = in.getWidth();
+        int height = in.getHeight();
         // Create output image.
-        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        PixelBuffer out = new PixelBuffer(width, height);
         // Now, loop through the pixel values to offset and rescale them.
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                int val = input.getRGB(x, y);
+                int val = in.get(x, y);
                 // Get the RGB channels.
                 int r = (val >> 16) & 0xff;
                 int g = (val >> 8) & 0xff;
@@ -301,10 +137,51 @@ public class SobelVerticalFilter implements ImageOperation, java.io.Serializable
                 int newB = (int)(Math.abs(b - 127) * (255d/127d));
                 // Put the offset pixel value in output. Note, we keep fully opacity.
                 int pixel = 0xff000000 | (newR << 16) | (newG << 8) | newB;
-                output.setRGB(x, y, pixel);
+                out.set(x, y, pixel);
             }
         }
-        return output;
+        return out.getImage();
+    }
+
+    /**
+     * <p>
+     * Check whether another object is a SobelVerticalFilter with the same noise removal setting.
+     * </p>
+     * 
+     * @param obj The object to compare to.
+     * @return True if the object is a SobelVerticalFilter with the same noise removal setting, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        SobelVerticalFilter other = (SobelVerticalFilter) obj;
+        return removeNoise == other.removeNoise;
+    }
+
+    /**
+     * <p>
+     * Get a hash code for this SobelVerticalFilter, consistent with {@link equals}.
+     * </p>
+     * 
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), removeNoise);
+    }
+
+    /**
+     * <p>
+     * Get a fingerprint of this SobelVerticalFilter made up of its noise removal setting.
+     * </p>
+     * 
+     * @return The fingerprint of this operation.
+     */
+    @Override
+    public String fingerprint() {
+        return "SobelVerticalFilter(removeNoise=" + removeNoise + ")";
     }
 
 }
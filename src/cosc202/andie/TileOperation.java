@@ -0,0 +1,116 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * <p>
+ * Interface for operations that can be applied to an image one tile at a time.
+ * </p>
+ *
+ * <p>
+ * Neighbourhood filters only need the pixels within a fixed distance (the halo) of each
+ * output pixel. A TileOperation is handed the pixels of one tile plus its halo at a time,
+ * with pixels beyond the edge of the image made up by its {@link BorderMode}, so no padded
+ * copy of the whole image is needed. The input and output are still whole images, as
+ * described in {@link TiledImage}.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see TiledImage
+ * @version 1.0
+ */
+public interface TileOperation extends ImageOperation {
+
+    /**
+     * <p>
+     * Get how far from an output pixel the operation reads input pixels.
+     * </p>
+     *
+     * @return The halo needed around each tile, in pixels.
+     */
+    public int getHalo();
+
+    /**
+     * <p>
+     * Get how pixels of the halo beyond the edges of the image are made up.
+     * </p>
+     *
+     * <p>
+     * By default, they take the value of the nearest edge pixel.
+     * </p>
+     *
+     * @return The border mode to read the halo with.
+     */
+    public default BorderMode getBorderMode() {
+        return BorderMode.CLAMP;
+    }
+
+    /**
+     * <p>
+     * Get the ARGB value of pixels beyond the edges of the image, if the border mode is
+     * {@link BorderMode#CONSTANT}.
+     * </p>
+     *
+     * <p>
+     * By default, this is transparent black.
+     * </p>
+     *
+     * @return The ARGB value of pixels beyond the edges.
+     */
+    public default int getBorderColour() {
+        return 0;
+    }
+
+    /**
+     * <p>
+     * Apply the operation to one tile.
+     * </p>
+     *
+     * <p>
+     * The source holds the ARGB pixels of the tile plus {@link getHalo} pixels on every side,
+     * row by row, so it is <code>width + 2 * halo</code> pixels wide. The destination is
+     * <code>width</code> pixels wide. Either array may be longer than needed.
+     * </p>
+     *
+     * <p>
+     * Tiles may be applied at the same time on different threads, each with its own arrays,
+     * so this must not change any state shared between calls.
+     * </p>
+     *
+     * @param src The ARGB pixels of the tile and its halo.
+     * @param dst The array to write the ARGB pixels of the resulting tile into.
+     * @param width The width of the tile, not including the halo.
+     * @param height The height of the tile, not including the halo.
+     */
+    public void applyTile(int[] src, int[] dst, int width, int height);
+
+    /**
+     * <p>
+     * Apply the operation to an image, one tile at a time.
+     * </p>
+     *
+     * @param input The image to apply the operation to.
+     * @return The resulting image, of type {@link BufferedImage#TYPE_INT_ARGB}.
+     */
+    public default BufferedImage apply(BufferedImage input) {
+        return new TiledImage(input).apply(this).getImage();
+    }
+
+    /**
+     * <p>
+     * Apply the operation to an image, one tile at a time, checking for cancelling and
+     * reporting progress after each tile.
+     * </p>
+     *
+     * @param input The image to apply the operation to.
+     * @param context The context to apply the operation in.
+     * @return The resulting image, of type {@link BufferedImage#TYPE_INT_ARGB}.
+     * @throws java.util.concurrent.CancellationException If the context is cancelled.
+     */
+    public default BufferedImage apply(BufferedImage input, OperationContext context) {
+        return new TiledImage(input).apply(this, context).getImage();
+    }
+}
@@ -0,0 +1,340 @@
+package cosc202.andie;
+
+import java.awt.Rectangle;
+import java.awt.image.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.prefs.Preferences;
+
+/**
+ * <p>
+ * An image split up into a grid of square tiles.
+ * </p>
+ *
+ * <p>
+ * A TiledImage is a view onto a {@link BufferedImage}, through a {@link PixelBuffer}, which can read any region of the image
+ * (including regions hanging over the edge, which are made up by the operation's {@link BorderMode})
+ * and apply a {@link TileOperation} one tile at a time. Each tile's halo is copied out of the
+ * image as it is worked on, so no padded copy of the whole image is made.
+ * </p>
+ *
+ * <p>
+ * This saves the padding, not the image itself: the output is still a whole
+ * {@link BufferedImage#TYPE_INT_ARGB} image the size of the input, and images that are not
+ * TYPE_INT_ARGB are converted to a whole copy once, when the view is made. So the memory
+ * needed still grows with the area of the image, as the input and output plus a tile and
+ * halo for each thread.
+ * </p>
+ *
+ * <p>
+ * Since every tile reads its own halo from the input and writes only its own pixels of the
+ * output, tiles are applied in parallel on a shared {@link ForkJoinPool}. The number of threads
+ * is read from the preferences under {@link #THREADS_KEY}, and defaults to the number of
+ * processors. The result is the same whichever order the tiles are done in.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @version 1.0
+ */
+public class TiledImage {
+
+    /** The width and height of tiles used if none is given. */
+    public static final int DEFAULT_TILE_SIZE = 256;
+    /** The preferences key holding the number of threads to apply tiles on, or 0 for one per processor. */
+    public static final String THREADS_KEY = "renderThreads";
+
+    /** The pool shared by every TiledImage to apply tiles on. */
+    private static ForkJoinPool pool;
+
+    /** The image the tiles are read from and written to. */
+    private BufferedImage image;
+    /** The pixels of the image, or of a TYPE_INT_ARGB copy of it. */
+    private PixelBuffer pixels;
+    /** The width and height of each tile. Tiles on the right and bottom edges may be smaller. */
+    private int tileSize;
+
+    /**
+     * <p>
+     * Create a new TiledImage view of an image, using the default tile size.
+     * </p>
+     *
+     * @param image The image to split into tiles.
+     */
+    public TiledImage(BufferedImage image) {
+        this(image, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * <p>
+     * Create a new TiledImage view of an image.
+     * </p>
+     *
+     * @param image The image to split into tiles.
+     * @param tileSize The width and height of each tile.
+     */
+    public TiledImage(BufferedImage image, int tileSize) {
+        this.image = image;
+        this.pixels = PixelBuffer.of(image);
+        this.tileSize = Math.max(1, tileSize);
+    }
+
+    /**
+     * <p>
+     * Get the pool tiles are applied on, creating it with the number of threads set in the
+     * preferences if needed.
+     * </p>
+     *
+     * @return The shared pool.
+     */
+    public static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            Preferences prefs = Preferences.userNodeForPackage(Andie.class);
+            int threads = prefs.getInt(THREADS_KEY, 0);
+            if (threads <= 0) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    /**
+     * <p>
+     * Get the image this is a view of.
+     * </p>
+     *
+     * @return The underlying image.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * <p>
+     * Get the width and height of each tile.
+     * </p>
+     *
+     * @return The tile size.
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * <p>
+     * Get the number of columns of tiles.
+     * </p>
+     *
+     * @return The number of tiles across the image.
+     */
+    public int getTilesAcross() {
+        return (image.getWidth() + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * <p>
+     * Get the number of rows of tiles.
+     * </p>
+     *
+     * @return The number of tiles down the image.
+     */
+    public int getTilesDown() {
+        return (image.getHeight() + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * <p>
+     * Get the region of the image covered by a tile.
+     * </p>
+     *
+     * @param tileX The column of the tile.
+     * @param tileY The row of the tile.
+     * @return The bounds of the tile, clipped to the image.
+     */
+    public Rectangle getTileBounds(int tileX, int tileY) {
+        int x = tileX * tileSize;
+        int y = tileY * tileSize;
+        return new Rectangle(x, y, Math.min(tileSize, image.getWidth() - x), Math.min(tileSize, image.getHeight() - y));
+    }
+
+    /**
+     * <p>
+     * Read the ARGB pixels of a region of the image, row by row.
+     * </p>
+     *
+     * <p>
+     * The region may hang over the edges of the image, in which case the missing pixels are
+     * copied from the nearest edge pixel.
+     * </p>
+     *
+     * @param x The left of the region.
+     * @param y The top of the region.
+     * @param width The width of the region.
+     * @param height The height of the region.
+     * @param buffer An array to read into, or null (or too short) to allocate a new one.
+     * @return The array holding the pixels of the region.
+     * @see PixelBuffer#readRegion(int, int, int, int, int[])
+     */
+    public int[] readRegion(int x, int y, int width, int height, int[] buffer) {
+        return pixels.readRegion(x, y, width, height, buffer);
+    }
+
+    /**
+     * <p>
+     * Write the ARGB pixels of a region of the image, row by row.
+     * </p>
+     *
+     * @param x The left of the region.
+     * @param y The top of the region.
+     * @param width The width of the region.
+     * @param height The height of the region.
+     * @param region The pixels to write, <code>width</code> to a row.
+     */
+    public void writeRegion(int x, int y, int width, int height, int[] region) {
+        pixels.writeRegion(x, y, width, height, region);
+    }
+
+    /**
+     * <p>
+     * Apply a {@link TileOperation} to this image, one tile at a time, on the shared pool.
+     * </p>
+     *
+     * @param op The operation to apply.
+     * @return A new TiledImage holding the result, backed by a {@link BufferedImage#TYPE_INT_ARGB} image.
+     */
+    public TiledImage apply(TileOperation op) {
+        return apply(op, getPool());
+    }
+
+    /**
+     * <p>
+     * Apply a {@link TileOperation} to this image, one tile at a time, on the given pool.
+     * </p>
+     *
+     * @param op The operation to apply.
+     * @param pool The pool to apply the tiles on.
+     * @return A new TiledImage holding the result, backed by a {@link BufferedImage#TYPE_INT_ARGB} image.
+     */
+    public TiledImage apply(TileOperation op, ForkJoinPool pool) {
+        return apply(op, new OperationContext(pool));
+    }
+
+    /**
+     * <p>
+     * Apply a {@link TileOperation} to this image, one tile at a time, on the pool of a context.
+     * </p>
+     *
+     * <p>
+     * The context is checked before each tile, and told the fraction of tiles done after each.
+     * </p>
+     *
+     * @param op The operation to apply.
+     * @param context The context to apply the operation in.
+     * @return A new TiledImage holding the result, backed by a {@link BufferedImage#TYPE_INT_ARGB} image.
+     * @throws CancellationException If the context is cancelled.
+     */
+    public TiledImage apply(TileOperation op, OperationContext context) {
+        ForkJoinPool pool = context.getPool();
+        BufferedImage output = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        TiledImage result = new TiledImage(output, tileSize);
+        int tiles = getTilesAcross() * getTilesDown();
+        // Split into a few more pieces than there are threads, so that threads which finish early can steal work.
+        int grain = Math.max(1, tiles / (4 * pool.getParallelism()));
+        TileTask task = new TileTask(op, result, 0, tiles, grain, context, new AtomicInteger(), tiles);
+        if (tiles <= grain) {
+            // Not worth handing over to the pool.
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * A task applying an operation to a run of tiles, numbered row by row.
+     * </p>
+     *
+     * <p>
+     * Runs longer than the grain are split in half, and shorter ones are done one tile after
+     * another, reusing the same buffers.
+     * </p>
+     */
+    private class TileTask extends RecursiveAction {
+
+        /** The operation to apply. */
+        private TileOperation op;
+        /** The image to write the results into. */
+        private TiledImage result;
+        /** The first tile of the run. */
+        private int start;
+        /** The tile after the last tile of the run. */
+        private int end;
+        /** The number of tiles below which the run is not split. */
+        private int grain;
+        /** The context the operation is applied in. */
+        private OperationContext context;
+        /** The number of tiles of the whole image done so far. */
+        private AtomicInteger done;
+        /** The number of tiles in the whole image. */
+        private int tiles;
+
+        /**
+         * <p>
+         * Create a new TileTask.
+         * </p>
+         *
+         * @param op The operation to apply.
+         * @param result The image to write the results into.
+         * @param start The first tile of the run.
+         * @param end The tile after the last tile of the run.
+         * @param grain The number of tiles below which the run is not split.
+         * @param context The context the operation is applied in.
+         * @param done The number of tiles of the whole image done so far.
+         * @param tiles The number of tiles in the whole image.
+         */
+        TileTask(TileOperation op, TiledImage result, int start, int end, int grain,
+                OperationContext context, AtomicInteger done, int tiles) {
+            this.op = op;
+            this.result = result;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+            this.context = context;
+            this.done = done;
+            this.tiles = tiles;
+        }
+
+        /**
+         * <p>
+         * Apply the operation to the run of tiles, splitting it up if it is long.
+         * </p>
+         */
+        @Override
+        protected void compute() {
+            if (end - start > grain) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new TileTask(op, result, start, middle, grain, context, done, tiles),
+                        new TileTask(op, result, middle, end, grain, context, done, tiles));
+                return;
+            }
+            int halo = op.getHalo();
+            BorderMode border = op.getBorderMode();
+            int colour = op.getBorderColour();
+            int[] src = null;
+            int[] dst = new int[tileSize * tileSize];
+            for (int tile = start; tile < end; tile++) {
+                context.checkCancelled();
+                Rectangle bounds = getTileBounds(tile % getTilesAcross(), tile / getTilesAcross());
+                src = pixels.readRegion(bounds.x - halo, bounds.y - halo, bounds.width + 2 * halo,
+                        bounds.height + 2 * halo, src, border, colour);
+                op.applyTile(src, dst, bounds.width, bounds.height);
+                result.writeRegion(bounds.x, bounds.y, bounds.width, bounds.height, dst);
+                context.progress((double) done.incrementAndGet() / tiles);
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package cosc202.andie;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.prefs.Preferences;
+
+/**
+ * <p>
+ * Decides whether pixel loops use the Java Vector API, and checks it against the plain loops if asked.
+ * </p>
+ *
+ * <p>
+ * The vector loops in <code>VectorKernels</code> process a whole vector of pixels at once, but
+ * they need the <code>jdk.incubator.vector</code> module. So they are kept in a separate source
+ * folder, <code>src-vector</code>, which is only compiled with
+ * <code>--add-modules jdk.incubator.vector</code>, and are looked up by name with {@link kernel}
+ * rather than referred to directly. ANDIE builds and runs without them, and without the module
+ * (or the class) every pixel goes through the plain (scalar) loop as before.
+ * </p>
+ *
+ * <p>
+ * Which path is used is read from the preferences under {@link #MODE_KEY}. In {@link Mode#CHECK}
+ * mode, every row done by the vector path is done again by the scalar path, and an
+ * {@link IllegalStateException} is thrown if they give different pixels.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @version 1.0
+ */
+public class VectorSupport {
+
+    /** The preference holding the name of the {@link Mode} to use. */
+    public static final String MODE_KEY = "vectorMode";
+
+    /** The name of the class holding the vector loops, which is only there in builds with the Vector API. */
+    private static final String KERNELS_CLASS = "cosc202.andie.VectorKernels";
+
+    /** The class holding the vector loops, or null if it or the Vector API module is missing. */
+    private static final Class<?> KERNELS = findKernels();
+
+    /** Whether the vector loops can be used. */
+    private static final boolean AVAILABLE = KERNELS != null;
+
+    /** The mode in use, or null if it has not been read from the preferences yet. */
+    private static Mode mode;
+
+    /**
+     * <p>
+     * The ways pixel loops can be run.
+     * </p>
+     */
+    public enum Mode {
+        /** Always use the scalar loops. */
+        OFF,
+        /** Use the vector loops where the Vector API is available. */
+        ON,
+        /** Use the vector loops, and check every row against the scalar loops. */
+        CHECK
+    }
+
+    /**
+     * <p>
+     * A loop over one row of pixels.
+     * </p>
+     */
+    @FunctionalInterface
+    public interface RowKernel {
+
+        /**
+         * <p>
+         * Work out a run of output pixels.
+         * </p>
+         *
+         * @param src The array to read pixels from.
+         * @param srcFrom The index of the first pixel to read. For neighbourhood operations,
+         *                this is the top left of the neighbourhood of the first output pixel.
+         * @param srcStride The distance in <code>src</code> from one row to the next.
+         * @param dst The array to write pixels to, which may be <code>src</code> for point operations.
+         * @param dstFrom The index of the first pixel to write.
+         * @param length The number of pixels to write.
+         * @return The number of pixels actually written, from the start of the run.
+         */
+        int apply(int[] src, int srcFrom, int srcStride, int[] dst, int dstFrom, int length);
+    }
+
+    /**
+     * <p>
+     * Find the class holding the vector loops, if it was compiled and the Vector API module
+     * has been loaded.
+     * </p>
+     *
+     * @return The class, or null if the vector loops cannot be used.
+     */
+    private static Class<?> findKernels() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return Class.forName(KERNELS_CLASS);
+        } catch (ClassNotFoundException | LinkageError ex) {
+            // Built without the src-vector folder.
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Check whether the vector loops can be used.
+     * </p>
+     *
+     * @return True if ANDIE was built with the vector loops and run with
+     * <code>--add-modules jdk.incubator.vector</code>.
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * <p>
+     * Get the mode in use, reading it from the preferences the first time.
+     * </p>
+     *
+     * @return The mode in use.
+     */
+    public static synchronized Mode getMode() {
+        if (mode == null) {
+            Preferences prefs = Preferences.userNodeForPackage(Andie.class);
+            try {
+                mode = Mode.valueOf(prefs.get(MODE_KEY, Mode.ON.name()));
+            } catch (IllegalArgumentException ex) {
+                mode = Mode.ON;
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * <p>
+     * Change the mode in use, for this run of ANDIE only.
+     * </p>
+     *
+     * @param newMode The mode to use.
+     */
+    public static synchronized void setMode(Mode newMode) {
+        mode = newMode;
+    }
+
+    /**
+     * <p>
+     * Check whether the vector loops should be used.
+     * </p>
+     *
+     * @return True if the Vector API is available and not turned off.
+     */
+    public static boolean isEnabled() {
+        return AVAILABLE && getMode() != Mode.OFF;
+    }
+
+    /**
+     * <p>
+     * Look up a vector loop by name, fixing any parameters it has beyond the usual ones.
+     * </p>
+     *
+     * <p>
+     * Loops are looked up once per image or tile rather than once per row, as binding the
+     * parameters is not free.
+     * </p>
+     *
+     * @param name The name of the loop in <code>VectorKernels</code>, such as <code>"grey"</code>.
+     * @param parameters The values of the loop's parameters after the usual six, in order.
+     * @return The loop, or null if the vector loops cannot be used.
+     * @throws IllegalArgumentException If there is no such loop, or the parameters do not fit it.
+     */
+    public static RowKernel kernel(String name, Object... parameters) {
+        if (!AVAILABLE) {
+            return null;
+        }
+        MethodHandle bound;
+        try {
+            MethodHandle loop = null;
+            for (Method method : KERNELS.getMethods()) {
+                if (method.getName().equals(name)) {
+                    loop = MethodHandles.publicLookup().unreflect(method);
+                }
+            }
+            if (loop == null) {
+                throw new IllegalArgumentException("No vector loop called " + name);
+            }
+            bound = MethodHandles.insertArguments(loop, 6, parameters).asType(MethodType.methodType(
+                    int.class, int[].class, int.class, int.class, int[].class, int.class, int.class));
+        } catch (IllegalAccessException | ClassCastException | WrongMethodTypeException ex) {
+            throw new IllegalArgumentException("Vector loop " + name + " does not fit its parameters", ex);
+        }
+        return (src, srcFrom, srcStride, dst, dstFrom, length) -> {
+            try {
+                return (int) bound.invokeExact(src, srcFrom, srcStride, dst, dstFrom, length);
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new IllegalStateException(ex);
+            }
+        };
+    }
+
+    /**
+     * <p>
+     * Work out a row of pixels, using the vector loop for as much of it as it can do
+     * and the scalar loop for the rest.
+     * </p>
+     *
+     * <p>
+     * The vector loop is only called if {@link isEnabled} is true.
+     * </p>
+     *
+     * @param scalar The scalar loop, which must do the whole run it is given.
+     * @param vector The vector loop from {@link kernel}, which may leave some pixels at the end
+     * for the scalar loop, or null if there is none.
+     * @param src The array to read pixels from.
+     * @param srcFrom The index of the first pixel to read.
+     * @param srcStride The distance in <code>src</code> from one row to the next.
+     * @param dst The array to write pixels to.
+     * @param dstFrom The index of the first pixel to write.
+     * @param length The number of pixels to write.
+     * @throws IllegalStateException If checking, and the two loops give different pixels.
+     */
+    public static void applyRow(RowKernel scalar, RowKernel vector, int[] src, int srcFrom, int srcStride,
+            int[] dst, int dstFrom, int length) {
+        int done = 0;
+        if (vector != null && isEnabled()) {
+            if (getMode() == Mode.CHECK) {
+                // Work the row out the scalar way first, from a copy in case it is done in place.
+                int[] input = src;
+                int inputFrom = srcFrom;
+                if (src == dst) {
+                    input = Arrays.copyOfRange(src, srcFrom, srcFrom + length);
+                    inputFrom = 0;
+                }
+                int[] expected = new int[length];
+                scalar.apply(input, inputFrom, srcStride, expected, 0, length);
+                done = vector.apply(src, srcFrom, srcStride, dst, dstFrom, length);
+                for (int i = 0; i < done; i++) {
+                    if (expected[i] != dst[dstFrom + i]) {
+                        throw new IllegalStateException("Vector loop gave " + Integer.toHexString(dst[dstFrom + i])
+                                + " where the scalar loop gave " + Integer.toHexString(expected[i]));
+                    }
+                }
+            } else {
+                done = vector.apply(src, srcFrom, srcStride, dst, dstFrom, length);
+            }
+        }
+        scalar.apply(src, srcFrom + done, srcStride, dst, dstFrom + done, length - done);
+    }
+}
@@ -275,27 +275,18 @@ public class ViewActions {
 
                 // Set up slider for user to the zoom change.
                 JSlider jslider = new JSlider();
-                jslider.setMaximum(200);
-                jslider.setMinimum(50);
-                jslider.setMajorTickSpacing(50);
+                jslider.setMaximum((int) ImagePanel.MAX_ZOOM);
+                jslider.setMinimum((int) ImagePanel.MIN_ZOOM);
                 jslider.setValue(oldZoom);
+                // Label every 100%, as the range no longer starts at a round number.
+                jslider.setLabelTable(jslider.createStandardLabels(100, 100));
                 jslider.setPaintLabels(true);
-                jslider.setPaintTicks(true);
-
-                // Copy this here so that we still have reference to the actual EditableImage.
-                EditableImage actualImage = target.getImage();
 
                 // This part updates how the image looks when the slider is moved.
                 jslider.addChangeListener(new ChangeListener() {
                     public void stateChanged(ChangeEvent ce) {
-                        // Create a deep copy of the editable image (so that we don't change the actual editable image)
-                        EditableImage copyImage = actualImage.deepCopyEditableImage();
-                        // Set the target to have this new copy of the actual image.
-                        target.setImage(copyImage);
-                        // Apply the brightness change to the new copy of the actual image.
-                        if (jslider.getValue() == oldZoom) { // No change to apply.
-                            return;
-                        }
+                        // The zoom only changes how the panel draws the image, so the image itself
+                        // is left alone rather than copied for every tick of the slider.
                         target.setZoom(jslider.getValue());
                         target.repaint();
                         target.getParent().revalidate();
@@ -307,18 +298,12 @@ public class ViewActions {
                     int option = JOptionPane.showOptionDialog(Andie.frame, jslider, LanguageActions.getLocaleString("zoomChange"),
                             JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
                     if (option == JOptionPane.CANCEL_OPTION || option == JOptionPane.CLOSED_OPTION) {
-                        // Set the image in target back to the actual image and repaint.
-                        target.setImage(actualImage);
-                        // Reset the zoom value.
+                        // Reset the zoom value and repaint.
                         target.setZoom(zoom);
                         target.repaint();
                         target.getParent().revalidate();
                         return;
                     }
-                    if (option == JOptionPane.OK_OPTION) {
-                        // Set the image in the target back to the actual image.
-                        target.setImage(actualImage);
-                    }
                 } catch (HeadlessException ex) {
                     // Headless exception, thrown when the code is dependent on a keyboard or mouse. 
                     // Won't happen for our users, so just exit.
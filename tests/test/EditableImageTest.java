@@ -0,0 +1,331 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.imageio.*;
+import javax.swing.SwingUtilities;
+import cosc202.andie.*;
+
+/**
+ * <p>
+ * Tests to check that moving through the history of an {@link EditableImage}
+ * gives the same images as applying the operations from scratch.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class EditableImageTest {
+
+    /**
+     * <p>
+     * This is a method to check if two buffered images are equal. That is, if they
+     * have the same width and height, and they have the same ARGB values for all pixels.
+     * </p>
+     *
+     * @param image1 The BufferedImage we would like to compare another BufferedImage to.
+     * @param image2 The other BufferedImage we would like to compare image 1 with.
+     * @return true if the images are 'equal', false otherwise.
+     */
+    private static boolean bufferedImagesEqual(BufferedImage image1, BufferedImage image2) {
+        if (image1.getWidth() != image2.getWidth() || image1.getHeight() != image2.getHeight()) {
+            return false;
+        }
+        for (int x = 0; x < image1.getWidth(); x++) {
+            for (int y = 0; y < image1.getHeight(); y++) {
+                if (image1.getRGB(x, y) != image2.getRGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Read in the test image.
+     * </p>
+     *
+     * @return The test image.
+     */
+    private static BufferedImage readTestImage() {
+        try {
+            URL path = EditableImageTest.class.getResource("test.png");
+            return ImageIO.read(path);
+        } catch (Exception e) {
+            // This will not happen by the way it is set up.
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Create a dummy {@link EditableImage} of the test image with no operations applied.
+     * </p>
+     *
+     * @return The new EditableImage.
+     */
+    private static EditableImage newEditableImage() {
+        BufferedImage original = readTestImage();
+        return new EditableImage(original, readTestImage(), new Stack<ImageOperation>(),
+                new Stack<ImageOperation>(), new Stack<ImageOperation>(), "", ".ops", null);
+    }
+
+    /**
+     * <p>
+     * Apply a number of operations to a fresh copy of the test image.
+     * </p>
+     *
+     * @param ops The operations to apply.
+     * @param count The number of those operations to apply.
+     * @return The resulting image.
+     */
+    private static BufferedImage replay(ImageOperation[] ops, int count) {
+        BufferedImage image = readTestImage();
+        for (int i = 0; i < count; i++) {
+            image = ops[i].apply(image);
+        }
+        return image;
+    }
+
+    /**
+     * <p>
+     * Test to make sure that undoing and redoing operations one at a time gives the
+     * same image as applying the remaining operations to the original.
+     * </p>
+     */
+    @Test
+    public void UndoRedoMatchesReplayTest() {
+        ImageOperation[] ops = {
+            new GaussianBlurFilter(3), new ConvertToGrey(), new SharpenFilter(1),
+            new BrightnessFilter(20), new MeanFilter(2), new RotateRight()
+        };
+        EditableImage image = newEditableImage();
+        for (ImageOperation op : ops) {
+            image.apply(op);
+        }
+        for (int depth = ops.length - 1; depth >= 0; depth--) {
+            image.undo();
+            assertTrue(bufferedImagesEqual(replay(ops, depth), image.getCurrentImage()));
+        }
+        for (int depth = 1; depth <= ops.length; depth++) {
+            image.redo();
+            assertTrue(bufferedImagesEqual(replay(ops, depth), image.getCurrentImage()));
+        }
+        image.undoAll();
+        assertTrue(bufferedImagesEqual(readTestImage(), image.getCurrentImage()));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that jumping straight to steps in the history with
+     * {@link EditableImage#goTo(int)} gives the same image as applying that many
+     * operations to the original, and leaves the rest of the history to be redone.
+     * </p>
+     */
+    @Test
+    public void GoToMatchesReplayTest() {
+        ImageOperation[] ops = {
+            new MeanFilter(2), new ContrastFilter(30), new RotateLeft(),
+            new GaussianBlurFilter(2), new FlipHorizontal()
+        };
+        EditableImage image = newEditableImage();
+        for (ImageOperation op : ops) {
+            image.apply(op);
+        }
+        int[] steps = {2, 0, 5, 3, 4, 1, 5};
+        for (int step : steps) {
+            image.goTo(step);
+            assertEquals(step, image.getStep());
+            assertEquals(ops.length, image.getHistorySize());
+            assertTrue(bufferedImagesEqual(replay(ops, step), image.getCurrentImage()));
+        }
+
+        // Applying a new operation part way through the history must not reuse later results.
+        image.goTo(2);
+        image.apply(new ConvertToGrey());
+        ImageOperation[] branch = { ops[0], ops[1], new ConvertToGrey() };
+        assertTrue(bufferedImagesEqual(replay(branch, 3), image.getCurrentImage()));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that redoing operations tells listeners about each one in turn, without
+     * holding the image's lock while it does.
+     * </p>
+     */
+    @Test
+    public void RedoTellsListenersTest() {
+        EditableImage image = newEditableImage();
+        image.apply(new ConvertToGrey());
+        image.apply(new RotateLeft());
+        image.goTo(0);
+        List<ImageOperation> redone = new ArrayList<ImageOperation>();
+        image.addPropertyChangeListener("ops", e -> {
+            assertFalse(Thread.holdsLock(image));
+            @SuppressWarnings("unchecked")
+            Stack<ImageOperation> ops = (Stack<ImageOperation>) e.getNewValue();
+            redone.add(ops.peek());
+        });
+        image.goTo(2);
+        assertEquals(2, redone.size());
+        assertTrue(redone.get(0) instanceof ConvertToGrey);
+        assertTrue(redone.get(1) instanceof RotateLeft);
+    }
+
+    /**
+     * <p>
+     * Test to make sure that an image rendered in the background ends up the same as applying
+     * the operations from scratch, when each change replaces the render for the one before.
+     * </p>
+     */
+    @Test
+    public void BackgroundRenderMatchesReplayTest() {
+        ImageOperation[] ops = {
+            new GaussianBlurFilter(4), new MedianFilter(2), new ConvertToGrey(),
+            new RotateLeft(), new SharpenFilter(1)
+        };
+        EditableImage image = newEditableImage();
+        image.setBackgroundRendering(true);
+        for (ImageOperation op : ops) {
+            image.apply(op);
+        }
+        image.undo();
+        image.undo();
+        image.redo();
+        assertEquals(4, image.getStep());
+        image.finishRendering();
+        assertTrue(bufferedImagesEqual(replay(ops, 4), image.getCurrentImage()));
+
+        image.goTo(1);
+        image.apply(new ConvertToGrey());
+        image.finishRendering();
+        ImageOperation[] branch = { ops[0], new ConvertToGrey() };
+        assertTrue(bufferedImagesEqual(replay(branch, 2), image.getCurrentImage()));
+
+        // A copy for previews starts from the finished image and renders straight away.
+        EditableImage copy = image.deepCopyEditableImage();
+        copy.apply(new RotateRight());
+        ImageOperation[] preview = { ops[0], new ConvertToGrey(), new RotateRight() };
+        assertTrue(bufferedImagesEqual(replay(preview, 3), copy.getCurrentImage()));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that when a render in the background fails, the failure is passed on
+     * and the image is left as it was, until a later render succeeds.
+     * </p>
+     *
+     * @throws InterruptedException If the test is interrupted while waiting.
+     */
+    @Test
+    public void BackgroundRenderFailureTest() throws InterruptedException {
+        EditableImage image = newEditableImage();
+        image.setBackgroundRendering(true);
+        BufferedImage before = image.getCurrentImage();
+        image.apply(input -> {
+            throw new IllegalStateException("Broken operation");
+        });
+        image.finishRendering();
+        long timeout = System.currentTimeMillis() + 10000;
+        while (image.getRenderError() == null && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals("Broken operation", image.getRenderError().getMessage());
+        assertTrue(image.getCurrentImage() == before);
+
+        image.undo();
+        image.apply(new ConvertToGrey());
+        image.finishRendering();
+        assertEquals(null, image.getRenderError());
+        assertTrue(bufferedImagesEqual(replay(new ImageOperation[] { new ConvertToGrey() }, 1), image.getCurrentImage()));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that an action waiting for a render in the background is done on the
+     * event dispatch thread, once the image is the result of every operation.
+     * </p>
+     *
+     * @throws Exception If the action is not done.
+     */
+    @Test
+    public void WhenRenderedTest() throws Exception {
+        EditableImage image = newEditableImage();
+        image.setBackgroundRendering(true);
+        image.apply(new GaussianBlurFilter(6));
+        image.apply(new ConvertToGrey());
+        CompletableFuture<BufferedImage> seen = new CompletableFuture<BufferedImage>();
+        SwingUtilities.invokeAndWait(() -> image.whenRendered(() -> {
+            assertTrue(SwingUtilities.isEventDispatchThread());
+            seen.complete(image.getCurrentImage());
+        }));
+        ImageOperation[] ops = { new GaussianBlurFilter(6), new ConvertToGrey() };
+        assertTrue(bufferedImagesEqual(replay(ops, 2), seen.get(10, TimeUnit.SECONDS)));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a checkpoint handed out by a {@link CheckpointStore} can be
+     * changed without changing the checkpoint itself.
+     * </p>
+     */
+    @Test
+    public void CheckpointRestoreIsCopyTest() {
+        CheckpointStore store = new CheckpointStore(Long.MAX_VALUE);
+        BufferedImage image = readTestImage();
+        store.recordCost(1, Long.MAX_VALUE / 2);
+        store.offer(1, image);
+        assertEquals(1, store.nearest(3));
+
+        BufferedImage restored = store.restore(1);
+        new ConvertToGrey().apply(restored);
+        new ConvertToGrey().apply(image);
+        assertTrue(bufferedImagesEqual(readTestImage(), store.restore(1)));
+
+        store.invalidateFrom(1);
+        assertEquals(0, store.nearest(3));
+        assertEquals(0, store.getUsedBytes());
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a {@link CheckpointStore} never goes over its budget, and
+     * keeps the checkpoints that save the most replay time.
+     * </p>
+     */
+    @Test
+    public void CheckpointBudgetTest() {
+        BufferedImage image = readTestImage();
+        long bytes = CheckpointStore.sizeOf(image);
+
+        CheckpointStore none = new CheckpointStore(0);
+        none.recordCost(1, Long.MAX_VALUE / 2);
+        none.offer(1, image);
+        assertEquals(0, none.size());
+
+        CheckpointStore store = new CheckpointStore(2 * bytes);
+        long slow = 1000L * 1000 * 1000 * 1000;
+        store.recordCost(1, slow);
+        store.offer(1, image);
+        store.recordCost(2, slow / 100);
+        store.offer(2, image);
+        store.recordCost(3, slow);
+        store.offer(3, image);
+        assertEquals(2, store.size());
+        assertTrue(store.getUsedBytes() <= store.getBudgetBytes());
+        assertEquals(3, store.nearest(3));
+        assertEquals(1, store.nearest(2));
+        assertFalse(store.nearest(1) == 0);
+    }
+}
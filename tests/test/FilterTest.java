@@ -1,5 +1,7 @@
 package tests.test;
 
+import static org.junit.Assert.assertTrue;
+
 import org.junit.jupiter.api.Test;
 import java.awt.image.*;
 import cosc202.andie.*;
@@ -173,6 +175,50 @@ public class FilterTest {
         assert (bufferedImagesEqual(expected, actual));
     }
 
+    /**
+     * <p>
+     * Test to make sure that {@link MedianFilter} picks the same median as sorting
+     * each neighbourhood would, including for partly transparent pixels, whose alpha
+     * values are ordered as signed bytes.
+     * </p>
+     */
+    @Test
+    public void MedianMatchesSortingTest() {
+        BufferedImage original = new BufferedImage(37, 29, BufferedImage.TYPE_INT_ARGB);
+        java.util.Random random = new java.util.Random(202);
+        for (int y = 0; y < original.getHeight(); y++) {
+            for (int x = 0; x < original.getWidth(); x++) {
+                original.setRGB(x, y, random.nextInt());
+            }
+        }
+        for (int radius = 1; radius <= 4; radius++) {
+            BufferedImage actual = new MedianFilter(radius).apply(original);
+            int size = 2 * radius + 1;
+            int[][] channels = new int[4][size * size];
+            for (int y = 0; y < original.getHeight(); y++) {
+                for (int x = 0; x < original.getWidth(); x++) {
+                    int i = 0;
+                    for (int j = -radius; j <= radius; j++) {
+                        for (int k = -radius; k <= radius; k++, i++) {
+                            int argb = original.getRGB(Math.min(Math.max(x + k, 0), original.getWidth() - 1),
+                                    Math.min(Math.max(y + j, 0), original.getHeight() - 1));
+                            channels[0][i] = (argb & 0xFF000000) >> 24;
+                            channels[1][i] = (argb & 0x00FF0000) >> 16;
+                            channels[2][i] = (argb & 0x0000FF00) >> 8;
+                            channels[3][i] = (argb & 0x000000FF);
+                        }
+                    }
+                    int expected = 0;
+                    for (int[] channel : channels) {
+                        java.util.Arrays.sort(channel);
+                        expected = (expected << 8) | (channel[channel.length / 2] & 0xFF);
+                    }
+                    assert (expected == actual.getRGB(x, y));
+                }
+            }
+        }
+    }
+
     /**
      * <p>
      * Test to make sure that when an image is blurred by
@@ -667,4 +713,40 @@ public class FilterTest {
         assert (bufferedImagesEqual(expected, actual));
     }
 
+    /**
+     * <p>
+     * Test to make sure that embossing a tile does not allocate anything for each pixel.
+     * Only the scalar loop is checked, and it is run a few times first so that it is compiled.
+     * </p>
+     */
+    @Test
+    public void EmbossAllocationTest() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        int width = 256;
+        int height = 256;
+        int[] src = new int[(width + 2) * (height + 2)];
+        int[] dst = new int[width * height];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = i * 0x9e3779b9;
+        }
+        VectorSupport.Mode mode = VectorSupport.getMode();
+        VectorSupport.setMode(VectorSupport.Mode.OFF);
+        try {
+            for (int embossType = 1; embossType <= 8; embossType++) {
+                EmbossFilter emboss = new EmbossFilter(false, embossType);
+                for (int i = 0; i < 10; i++) {
+                    emboss.applyTile(src, dst, width, height);
+                }
+                long before = threads.getCurrentThreadAllocatedBytes();
+                emboss.applyTile(src, dst, width, height);
+                long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+                // A few small objects for each row are fine, but not one for every pixel.
+                assertTrue("Allocated " + allocated + " bytes", allocated < width * height);
+            }
+        } finally {
+            VectorSupport.setMode(mode);
+        }
+    }
+
 }
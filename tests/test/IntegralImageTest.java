@@ -0,0 +1,80 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.*;
+import cosc202.andie.*;
+
+/**
+ * <p>
+ * Tests to check that an {@link IntegralImage} gives the same sums as adding up
+ * the pixels one at a time.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class IntegralImageTest {
+
+    /**
+     * <p>
+     * Test to make sure that the sum of every channel over every rectangle of a
+     * small image is the same as adding the values up directly.
+     * </p>
+     */
+    @Test
+    public void SumMatchesDirectSumTest() {
+        int width = 11;
+        int height = 7;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i * 0x9e3779b9;
+        }
+        IntegralImage sums = new IntegralImage(pixels, width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                for (int h = 0; y + h <= height; h++) {
+                    for (int w = 0; x + w <= width; w++) {
+                        for (int channel = 0; channel < 4; channel++) {
+                            int expected = 0;
+                            for (int j = y; j < y + h; j++) {
+                                for (int i = x; i < x + w; i++) {
+                                    expected += (pixels[j * width + i] >> (8 * channel)) & 0xff;
+                                }
+                            }
+                            assertEquals(expected, sums.sum(channel, x, y, w, h));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a Mean filter leaves an image of one flat colour unchanged,
+     * whatever its radius.
+     * </p>
+     */
+    @Test
+    public void MeanKeepsFlatColourTest() {
+        BufferedImage image = new BufferedImage(30, 20, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, 0xc8643201);
+            }
+        }
+        for (int radius = 1; radius <= 10; radius++) {
+            BufferedImage result = new MeanFilter(radius).apply(image);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    assertEquals(0xc8643201, result.getRGB(x, y));
+                }
+            }
+        }
+    }
+}
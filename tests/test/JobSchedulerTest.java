@@ -0,0 +1,169 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import cosc202.andie.*;
+import cosc202.andie.JobScheduler.Priority;
+
+/**
+ * <p>
+ * Tests to check that a {@link JobScheduler} runs the most urgent jobs first, pauses less
+ * urgent ones and resumes them afterwards, and drops jobs that have been superseded.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class JobSchedulerTest {
+
+    /**
+     * <p>
+     * Test to make sure that queued jobs start in order of class, then in the order they were
+     * submitted, and that the queue depths count them.
+     * </p>
+     *
+     * @throws Exception If a job does not finish.
+     */
+    @Test
+    public void MostUrgentFirstTest() throws Exception {
+        JobScheduler scheduler = new JobScheduler(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        Future<Void> blocker = scheduler.submit("blocker", Priority.PREVIEW, context -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await(10, TimeUnit.SECONDS);
+        List<Future<Void>> jobs = new ArrayList<Future<Void>>();
+        jobs.add(scheduler.submit("b", Priority.RENDER, context -> order.add("render 1")));
+        jobs.add(scheduler.submit("c", Priority.PREVIEW, context -> order.add("preview")));
+        jobs.add(scheduler.submit("d", Priority.RENDER, context -> order.add("render 2")));
+        assertEquals(2, scheduler.getQueueDepth(Priority.RENDER));
+        assertEquals(1, scheduler.getQueueDepth(Priority.PREVIEW));
+        assertEquals(1, scheduler.getRunningCount(Priority.PREVIEW));
+
+        release.countDown();
+        blocker.get(10, TimeUnit.SECONDS);
+        for (Future<Void> job : jobs) {
+            job.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of("preview", "render 1", "render 2"), order);
+        assertEquals(0, scheduler.getQueueDepth(Priority.RENDER));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a preview submitted while a render is running pauses the render,
+     * even with room left in the budget, runs on the scheduler's pool, and then the render
+     * carries on from where it stopped rather than starting again.
+     * </p>
+     *
+     * @throws Exception If a job does not finish.
+     */
+    @Test
+    public void PreviewPreemptsRenderTest() throws Exception {
+        JobScheduler scheduler = new JobScheduler(2);
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        Future<Void> render = scheduler.submit("image", Priority.RENDER, context -> {
+            order.add("render");
+            started.countDown();
+            // Stands in for a long render, which checks as it goes until the preview has run.
+            while (order.size() == 1) {
+                context.checkCancelled();
+                Thread.onSpinWait();
+            }
+            order.add("render resumed");
+        });
+        started.await(10, TimeUnit.SECONDS);
+        int[] seen = new int[2];
+        Future<Void> preview = scheduler.submit("copy", Priority.PREVIEW, context -> {
+            seen[0] = scheduler.getPausedCount(Priority.RENDER);
+            seen[1] = context.getPool().getParallelism();
+            order.add("preview");
+        });
+        preview.get(10, TimeUnit.SECONDS);
+        render.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("render", "preview", "render resumed"), order);
+        assertEquals(1, seen[0]);
+        assertEquals(2, seen[1]);
+        assertEquals(0, scheduler.getPausedCount(Priority.RENDER));
+        assertEquals(1, scheduler.getPreemptedCount(Priority.RENDER));
+        assertEquals(0, scheduler.getPreemptedCount(Priority.PREVIEW));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a job for the same owner and class as a queued one replaces it,
+     * and that one for the same owner but a different class does not.
+     * </p>
+     *
+     * @throws Exception If a job does not finish.
+     */
+    @Test
+    public void SupersededJobsCoalesceTest() throws Exception {
+        JobScheduler scheduler = new JobScheduler(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        Future<Void> blocker = scheduler.submit("blocker", Priority.PREVIEW, context -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await(10, TimeUnit.SECONDS);
+        Object image = new Object();
+        Future<Void> first = scheduler.submit(image, Priority.RENDER, context -> order.add("first"));
+        Future<Void> second = scheduler.submit(image, Priority.RENDER, context -> order.add("second"));
+        Future<Void> preview = scheduler.submit(image, Priority.PREVIEW, context -> order.add("preview"));
+        assertTrue(first.isCancelled());
+        assertEquals(1, scheduler.getCoalescedCount(Priority.RENDER));
+        assertEquals(1, scheduler.getQueueDepth(Priority.RENDER));
+
+        release.countDown();
+        blocker.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        preview.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("preview", "second"), order);
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a job throwing an error, such as running out of memory, fails its
+     * future and gives its place in the budget back, so that the next job still runs.
+     * </p>
+     *
+     * @throws Exception If a job does not finish.
+     */
+    @Test
+    public void ErrorFreesBudgetTest() throws Exception {
+        JobScheduler scheduler = new JobScheduler(1);
+        Future<Void> failed = scheduler.submit("image", Priority.RENDER, context -> {
+            throw new OutOfMemoryError("Stands in for a render too big to fit");
+        });
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+        assertTrue(thrown.getCause() instanceof OutOfMemoryError);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        Future<Void> next = scheduler.submit("image", Priority.RENDER, context -> order.add("next"));
+        next.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("next"), order);
+        assertEquals(0, scheduler.getRunningCount(Priority.RENDER));
+    }
+}
@@ -0,0 +1,125 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.*;
+import cosc202.andie.*;
+
+/**
+ * <p>
+ * Tests to check that a {@link MipPyramid} halves images correctly, picks the right level for a
+ * scale, and is brought up to date correctly when only part of the image changes.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class MipPyramidTest {
+
+    /**
+     * <p>
+     * Test to make sure that each level averages 2x2 blocks of the one before, with odd rows and
+     * columns at the edge averaged with themselves, and that levels are picked by scale.
+     * </p>
+     */
+    @Test
+    public void LevelsAverageBlocksTest() {
+        BufferedImage image = new BufferedImage(5, 3, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                image.setRGB(x, y, 0xff000000 | (x * 40) << 16 | (y * 60) << 8 | 10);
+            }
+        }
+        MipPyramid pyramid = new MipPyramid(image);
+        // 5x3, 3x2, 2x1, then 1x1.
+        assertEquals(4, pyramid.getLevelCount());
+        BufferedImage half = pyramid.getLevel(1);
+        assertEquals(3, half.getWidth());
+        assertEquals(2, half.getHeight());
+        // The top left covers columns 0 and 1 and rows 0 and 1.
+        assertEquals(0xff000000 | 20 << 16 | 30 << 8 | 10, half.getRGB(0, 0));
+        // The bottom right only covers column 4 and row 2.
+        assertEquals(0xff000000 | 160 << 16 | 120 << 8 | 10, half.getRGB(2, 1));
+        assertEquals(1, pyramid.getLevel(3).getWidth());
+
+        assertEquals(0, pyramid.levelFor(2));
+        assertEquals(0, pyramid.levelFor(0.75));
+        assertEquals(1, pyramid.levelFor(0.5));
+        assertEquals(1, pyramid.levelFor(0.3));
+        assertEquals(2, pyramid.levelFor(0.25));
+        assertEquals(3, pyramid.levelFor(0.01));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that transparent pixels do not darken the opaque pixels they are
+     * averaged with.
+     * </p>
+     */
+    @Test
+    public void TransparentPixelsWeightedTest() {
+        BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0xffff0000);
+        image.setRGB(1, 1, 0xffff0000);
+        MipPyramid pyramid = new MipPyramid(image);
+        int pixel = pyramid.getLevel(1).getRGB(0, 0);
+        assertEquals(0x80, pixel >>> 24);
+        assertEquals(0xff0000, pixel & 0xffffff);
+    }
+
+    /**
+     * <p>
+     * Test to make sure that the changed part of an image is found, and that bringing the levels
+     * up to date for only that part gives the same levels as making them from scratch, for
+     * translucent images with odd sides and ones a single pixel wide or high.
+     * </p>
+     */
+    @Test
+    public void IncrementalUpdateMatchesRebuildTest() {
+        int[][] shapes = { { 203, 151 }, { 1, 37 }, { 37, 1 } };
+        for (int i = 0; i < shapes.length; i++) {
+            int width = shapes[i][0], height = shapes[i][1];
+            BufferedImage before = TestImages.translucentImage(width, height, 25 + i);
+            MipPyramid pyramid = new MipPyramid(before);
+            assertFalse(pyramid.isReady(1));
+            for (int level = 0; level < pyramid.getLevelCount(); level++) {
+                pyramid.getLevel(level);
+            }
+            assertTrue(pyramid.isReady(pyramid.getLevelCount() - 1));
+
+            Rectangle region = new Rectangle(width / 2, height / 3, Math.max(1, width / 7), Math.max(1, height / 10));
+            BufferedImage after = TestImages.translucentImage(width, height, 25 + i);
+            for (int y = region.y; y < region.y + region.height; y++) {
+                for (int x = region.x; x < region.x + region.width; x++) {
+                    after.setRGB(x, y, 0xff00ff00 | x);
+                }
+            }
+            Rectangle changed = MipPyramid.changedRegion(before, after);
+            assertEquals(region, changed);
+            assertEquals(null, MipPyramid.changedRegion(before, TestImages.translucentImage(width, height, 25 + i)));
+            pyramid.update(after, changed);
+            assertTrue(pyramid.getImage() == after);
+            // Only the levels made from the changed part need working out again.
+            assertTrue(pyramid.isReady(0));
+            assertFalse(pyramid.isReady(1));
+
+            MipPyramid rebuilt = new MipPyramid(after);
+            for (int level = 0; level < pyramid.getLevelCount(); level++) {
+                BufferedImage expected = rebuilt.getLevel(level);
+                BufferedImage actual = pyramid.getLevel(level);
+                for (int y = 0; y < expected.getHeight(); y++) {
+                    for (int x = 0; x < expected.getWidth(); x++) {
+                        assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+                    }
+                }
+            }
+        }
+    }
+}
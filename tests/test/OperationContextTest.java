@@ -0,0 +1,139 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.*;
+import cosc202.andie.*;
+
+/**
+ * <p>
+ * Tests to check that operations applied in an {@link OperationContext} can be cancelled,
+ * report their progress, and give the same image as without a context.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class OperationContextTest {
+
+    /**
+     * <p>
+     * Test to make sure that filters, resizes and macros applied in a cancelled context give up
+     * rather than returning an image, as do ones whose timeout has passed.
+     * </p>
+     */
+    @Test
+    public void CancelledContextStopsOperationsTest() {
+        BufferedImage image = TestImages.opaqueImage(300, 200, 20);
+        Macro macro = new Macro();
+        macro.add(new GaussianBlurFilter(2));
+        macro.add(new RotateLeft());
+        List<ImageOperation> ops = List.of(new MedianFilter(3), new SobelHorizontalFilter(false),
+                new ImageResize50(), new EmbossFilter(), macro);
+        OperationContext cancelled = new OperationContext();
+        cancelled.cancel();
+        OperationContext timedOut = new OperationContext();
+        timedOut.setTimeout(0, TimeUnit.MILLISECONDS);
+        for (ImageOperation op : ops) {
+            assertThrows(CancellationException.class, () -> op.apply(image, cancelled));
+            assertThrows(CancellationException.class, () -> op.apply(image, timedOut));
+        }
+        // Slices are cancelled along with the context they are a slice of.
+        assertTrue(cancelled.slice(0, 0.5).isCancelled());
+        assertFalse(new OperationContext().slice(0, 0.5).isCancelled());
+    }
+
+    /**
+     * <p>
+     * Test to make sure that operations written before contexts are still applied by the default
+     * adapter, which reports them done, and are not applied at all in a cancelled context.
+     * </p>
+     */
+    @Test
+    public void LegacyOperationAdapterTest() {
+        int[] calls = new int[1];
+        ImageOperation legacy = input -> {
+            calls[0]++;
+            return input;
+        };
+        BufferedImage image = TestImages.opaqueImage(4, 4, 21);
+        List<Double> progress = new ArrayList<Double>();
+        OperationContext context = new OperationContext();
+        context.setProgressListener(progress::add);
+        assertTrue(image == legacy.apply(image, context));
+        assertEquals(1, calls[0]);
+        assertEquals(List.of(1.0), progress);
+
+        context.cancel();
+        assertThrows(CancellationException.class, () -> legacy.apply(image, context));
+        assertEquals(1, calls[0]);
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a tiled filter reports progress after every tile, ending at 1, and
+     * that a macro shares its progress out between its steps.
+     * </p>
+     */
+    @Test
+    public void ProgressReachesOneTest() {
+        BufferedImage image = TestImages.opaqueImage(600, 520, 22);
+        List<Double> progress = Collections.synchronizedList(new ArrayList<Double>());
+        OperationContext context = new OperationContext();
+        context.setProgressListener(progress::add);
+        new MeanFilter(1).apply(image, context);
+        // The default tiles are 256 pixels square, so there are 3 by 3 of them.
+        assertEquals(9, progress.size());
+        assertEquals(1.0, Collections.max(progress), 0);
+
+        Macro macro = new Macro();
+        macro.add(new MeanFilter(1));
+        macro.add(new RotateRight());
+        macro.add(new SharpenFilter(1));
+        progress.clear();
+        macro.apply(image, context);
+        assertEquals(1.0, Collections.max(progress), 0);
+        for (double fraction : progress) {
+            assertTrue(fraction >= 0 && fraction <= 1);
+        }
+    }
+
+    /**
+     * <p>
+     * Test to make sure that applying operations in a context working on a single thread
+     * gives the same image as applying them without one, on a translucent image whose sides are
+     * odd and not a whole number of tiles.
+     * </p>
+     */
+    @Test
+    public void SingleThreadContextMatchesTest() {
+        BufferedImage image = TestImages.translucentImage(301, 279, 23);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            List<ImageOperation> ops = List.of(new GaussianBlurFilter(3), new SobelOrientationFilter(true, true),
+                    new ImageResizeN(70), new MedianFilter(1));
+            for (ImageOperation op : ops) {
+                BufferedImage expected = op.apply(image);
+                BufferedImage actual = op.apply(image, new OperationContext(pool));
+                assertEquals(expected.getWidth(), actual.getWidth());
+                assertEquals(expected.getHeight(), actual.getHeight());
+                for (int y = 0; y < expected.getHeight(); y++) {
+                    for (int x = 0; x < expected.getWidth(); x++) {
+                        assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.awt.image.*;
+import java.util.*;
+import cosc202.andie.*;
+
+/**
+ * <p>
+ * Tests to check that an {@link OperationPlan} cancels out and combines operations,
+ * and still gives the same image as applying them one at a time.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class OperationPlanTest {
+
+    /**
+     * <p>
+     * Test to make sure that operations undoing each other leave nothing to do,
+     * while still reaching the depth after all of them.
+     * </p>
+     */
+    @Test
+    public void InversePairsCancelTest() {
+        List<List<ImageOperation>> cases = List.of(
+            List.of(new RotateLeft(), new RotateRight()),
+            List.of(new FlipHorizontal(), new FlipHorizontal()),
+            List.of(new FlipVertical(), new FlipVertical()),
+            List.of(new RotateRight(), new RotateRight(), new RotateRight(), new RotateRight()),
+            List.of(new FlipHorizontal(), new FlipVertical(), new Rotate180())
+        );
+        for (List<ImageOperation> ops : cases) {
+            OperationPlan plan = new OperationPlan(ops, 0);
+            assertEquals(1, plan.size());
+            assertNull(plan.getOperation(0));
+            assertEquals(ops.size(), plan.getDepth(0));
+        }
+    }
+
+    /**
+     * <p>
+     * Test to make sure that point operations either side of a rotation are combined
+     * into one step after a single rotation.
+     * </p>
+     */
+    @Test
+    public void PointOperationsCombineTest() {
+        List<ImageOperation> ops = List.of(new BrightnessFilter(20), new RotateLeft(), new ContrastFilter(-30),
+                new ImageResize50(), new ConvertToGrey());
+        OperationPlan plan = new OperationPlan(ops, 0);
+        assertEquals(4, plan.size());
+        assertEquals(RotateLeft.class, plan.getOperation(0).getClass());
+        assertEquals(PointTransform.class, plan.getOperation(1).getClass());
+        assertEquals(3, plan.getDepth(1));
+        assertEquals(ImageResize50.class, plan.getOperation(2).getClass());
+        assertEquals(4, plan.getDepth(2));
+        assertEquals(ConvertToGrey.class, plan.getOperation(3).getClass());
+        assertEquals(5, plan.getDepth(3));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that random lists of rotations, flips, crops, point operations and resizes
+     * give the same image when applied by a plan as when applied one at a time, on translucent
+     * images of odd sizes and ones a single pixel wide or high.
+     * </p>
+     */
+    @Test
+    public void PlanMatchesSequentialTest() {
+        Random random = new Random(3);
+        int[][] shapes = { { 13, 7 }, { 1, 11 }, { 11, 1 }, { 6, 9 } };
+        for (int trial = 0; trial < 60; trial++) {
+            int[] shape = shapes[trial % shapes.length];
+            List<ImageOperation> ops = new ArrayList<ImageOperation>();
+            BufferedImage expected = TestImages.translucentImage(shape[0], shape[1], 15 + trial);
+            int length = 1 + random.nextInt(9);
+            for (int i = 0; i < length; i++) {
+                ImageOperation op;
+                switch (random.nextInt(10)) {
+                    case 0: op = new RotateLeft(); break;
+                    case 1: op = new RotateRight(); break;
+                    case 2: op = new Rotate180(); break;
+                    case 3: op = new FlipHorizontal(); break;
+                    case 4: op = new FlipVertical(); break;
+                    case 5: op = new ConvertToGrey(); break;
+                    case 6: op = new BrightnessFilter(random.nextInt(201) - 100); break;
+                    case 7: op = new ContrastFilter(random.nextInt(201) - 100); break;
+                    case 8:
+                        int x = random.nextInt(expected.getWidth());
+                        int y = random.nextInt(expected.getHeight());
+                        int width = 1 + random.nextInt(expected.getWidth() - x);
+                        int height = 1 + random.nextInt(expected.getHeight() - y);
+                        op = new RegionCrop(1.0, new Rectangle(x, y, width, height));
+                        break;
+                    default: op = new ImageResize150(); break;
+                }
+                ops.add(op);
+                expected = op.apply(expected);
+            }
+            OperationPlan plan = new OperationPlan(ops, 0);
+            BufferedImage actual = TestImages.translucentImage(shape[0], shape[1], 15 + trial);
+            for (int i = 0; i < plan.size(); i++) {
+                if (plan.getOperation(i) != null) {
+                    actual = plan.getOperation(i).apply(actual);
+                }
+            }
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getHeight(), actual.getHeight());
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    assertEquals(ops.toString(), expected.getRGB(x, y), actual.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a macro resizing, rotating and cropping an image resamples it once,
+     * giving an image of the same size as applying the operations one at a time.
+     * </p>
+     */
+    @Test
+    public void MacroResamplesOnceTest() {
+        Macro macro = new Macro();
+        macro.add(new ImageResize150());
+        macro.add(new RotateRight());
+        macro.add(new ImageResizeN(70));
+        macro.add(new RegionCrop(1.0, new Rectangle(3, 2, 20, 15)));
+        macro.add(new FlipHorizontal());
+        macro.add(new ImageResize50());
+        OperationPlan plan = new OperationPlan(macro, 0, true);
+        assertEquals(1, plan.size());
+        assertEquals(GeometricTransform.class, plan.getOperation(0).getClass());
+
+        BufferedImage input = new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < input.getHeight(); y++) {
+            for (int x = 0; x < input.getWidth(); x++) {
+                input.setRGB(x, y, 0xff3080c0);
+            }
+        }
+        BufferedImage expected = input;
+        for (ImageOperation op : macro) {
+            expected = op.apply(expected);
+        }
+        BufferedImage actual = macro.apply(input);
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < actual.getHeight(); y++) {
+            for (int x = 0; x < actual.getWidth(); x++) {
+                assertEquals(0xff3080c0, actual.getRGB(x, y));
+            }
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package tests.test;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.jupiter.api.Test;
 import java.awt.image.*;
+import java.util.*;
 import cosc202.andie.*;
 import javax.imageio.*;
 import java.net.*;
@@ -249,4 +252,55 @@ public class OrientationTest {
         assert (bufferedImagesEqual(expected, actual));
     }
 
+    /**
+     * <p>
+     * Test to make sure that rotating and flipping images of many types moves every pixel to
+     * the right place exactly, even partly transparent ones, and keeps the type of the image.
+     * </p>
+     */
+    @Test
+    public void AllTypesExactTest() {
+        int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY,
+            BufferedImage.TYPE_USHORT_GRAY, BufferedImage.TYPE_USHORT_565_RGB, BufferedImage.TYPE_BYTE_BINARY};
+        List<ImageOperation> ops = List.of(new RotateRight(), new RotateLeft(), new Rotate180(),
+                new FlipHorizontal(), new FlipVertical());
+        Random random = new Random(17);
+        for (int type : types) {
+            for (boolean sub : new boolean[] {false, true}) {
+                for (int op = 0; op < ops.size(); op++) {
+                    BufferedImage input = new BufferedImage(15, 10, type);
+                    for (int y = 0; y < input.getHeight(); y++) {
+                        for (int x = 0; x < input.getWidth(); x++) {
+                            input.setRGB(x, y, random.nextInt());
+                        }
+                    }
+                    if (sub) {
+                        // A window into a bigger image, whose pixels do not start at the beginning of its array.
+                        input = input.getSubimage(2, 1, 11, 8);
+                    }
+                    int width = input.getWidth();
+                    int height = input.getHeight();
+                    int[] before = input.getRGB(0, 0, width, height, null, 0, width);
+                    BufferedImage actual = ops.get(op).apply(input);
+                    String message = ops.get(op).fingerprint() + " type " + type + (sub ? " window" : "");
+                    assertEquals(message, type, actual.getType());
+                    for (int v = 0; v < height; v++) {
+                        for (int u = 0; u < width; u++) {
+                            int x, y;
+                            switch (op) {
+                                case 0: x = height - 1 - v; y = u; break;
+                                case 1: x = v; y = width - 1 - u; break;
+                                case 2: x = width - 1 - u; y = height - 1 - v; break;
+                                case 3: x = width - 1 - u; y = v; break;
+                                default: x = u; y = height - 1 - v; break;
+                            }
+                            assertEquals(message, before[v * width + u], actual.getRGB(x, y));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
 }
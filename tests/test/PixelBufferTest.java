@@ -0,0 +1,118 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.*;
+import cosc202.andie.*;
+
+/**
+ * <p>
+ * Tests to check that a {@link PixelBuffer} gives the same pixels as
+ * {@link BufferedImage#getRGB(int, int)}.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class PixelBufferTest {
+
+    /**
+     * <p>
+     * Create a small image where every pixel is different.
+     * </p>
+     *
+     * @param type The type of image to create.
+     * @return The new image.
+     */
+    private static BufferedImage gradientImage(int type) {
+        BufferedImage image = new BufferedImage(13, 9, type);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, 0xff000000 | (x * 19) << 16 | (y * 27) << 8 | (x * y));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a PixelBuffer shares the pixels of a TYPE_INT_ARGB image,
+     * including one that is part of a bigger image.
+     * </p>
+     */
+    @Test
+    public void DirectAccessTest() {
+        BufferedImage image = gradientImage(BufferedImage.TYPE_INT_ARGB);
+        BufferedImage sub = image.getSubimage(3, 2, 6, 5);
+        assertTrue(PixelBuffer.isDirect(sub));
+        PixelBuffer pixels = PixelBuffer.of(sub);
+        for (int y = 0; y < sub.getHeight(); y++) {
+            for (int x = 0; x < sub.getWidth(); x++) {
+                assertEquals(sub.getRGB(x, y), pixels.get(x, y));
+            }
+        }
+        pixels.set(1, 1, 0x12345678);
+        assertEquals(0x12345678, image.getRGB(4, 3));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a PixelBuffer of an image of another type holds a
+     * TYPE_INT_ARGB copy with the same pixels.
+     * </p>
+     */
+    @Test
+    public void ConvertedAccessTest() {
+        BufferedImage image = gradientImage(BufferedImage.TYPE_3BYTE_BGR);
+        assertFalse(PixelBuffer.isDirect(image));
+        PixelBuffer pixels = PixelBuffer.of(image);
+        assertEquals(BufferedImage.TYPE_INT_ARGB, pixels.getImage().getType());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                assertEquals(image.getRGB(x, y), pixels.get(x, y));
+            }
+        }
+        pixels.set(0, 0, 0xff000000);
+        assertEquals(gradientImage(BufferedImage.TYPE_3BYTE_BGR).getRGB(0, 0), image.getRGB(0, 0));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that each {@link BorderMode} makes up the pixels beyond the
+     * edges of an image as described.
+     * </p>
+     */
+    @Test
+    public void BorderModeTest() {
+        int[] clamp = {0, 0, 0, 0, 1, 2, 3, 3, 3};
+        int[] mirror = {3, 2, 1, 0, 1, 2, 3, 2, 1};
+        int[] wrap = {1, 2, 3, 0, 1, 2, 3, 0, 1};
+        for (int i = -3; i <= 5; i++) {
+            assertEquals(clamp[i + 3], BorderMode.CLAMP.resolve(i, 4));
+            assertEquals(mirror[i + 3], BorderMode.MIRROR.resolve(i, 4));
+            assertEquals(wrap[i + 3], BorderMode.WRAP.resolve(i, 4));
+            assertEquals(i >= 0 && i < 4 ? i : -1, BorderMode.CONSTANT.resolve(i, 4));
+        }
+        assertEquals(0, BorderMode.MIRROR.resolve(-7, 1));
+
+        BufferedImage image = gradientImage(BufferedImage.TYPE_INT_ARGB);
+        PixelBuffer pixels = PixelBuffer.of(image);
+        for (BorderMode border : BorderMode.values()) {
+            int[] region = pixels.readRegion(-5, -4, 25, 20, null, border, 0x11223344);
+            for (int j = 0; j < 20; j++) {
+                for (int i = 0; i < 25; i++) {
+                    int x = border.resolve(i - 5, image.getWidth());
+                    int y = border.resolve(j - 4, image.getHeight());
+                    int expected = x < 0 || y < 0 ? 0x11223344 : image.getRGB(x, y);
+                    assertEquals(expected, region[j * 25 + i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.*;
+import java.util.Random;
+import cosc202.andie.*;
+
+/**
+ * <p>
+ * Tests to check that a run of point operations composed into a single
+ * {@link PointTransform} gives the same pixels as applying them one at a time.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class PointTransformTest {
+
+    /**
+     * <p>
+     * Test to make sure that random runs of greyscale, brightness and contrast operations
+     * composed into one transform give the same image as applying each operation in turn,
+     * on translucent images of odd sizes and ones a single pixel wide or high.
+     * </p>
+     */
+    @Test
+    public void FusedMatchesSequentialTest() {
+        Random random = new Random(7);
+        int[][] shapes = { { 37, 23 }, { 1, 29 }, { 29, 1 } };
+        for (int trial = 0; trial < 40; trial++) {
+            int[] shape = shapes[trial % shapes.length];
+            Macro macro = new Macro();
+            int length = 2 + random.nextInt(5);
+            for (int i = 0; i < length; i++) {
+                int choice = random.nextInt(3);
+                if (choice == 0) {
+                    macro.add(new ConvertToGrey());
+                } else if (choice == 1) {
+                    macro.add(new BrightnessFilter(random.nextInt(201) - 100));
+                } else {
+                    macro.add(new ContrastFilter(random.nextInt(201) - 100));
+                }
+            }
+            BufferedImage expected = TestImages.translucentImage(shape[0], shape[1], trial);
+            for (ImageOperation op : macro) {
+                expected = op.apply(expected);
+            }
+            BufferedImage actual = PointTransform.compose(macro, 0, macro.size()).apply(TestImages.translucentImage(shape[0], shape[1], trial));
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    assertEquals(macro.fingerprint(), expected.getRGB(x, y), actual.getRGB(x, y));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.*;
+import java.util.Stack;
+import java.util.concurrent.*;
+import javax.swing.SwingUtilities;
+import cosc202.andie.*;
+
+/**
+ * <p>
+ * Tests to check that a {@link PreviewController} shows previews worked out in the background,
+ * shows ones it has already worked out straight away, and hands the chosen one over to be applied.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class PreviewControllerTest {
+
+    /**
+     * <p>
+     * Create an image with a gradient across it.
+     * </p>
+     *
+     * @return The new image.
+     */
+    private static BufferedImage gradientImage() {
+        BufferedImage image = new BufferedImage(120, 90, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, 0xff000000 | (x * 2 << 16) | (y * 2 << 8) | 0x40);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * <p>
+     * Run something on the event dispatch thread, and wait for it to finish.
+     * </p>
+     *
+     * @param <T> The type of the result.
+     * @param task The thing to run.
+     * @return Its result.
+     * @throws Exception If it could not be run.
+     */
+    private static <T> T onEDT(Callable<T> task) throws Exception {
+        FutureTask<T> future = new FutureTask<T>(task);
+        SwingUtilities.invokeAndWait(future);
+        return future.get();
+    }
+
+    /**
+     * <p>
+     * Wait for a panel to show something other than the actual image.
+     * </p>
+     *
+     * @param panel The panel.
+     * @param actual The actual image.
+     * @return The image the panel shows, which is the actual image if nothing else came within 10 seconds.
+     * @throws Exception If the panel could not be checked.
+     */
+    private static EditableImage waitForPreview(ImagePanel panel, EditableImage actual) throws Exception {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (onEDT(() -> panel.getImage()) == actual && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        return onEDT(() -> panel.getImage());
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a preview appears once it has been worked out, matches applying the
+     * operation, is shown straight away when its value comes back, and is used when applying.
+     * </p>
+     *
+     * @throws Exception If the preview does not appear.
+     */
+    @Test
+    public void CachedPreviewIsReusedTest() throws Exception {
+        BufferedImage original = gradientImage();
+        EditableImage actual = new EditableImage(original, gradientImage(), new Stack<ImageOperation>(),
+                new Stack<ImageOperation>(), new Stack<ImageOperation>(), "", ".ops", null);
+        ImagePanel panel = new ImagePanel();
+        panel.setImage(actual);
+        PreviewController preview = onEDT(() -> new PreviewController(panel));
+
+        onEDT(() -> {
+            preview.update(new BrightnessFilter(30));
+            return null;
+        });
+        EditableImage shown = waitForPreview(panel, actual);
+        assertTrue(shown != actual);
+        assertEquals(1.0, shown.getPreviewScale(), 0);
+        BufferedImage expected = new BrightnessFilter(30).apply(gradientImage());
+        assertEquals(expected.getRGB(17, 23), shown.getCurrentImage().getRGB(17, 23));
+        assertEquals(1, shown.getOps().size());
+
+        // Going back to no change, then to the same value, needs nothing worked out.
+        assertTrue(onEDT(() -> {
+            preview.update(null);
+            boolean restored = panel.getImage() == actual;
+            preview.update(new BrightnessFilter(30));
+            return restored && panel.getImage().getCurrentImage() == shown.getCurrentImage();
+        }));
+
+        long hits = RenderCache.getShared().getHits();
+        onEDT(() -> {
+            preview.close(new BrightnessFilter(30));
+            panel.setImage(actual);
+            actual.apply(new BrightnessFilter(30));
+            return null;
+        });
+        assertEquals(hits + 1, RenderCache.getShared().getHits());
+        assertEquals(expected.getRGB(17, 23), actual.getCurrentImage().getRGB(17, 23));
+    }
+
+    /**
+     * <p>
+     * Test to make sure that a preview started while the actual image is still rendering is
+     * worked out from the result of all of its operations.
+     * </p>
+     *
+     * @throws Exception If the preview does not appear.
+     */
+    @Test
+    public void PreviewWaitsForRenderTest() throws Exception {
+        EditableImage actual = new EditableImage(gradientImage(), gradientImage(), new Stack<ImageOperation>(),
+                new Stack<ImageOperation>(), new Stack<ImageOperation>(), "", ".ops", null);
+        ImagePanel panel = new ImagePanel();
+        panel.setImage(actual);
+        PreviewController preview = onEDT(() -> {
+            actual.apply(new GaussianBlurFilter(8));
+            PreviewController controller = new PreviewController(panel);
+            controller.update(new BrightnessFilter(-20));
+            return controller;
+        });
+        EditableImage shown = waitForPreview(panel, actual);
+        assertTrue(shown != actual);
+        BufferedImage expected = new BrightnessFilter(-20).apply(new GaussianBlurFilter(8).apply(gradientImage()));
+        assertEquals(expected.getRGB(5, 61), shown.getCurrentImage().getRGB(5, 61));
+        onEDT(() -> {
+            preview.close(null);
+            return null;
+        });
+    }
+
+    /**
+     * <p>
+     * Test to make sure that when the panel is zoomed out, previews are worked out on a proxy at
+     * the panel's zoom with their radius scaled to match, and shown at full size.
+     * </p>
+     *
+     * @throws Exception If the preview does not appear.
+     */
+    @Test
+    public void ProxyPreviewTest() throws Exception {
+        EditableImage actual = new EditableImage(gradientImage(), gradientImage(), new Stack<ImageOperation>(),
+                new Stack<ImageOperation>(), new Stack<ImageOperation>(), "", ".ops", null);
+        ImagePanel panel = new ImagePanel();
+        panel.setImage(actual);
+        panel.setZoom(50);
+        try {
+            PreviewController preview = onEDT(() -> new PreviewController(panel));
+            assertEquals(0.5, preview.getProxyScale(), 0);
+            assertEquals(2, preview.scaleRadius(4));
+            assertEquals(1, preview.scaleRadius(1));
+            assertEquals(0, preview.scaleRadius(0));
+
+            onEDT(() -> {
+                preview.update(new MeanFilter(4), new MeanFilter(preview.scaleRadius(4)));
+                return null;
+            });
+            EditableImage shown = waitForPreview(panel, actual);
+            assertTrue(shown != actual);
+            assertEquals(0.5, shown.getPreviewScale(), 0);
+            assertEquals(60, shown.getCurrentImage().getWidth());
+            assertEquals(45, shown.getCurrentImage().getHeight());
+            // The proxy is shown at the size the full image would be at this zoom.
+            assertEquals(60, panel.getPreferredSize().width);
+            assertEquals(45, panel.getPreferredSize().height);
+
+            // Applying the chosen operation works it out at full size.
+            onEDT(() -> {
+                preview.close(new MeanFilter(4));
+                panel.setImage(actual);
+                actual.apply(new MeanFilter(4));
+                return null;
+            });
+            BufferedImage expected = new MeanFilter(4).apply(gradientImage());
+            assertEquals(120, actual.getCurrentImage().getWidth());
+            assertEquals(expected.getRGB(31, 47), actual.getCurrentImage().getRGB(31, 47));
+        } finally {
+            panel.setZoom(100);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.Stack;
+import cosc202.andie.*;
+
+/**
+ * <p>
+ * Tests to check that the {@link RenderCache} and the fingerprints of
+ * {@link ImageOperation}s behave as we would expect.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class RenderCacheTest {
+
+    /**
+     * <p>
+     * Create a small image filled with one colour.
+     * </p>
+     *
+     * @param colour The colour to fill the image with.
+     * @return The new image.
+     */
+    private static BufferedImage filledImage(Color colour) {
+        BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = image.getGraphics();
+        g.setColor(colour);
+        g.fillRect(0, 0, 20, 10);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * <p>
+     * Test to make sure that operations with the same parameters are equal and have the
+     * same fingerprint, and operations with different parameters do not.
+     * </p>
+     */
+    @Test
+    public void FingerprintTest() {
+        assertEquals(new GaussianBlurFilter(3), new GaussianBlurFilter(3));
+        assertEquals(new GaussianBlurFilter(3).hashCode(), new GaussianBlurFilter(3).hashCode());
+        assertEquals(new GaussianBlurFilter(3).fingerprint(), new GaussianBlurFilter(3).fingerprint());
+        assertNotEquals(new GaussianBlurFilter(3).fingerprint(), new GaussianBlurFilter(4).fingerprint());
+        assertNotEquals(new GaussianBlurFilter(3).fingerprint(), new MeanFilter(3).fingerprint());
+        assertNotEquals(new EmbossFilter(false, EmbossFilter.EMBOSS_1).fingerprint(),
+                new EmbossFilter(false, EmbossFilter.EMBOSS_2).fingerprint());
+        assertEquals(new RotateLeft(), new RotateLeft());
+
+        Macro first = new Macro();
+        first.add(new SharpenFilter(1));
+        first.add(new RotateRight());
+        Macro second = new Macro();
+        second.add(new SharpenFilter(1));
+        second.add(new RotateRight());
+        assertEquals(first.fingerprint(), second.fingerprint());
+        second.add(new ConvertToGrey());
+        assertNotEquals(first.fingerprint(), second.fingerprint());
+    }
+
+    /**
+     * <p>
+     * Test to make sure that the fingerprint of an operation survives being saved to and
+     * read back from an <code>.ops</code> file.
+     * </p>
+     *
+     * @throws Exception If the operations could not be written or read back.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void FingerprintSerializationTest() throws Exception {
+        Stack<ImageOperation> ops = new Stack<ImageOperation>();
+        ops.add(new MedianFilter(2));
+        ops.add(new DrawRec(1.0, new Rectangle(1, 2, 3, 4), true));
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        ObjectOutputStream objOut = new ObjectOutputStream(bytesOut);
+        objOut.writeObject(ops);
+        objOut.close();
+        ObjectInputStream objIn = new ObjectInputStream(new ByteArrayInputStream(bytesOut.toByteArray()));
+        Stack<ImageOperation> read = (Stack<ImageOperation>) objIn.readObject();
+        objIn.close();
+        for (int i = 0; i < ops.size(); i++) {
+            assertEquals(ops.get(i), read.get(i));
+            assertEquals(ops.get(i).fingerprint(), read.get(i).fingerprint());
+        }
+    }
+
+    /**
+     * <p>
+     * Test to make sure that the cache evicts the least recently used images to stay
+     * within its budget, and counts hits and misses.
+     * </p>
+     */
+    @Test
+    public void LeastRecentlyUsedTest() {
+        BufferedImage red = filledImage(Color.RED);
+        BufferedImage green = filledImage(Color.GREEN);
+        BufferedImage blue = filledImage(Color.BLUE);
+        long bytes = CheckpointStore.sizeOf(red);
+        RenderCache cache = new RenderCache(2 * bytes);
+
+        String redKey = RenderCache.keyOf(red);
+        String greenKey = RenderCache.keyOf(green);
+        String blueKey = RenderCache.keyOf(blue);
+        assertNotEquals(redKey, greenKey);
+        assertEquals(redKey, RenderCache.keyOf(filledImage(Color.RED)));
+        // The same pixels in an image of another type are not the same image.
+        BufferedImage opaqueRed = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+        opaqueRed.getGraphics().drawImage(red, 0, 0, null);
+        assertEquals(red.getRGB(3, 4), opaqueRed.getRGB(3, 4));
+        assertNotEquals(redKey, RenderCache.keyOf(opaqueRed));
+
+        cache.put(redKey, red);
+        cache.put(greenKey, green);
+        // Using red makes green the least recently used.
+        assertEquals(Color.RED.getRGB(), cache.get(redKey).getRGB(0, 0));
+        cache.put(blueKey, blue);
+        assertTrue(cache.contains(redKey));
+        assertTrue(cache.contains(blueKey));
+        assertNull(cache.get(greenKey));
+        assertEquals(2, cache.size());
+        assertTrue(cache.getUsedBytes() <= cache.getBudgetBytes());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * <p>
+     * Test to make sure that reapplying an operation that was undone uses the cached result
+     * rather than applying it again.
+     * </p>
+     */
+    @Test
+    public void ReapplyHitsCacheTest() {
+        BufferedImage original = filledImage(new Color(10, 200, 30));
+        EditableImage image = new EditableImage(original, filledImage(new Color(10, 200, 30)),
+                new Stack<ImageOperation>(), new Stack<ImageOperation>(), new Stack<ImageOperation>(),
+                "", ".ops", null);
+        image.apply(new SharpenFilter(2));
+        image.apply(new BrightnessFilter(40));
+        BufferedImage expected = image.getCurrentImage();
+        int firstRGB = expected.getRGB(5, 5);
+        image.undo();
+
+        long hits = RenderCache.getShared().getHits();
+        image.apply(new BrightnessFilter(40));
+        assertEquals(hits + 1, RenderCache.getShared().getHits());
+        assertEquals(firstRGB, image.getCurrentImage().getRGB(5, 5));
+    }
+}
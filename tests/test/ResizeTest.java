@@ -1,7 +1,11 @@
 package tests.test;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.jupiter.api.Test;
 import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import cosc202.andie.*;
 
 /**
@@ -101,4 +105,92 @@ public class ResizeTest {
             assert (heightAfter == n * heightBefore / 100);
         }
     }
+
+    /**
+     * <p>
+     * Test to make sure that resizing an image of one colour leaves it that colour, for every
+     * {@link Resampler.Quality}, whether shrinking or enlarging.
+     * </p>
+     */
+    @Test
+    public void ResamplerKeepsFlatColourTest() {
+        BufferedImage input = new BufferedImage(37, 23, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < input.getHeight(); y++) {
+            for (int x = 0; x < input.getWidth(); x++) {
+                input.setRGB(x, y, 0xc8407fe0);
+            }
+        }
+        int[][] sizes = {{18, 11}, {55, 34}, {5, 60}, {1, 1}, {37, 23}};
+        for (Resampler.Quality quality : Resampler.Quality.values()) {
+            for (int[] size : sizes) {
+                BufferedImage output = Resampler.resize(input, size[0], size[1], quality);
+                assertEquals(size[0], output.getWidth());
+                assertEquals(size[1], output.getHeight());
+                for (int y = 0; y < size[1]; y++) {
+                    for (int x = 0; x < size[0]; x++) {
+                        assertEquals(quality + " " + size[0] + "x" + size[1], 0xc8407fe0, output.getRGB(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Test to make sure that halving an image by area averages each two by two block of pixels.
+     * </p>
+     */
+    @Test
+    public void ResamplerAreaAveragesBlocksTest() {
+        BufferedImage input = new BufferedImage(8, 6, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(18);
+        for (int y = 0; y < input.getHeight(); y++) {
+            for (int x = 0; x < input.getWidth(); x++) {
+                input.setRGB(x, y, random.nextInt());
+            }
+        }
+        BufferedImage output = new ImageResize50().apply(input);
+        for (int y = 0; y < output.getHeight(); y++) {
+            for (int x = 0; x < output.getWidth(); x++) {
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int total = 0;
+                    for (int i = 0; i < 4; i++) {
+                        total += (input.getRGB(2 * x + i % 2, 2 * y + i / 2) >> shift) & 0xff;
+                    }
+                    assertEquals((total + 2) / 4, (output.getRGB(x, y) >> shift) & 0xff, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Test to make sure that resampling an image in parallel gives exactly the same pixels as
+     * resampling it on a single thread.
+     * </p>
+     */
+    @Test
+    public void ResamplerParallelMatchesSequentialTest() {
+        BufferedImage input = new BufferedImage(301, 257, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(19);
+        for (int y = 0; y < input.getHeight(); y++) {
+            for (int x = 0; x < input.getWidth(); x++) {
+                input.setRGB(x, y, random.nextInt());
+            }
+        }
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+        for (Resampler.Quality quality : Resampler.Quality.values()) {
+            Resampler resampler = new Resampler(301, 257, 190, 411, quality);
+            BufferedImage expected = resampler.apply(input, single);
+            BufferedImage actual = resampler.apply(input, many);
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    assertEquals(quality.toString(), expected.getRGB(x, y), actual.getRGB(x, y));
+                }
+            }
+        }
+        single.shutdown();
+        many.shutdown();
+    }
 }
@@ -0,0 +1,85 @@
+package tests.test;
+
+import java.awt.image.*;
+import java.util.Random;
+
+/**
+ * <p>
+ * Images of random pixels for tests that compare two ways of getting the same result.
+ * </p>
+ *
+ * <p>
+ * Each test passes its own seed, so that its images are the same on every run, and picks the
+ * shapes its edge cases need, such as images one pixel wide or high, or with odd sides.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class TestImages {
+
+    /**
+     * <p>
+     * TestImages only has static methods, so cannot be created.
+     * </p>
+     */
+    private TestImages() {
+    }
+
+    /**
+     * <p>
+     * Create an image of random opaque pixels.
+     * </p>
+     *
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param seed The seed of the random pixels, so that the same seed gives the same image.
+     * @return The new image.
+     */
+    public static BufferedImage opaqueImage(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xff000000 | random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * <p>
+     * Create an image of random pixels, with a mix of fully transparent, partly transparent
+     * and opaque ones.
+     * </p>
+     *
+     * <p>
+     * A quarter of the pixels are fully transparent and a quarter opaque, so that the edges of
+     * the alpha range come up often, rather than once in every 256 pixels.
+     * </p>
+     *
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param seed The seed of the random pixels, so that the same seed gives the same image.
+     * @return The new image.
+     */
+    public static BufferedImage translucentImage(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = random.nextInt() & 0xffffff;
+                int alpha;
+                switch (random.nextInt(4)) {
+                    case 0: alpha = 0; break;
+                    case 1: alpha = 0xff; break;
+                    default: alpha = random.nextInt(256); break;
+                }
+                image.setRGB(x, y, alpha << 24 | rgb);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,149 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.*;
+import java.util.concurrent.ForkJoinPool;
+import cosc202.andie.*;
+
+/**
+ * <p>
+ * Tests to check that a {@link TiledImage} reads regions and applies
+ * {@link TileOperation}s as we would expect.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class TiledImageTest {
+
+    /**
+     * <p>
+     * Create a small image where every pixel is different.
+     * </p>
+     *
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The new image.
+     */
+    private static BufferedImage gradientImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xff000000 | ((x * 37) & 0xff) << 16 | ((y * 59) & 0xff) << 8 | ((x * y) & 0xff));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * <p>
+     * Test to make sure that reading a region hanging over the edges of the image
+     * fills in the missing pixels from the nearest edge pixel.
+     * </p>
+     */
+    @Test
+    public void ReadRegionClampsTest() {
+        BufferedImage image = gradientImage(5, 4);
+        TiledImage tiled = new TiledImage(image, 2);
+        int[] region = tiled.readRegion(-2, -3, 10, 9, null);
+        for (int j = 0; j < 9; j++) {
+            for (int i = 0; i < 10; i++) {
+                int x = Math.min(Math.max(i - 2, 0), 4);
+                int y = Math.min(Math.max(j - 3, 0), 3);
+                assertEquals(image.getRGB(x, y), region[j * 10 + i]);
+            }
+        }
+        // A region entirely off to one side is all the nearest edge pixel.
+        int[] outside = tiled.readRegion(7, 1, 2, 2, null);
+        assertEquals(image.getRGB(4, 1), outside[0]);
+        assertEquals(image.getRGB(4, 2), outside[3]);
+    }
+
+    /**
+     * <p>
+     * Test to make sure that applying a filter with small tiles gives the same image
+     * as applying it with one tile covering the whole image.
+     * </p>
+     */
+    @Test
+    public void TileSizeDoesNotMatterTest() {
+        BufferedImage image = gradientImage(23, 17);
+        TileOperation[] ops = {
+            new MeanFilter(2), new GaussianBlurFilter(3), new MedianFilter(1),
+            new EmbossFilter(true, EmbossFilter.EMBOSS_3)
+        };
+        for (TileOperation op : ops) {
+            BufferedImage whole = new TiledImage(image, 64).apply(op).getImage();
+            BufferedImage tiled = new TiledImage(image, 5).apply(op).getImage();
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    assertEquals(whole.getRGB(x, y), tiled.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Test to make sure that applying filters on many threads gives exactly the same
+     * image as applying them on one.
+     * </p>
+     */
+    @Test
+    public void ParallelMatchesSequentialTest() {
+        BufferedImage image = gradientImage(61, 45);
+        TileOperation[] ops = {
+            new MeanFilter(2), new SharpenFilter(1), new GaussianBlurFilter(2), new MedianFilter(2),
+            new EmbossFilter(false, EmbossFilter.EMBOSS_6)
+        };
+        ForkJoinPool one = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+        for (TileOperation op : ops) {
+            BufferedImage sequential = new TiledImage(image, 8).apply(op, one).getImage();
+            BufferedImage parallel = new TiledImage(image, 8).apply(op, many).getImage();
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    assertEquals(sequential.getRGB(x, y), parallel.getRGB(x, y));
+                }
+            }
+        }
+        one.shutdown();
+        many.shutdown();
+    }
+
+    /**
+     * <p>
+     * Test to make sure that working out sobel gradients on many threads gives exactly
+     * the same images as working them out on one.
+     * </p>
+     */
+    @Test
+    public void SobelParallelMatchesSequentialTest() {
+        BufferedImage image = gradientImage(61, 150);
+        ForkJoinPool one = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+        for (boolean removeNoise : new boolean[] {false, true}) {
+            SobelGradients sequential = new SobelGradients(image, removeNoise, true, one);
+            SobelGradients parallel = new SobelGradients(image, removeNoise, true, many);
+            BufferedImage[][] views = {
+                {sequential.horizontalImage(), parallel.horizontalImage()},
+                {sequential.verticalImage(), parallel.verticalImage()},
+                {sequential.orientationImage(true), parallel.orientationImage(true)}
+            };
+            for (BufferedImage[] pair : views) {
+                for (int y = 0; y < image.getHeight(); y++) {
+                    for (int x = 0; x < image.getWidth(); x++) {
+                        assertEquals(pair[0].getRGB(x, y), pair[1].getRGB(x, y));
+                    }
+                }
+            }
+        }
+        one.shutdown();
+        many.shutdown();
+    }
+}
@@ -0,0 +1,68 @@
+package tests.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.*;
+import cosc202.andie.*;
+
+/**
+ * <p>
+ * Tests to check that the vector and scalar loops give the same pixels.
+ * </p>
+ *
+ * <p>
+ * The vector loops are only used when <code>src-vector</code> has been compiled
+ * and the tests are run with <code>--add-modules jdk.incubator.vector</code>.
+ * Otherwise these tests only check the scalar loops against themselves.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
+ * 4.0</a>
+ * </p>
+ */
+public class VectorSupportTest {
+
+    /**
+     * <p>
+     * Test to make sure that every operation with a vector loop gives the same image
+     * whether the vector loops are turned on or off, checking every row as it goes.
+     * </p>
+     *
+     * <p>
+     * The images are translucent, and some are narrower than a vector or a few pixels past a
+     * whole number of them, so that the rows finished off one pixel at a time are checked too.
+     * </p>
+     */
+    @Test
+    public void CheckModeTest() {
+        ImageOperation[] ops = {
+            new ConvertToGrey(), new BrightnessFilter(37), new BrightnessFilter(-60),
+            new ContrastFilter(45), new ContrastFilter(-25), new SharpenFilter(1), new SharpenFilter(4),
+            new EmbossFilter(false, EmbossFilter.EMBOSS_2), new EmbossFilter(true, EmbossFilter.EMBOSS_7)
+        };
+        int[][] shapes = { { 83, 41 }, { 1, 9 }, { 3, 5 }, { 67, 2 } };
+        VectorSupport.Mode mode = VectorSupport.getMode();
+        try {
+            for (int[] shape : shapes) {
+                long seed = 11 + shape[0];
+                for (ImageOperation op : ops) {
+                    VectorSupport.setMode(VectorSupport.Mode.OFF);
+                    // Point operations change the image they are given, so each gets a fresh one.
+                    BufferedImage scalar = op.apply(TestImages.translucentImage(shape[0], shape[1], seed));
+                    VectorSupport.setMode(VectorSupport.Mode.CHECK);
+                    BufferedImage checked = op.apply(TestImages.translucentImage(shape[0], shape[1], seed));
+                    for (int y = 0; y < scalar.getHeight(); y++) {
+                        for (int x = 0; x < scalar.getWidth(); x++) {
+                            assertEquals(scalar.getRGB(x, y), checked.getRGB(x, y));
+                        }
+                    }
+                }
+            }
+        } finally {
+            VectorSupport.setMode(mode);
+        }
+    }
+}
@@ -60,18 +60,18 @@ public class ViewTest {
     @Test
     public void ZoomChangeTest() {
         // Repeat test for different zoom changes.
-        for (double change = -100; change < 200; change+=10) {
+        for (double change = -100; change < 800; change+=10) {
             ImagePanel imagePanel = new ImagePanel();
             double zoomBefore = imagePanel.getZoom();
             // Change the zoom as done in ZoomInAction.
             imagePanel.setZoom(imagePanel.getZoom()+change);
             double zoomAfter = imagePanel.getZoom();
             double expected = zoomBefore + change;
-            if (expected > 200) {
-                expected = 200;
+            if (expected > ImagePanel.MAX_ZOOM) {
+                expected = ImagePanel.MAX_ZOOM;
             }
-            else if (expected < 50) {
-                expected = 50;
+            else if (expected < ImagePanel.MIN_ZOOM) {
+                expected = ImagePanel.MIN_ZOOM;
             }
             assertEquals(expected, zoomAfter, 0.1d);
         }